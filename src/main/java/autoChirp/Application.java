@@ -1,12 +1,13 @@
 package autoChirp;
 
-import autoChirp.tweetCreation.TweetGroup;
+import autoChirp.database.DBConfig;
+import autoChirp.tweeting.MisfirePolicy;
+import autoChirp.tweeting.SchedulerConfig;
 import autoChirp.tweeting.TweetScheduler;
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
-import java.util.Map;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -38,6 +39,105 @@ public class Application extends SpringBootServletInitializer {
 	@Value("${autochirp.database.schema}")
 	private String schema;
 
+	@Value("${autochirp.database.store:sqlite}")
+	private String store;
+
+	@Value("${autochirp.database.readpoolsize:4}")
+	private int readPoolSize;
+
+	@Value("${autochirp.database.busytimeout:5000}")
+	private int busyTimeout;
+
+	@Value("${autochirp.database.cachesize:-8000}")
+	private int cacheSize;
+
+	@Value("${autochirp.database.mmapsize:0}")
+	private long mmapSize;
+
+	@Value("${autochirp.database.synchronous:NORMAL}")
+	private String synchronous;
+
+	@Value("${autochirp.database.statementcachesize:64}")
+	private int statementCacheSize;
+
+	@Value("${autochirp.database.batchsize:500}")
+	private int batchSize;
+
+	@Value("${autochirp.database.commitbatches:false}")
+	private boolean commitBatches;
+
+	@Value("${autochirp.database.statusflushinterval:200}")
+	private long statusFlushInterval;
+
+	@Value("${autochirp.database.statssnapshotttl:10000}")
+	private long statsSnapshotTtl;
+
+	@Value("${autochirp.database.groupcachesize:256}")
+	private int groupCacheSize;
+
+	@Value("${autochirp.database.groupcachetweets:50000}")
+	private int groupCacheTweets;
+
+	@Value("${autochirp.database.archiveafter:2592000000}")
+	private long archiveAfter;
+
+	@Value("${autochirp.database.archiveinterval:3600000}")
+	private long archiveInterval;
+
+	@Value("${autochirp.database.backupdir:backups}")
+	private String backupDir;
+
+	@Value("${autochirp.database.backupinterval:0}")
+	private long backupInterval;
+
+	@Value("${autochirp.database.backupkeep:7}")
+	private int backupKeep;
+
+	@Value("${autochirp.database.backupsteppages:1000}")
+	private int backupStepPages;
+
+	@Value("${autochirp.database.backupstepsleep:20}")
+	private long backupStepSleep;
+
+	@Value("${autochirp.database.querymetrics:true}")
+	private boolean queryMetrics;
+
+	@Value("${autochirp.database.slowquerythreshold:250}")
+	private long slowQueryThreshold;
+
+	@Value("${autochirp.scheduler.window:3600000}")
+	private long scheduleWindow;
+
+	@Value("${autochirp.scheduler.bucket:60000}")
+	private long scheduleBucket;
+
+	@Value("${autochirp.scheduler.misfirepolicy:fire_if_recent}")
+	private String misfirePolicy;
+
+	@Value("${autochirp.scheduler.misfirethreshold:900000}")
+	private long misfireThreshold;
+
+	@Value("${autochirp.scheduler.catchuprate:10}")
+	private int catchUpRate;
+
+	@Value("${autochirp.scheduler.postingthreads:5}")
+	private int postingThreads;
+
+	@Value("${autochirp.scheduler.postingqueue:1000}")
+	private int postingQueue;
+
+	@Value("${autochirp.scheduler.userrate:100}")
+	private double userRate;
+
+	@Value("${autochirp.scheduler.userburst:10}")
+	private int userBurst;
+
+	@Value("${autochirp.scheduler.node:}")
+	private String schedulerNode;
+
+	@Value("${autochirp.scheduler.leasetime:0}")
+	private long leaseTime;
+
 	/**
 	 * @param args
 	 *            Command line arguments
@@ -64,20 +164,64 @@ public class Application extends SpringBootServletInitializer {
 	@PostConstruct
 	private void initializeApplication() {
 		File file = new File(dbfile);
+		DBConfig config = new DBConfig();
+		config.store = store;
+		config.readPoolSize = readPoolSize;
+		config.busyTimeout = busyTimeout;
+		config.cacheSize = cacheSize;
+		config.mmapSize = mmapSize;
+		config.synchronous = synchronous;
+		config.statementCacheSize = statementCacheSize;
+		config.batchSize = batchSize;
+		config.commitBatches = commitBatches;
+		config.statusFlushInterval = statusFlushInterval;
+		config.statsSnapshotTtl = statsSnapshotTtl;
+		config.groupCacheSize = groupCacheSize;
+		config.groupCacheTweets = groupCacheTweets;
+		config.archiveAfter = archiveAfter;
+		config.archiveInterval = archiveInterval;
+		config.backupDir = backupDir;
+		config.backupInterval = backupInterval;
+		config.backupKeep = backupKeep;
+		config.backupStepPages = backupStepPages;
+		config.backupStepSleep = backupStepSleep;
+		config.queryMetrics = queryMetrics;
+		config.slowQueryThreshold = slowQueryThreshold;
 
 		if (!file.exists()) {
-			DBConnector.connect(dbfile);
+			DBConnector.connect(dbfile, config);
 			DBConnector.createOutputTables(schema);
 		} else {
-			DBConnector.connect(dbfile);
+			DBConnector.connect(dbfile, config);
 		}
+		DBConnector.migrate();
 
-		Map<Integer, List<TweetGroup>> toSchedule = DBConnector.getAllEnabledGroups();
-		for (int userID : toSchedule.keySet()) {
-			for (TweetGroup group : toSchedule.get(userID)) {
-				TweetScheduler.scheduleTweetsForUser(group.tweets, userID);
-			}
+		// loads the tweets due within the window in the background, later
+		// tweets are loaded as the window moves on (see /ready)
+		SchedulerConfig schedulerConfig = new SchedulerConfig();
+		schedulerConfig.window = scheduleWindow;
+		schedulerConfig.bucketSize = scheduleBucket;
+		schedulerConfig.misfirePolicy = MisfirePolicy.valueOf(misfirePolicy.toUpperCase());
+		schedulerConfig.misfireThreshold = misfireThreshold;
+		schedulerConfig.catchUpRate = catchUpRate;
+		schedulerConfig.postingThreads = postingThreads;
+		schedulerConfig.postingQueue = postingQueue;
+		schedulerConfig.userRate = userRate;
+		schedulerConfig.userBurst = userBurst;
+		if (!schedulerNode.isEmpty()) {
+			schedulerConfig.node = schedulerNode;
 		}
+		schedulerConfig.leaseTime = leaseTime;
+		TweetScheduler.start(schedulerConfig);
+	}
+
+	/**
+	 * Stop the scheduler and close all database connections on shutdown.
+	 */
+	@PreDestroy
+	private void shutdownApplication() {
+		TweetScheduler.stop();
+		DBConnector.disconnect();
 	}
 
 }
@@ -1,33 +1,33 @@
 package autoChirp;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
-import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.text.SimpleDateFormat;
-import java.time.Duration;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.Year;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
+import autoChirp.database.BackupStatus;
+import autoChirp.database.CachingTweetStore;
+import autoChirp.database.DBConfig;
+import autoChirp.database.InstrumentedTweetStore;
+import autoChirp.database.MemoryTweetStore;
+import autoChirp.database.Misfire;
+import autoChirp.database.Page;
+import autoChirp.database.QueryMetrics;
+import autoChirp.database.SQLiteTweetStore;
+import autoChirp.database.TweetArchiver;
+import autoChirp.database.TweetCounts;
+import autoChirp.database.TweetStore;
 import autoChirp.tweetCreation.Tweet;
 import autoChirp.tweetCreation.TweetGroup;
 
 /**
  * A class for database input/output. Includes methods to write in and read from
- * the database
+ * the database. All calls are handed to the TweetStore selected by
+ * DBConfig.store when connecting.
  *
  * @author Alena Geduldig
  * @editor Philip Schildkamp
@@ -35,68 +35,163 @@ import autoChirp.tweetCreation.TweetGroup;
  */
 public class DBConnector {
 
-	private static Connection connection;
+	private static TweetStore store;
+	private static TweetStore opened;
+	private static CachingTweetStore cachingStore;
+	private static QueryMetrics queryMetrics;
+	private static TweetArchiver archiver;
 
 	/**
-	 * connects to a database
+	 * connects to a database with the default pool- and PRAGMA-settings
 	 *
 	 * @param dbFilePath
 	 *            file to database
-	 * @return connection
+	 */
+	public static void connect(String dbFilePath) {
+		connect(dbFilePath, new DBConfig());
+	}
+
+	/**
+	 * connects to the store selected by config.store: "sqlite" opens a pool of
+	 * reader connections and one writer connection in WAL journal mode,
+	 * "memory" starts an empty MemoryTweetStore (dbFilePath is ignored).
+	 * TweetGroups are read through a GroupCache unless config.groupCacheSize
+	 * is 0, published tweets are archived by a TweetArchiver unless
+	 * config.archiveAfter is 0. All calls are measured by QueryMetrics unless
+	 * config.queryMetrics is false. An already opened store is closed first.
 	 *
+	 * @param dbFilePath
+	 *            file to database
+	 * @param config
+	 *            store, pool size and PRAGMA settings
 	 */
-	public static Connection connect(String dbFilePath) {
-		// register the driver
-		try {
-			Class.forName("org.sqlite.JDBC");
-		} catch (ClassNotFoundException e) {
-			System.out.print("DBConnector.connect: ");
-			e.printStackTrace();
+	public static void connect(String dbFilePath, DBConfig config) {
+		disconnect();
+		if (DBConfig.MEMORY.equals(config.store)) {
+			opened = new MemoryTweetStore(config);
+			System.out.println("In-memory store successfully opened");
+		} else {
+			try {
+				opened = new SQLiteTweetStore(dbFilePath, config);
+			} catch (SQLException e) {
+				System.out.print("DBConnector.connect: ");
+				e.printStackTrace();
+				return;
+			}
+			System.out.println("Database '" + dbFilePath + "' successfully opened");
+		}
+		store = opened;
+		if (config.groupCacheSize > 0) {
+			cachingStore = new CachingTweetStore(store, config);
+			store = cachingStore;
+		}
+		if (config.queryMetrics) {
+			queryMetrics = new QueryMetrics(config);
+			store = new InstrumentedTweetStore(store, queryMetrics);
+		}
+		if (config.archiveAfter > 0) {
+			archiver = new TweetArchiver(store, config);
 		}
-		try {
-			connection = DriverManager.getConnection("jdbc:sqlite:" + dbFilePath);
-		} catch (SQLException e) {
-			System.out.print("DBConnector.connect: ");
-			e.printStackTrace();
+	}
+
+	/**
+	 * returns the metrics of the TweetGroup cache (hits, misses, hitRate,
+	 * evictions, invalidations, groups, tweets), empty if the cache is
+	 * disabled
+	 *
+	 * @return the metrics by name
+	 */
+	public static Map<String, Number> getGroupCacheMetrics() {
+		if (cachingStore != null) {
+			return cachingStore.getMetrics();
 		}
-		System.out.println("Database '" + dbFilePath + "' successfully opened");
-		return connection;
+		return new LinkedHashMap<String, Number>();
 	}
 
 	/**
-	 * creates (or overrides) output-tables defined in dbCreationFileName
+	 * returns the latency, rows and errors of the calls to the store per
+	 * method, see QueryMetrics.getMetrics(). Empty if config.queryMetrics is
+	 * false.
+	 *
+	 * @return the metrics by method name
+	 */
+	public static Map<String, Map<String, Object>> getQueryMetrics() {
+		if (queryMetrics != null) {
+			return queryMetrics.getMetrics();
+		}
+		return new LinkedHashMap<String, Map<String, Object>>();
+	}
+
+	/**
+	 * writes a consistent copy of the database to the given file while the
+	 * application keeps running, blocks until the copy is complete (see
+	 * DatabaseBackup)
+	 *
+	 * @param file
+	 *            path of the backup file, an existing file is replaced
+	 * @return the status of the finished backup
+	 */
+	public static BackupStatus backup(String file) {
+		return store.backup(file);
+	}
+
+	/**
+	 * starts a backup into DBConfig.backupDir in the background
+	 *
+	 * @return true if the backup was started, false if another backup is
+	 *         running or the store can't be backed up
+	 */
+	public static boolean startBackup() {
+		return store.startBackup();
+	}
+
+	/**
+	 * @return the status of the running or last backup, null if there was
+	 *         none yet
+	 */
+	public static BackupStatus getBackupStatus() {
+		return store.getBackupStatus();
+	}
+
+	/**
+	 * stops the archiver, writes the queued status updates and closes the
+	 * store
+	 */
+	public static void disconnect() {
+		if (archiver != null) {
+			archiver.close();
+			archiver = null;
+		}
+		if (store != null) {
+			store.close();
+			store = null;
+			opened = null;
+			cachingStore = null;
+			queryMetrics = null;
+		}
+	}
+
+	/**
+	 * creates (or overrides) output-tables defined in dbCreationFileName, a
+	 * store without tables just drops its data
 	 *
 	 * @param dbCreationFileName
 	 *            file to the db-specification
 	 *
 	 */
 	public static void createOutputTables(String dbCreationFileName) {
-		// read creationFile
-		StringBuffer sql = new StringBuffer();
-		BufferedReader in;
-		try {
-			in = new BufferedReader(new FileReader(dbCreationFileName));
-			String line = in.readLine();
-			while (line != null) {
-				sql.append(line + "\n");
-				line = in.readLine();
-			}
-			in.close();
-		} catch (IOException e) {
-			System.out.print("DBConnector.createOututTables: couldnt create outputtables");
-			e.printStackTrace();
-		}
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			stmt.executeUpdate(sql.toString());
-			stmt.close();
-			connection.commit();
-			System.out.println("Initialized new output-database.");
-		} catch (SQLException e) {
-			System.out.print("DBConnector.createOututTables: couldnt create outputtable");
-			e.printStackTrace();
-		}
+		store.createOutputTables(dbCreationFileName);
+	}
+
+	/**
+	 * upgrades the connected database to the latest schema version (see
+	 * SchemaMigrator)
+	 *
+	 * @return the schema version after the upgrade, or -1 if a migration
+	 *         failed. A store without schema returns 0.
+	 */
+	public static int migrate() {
+		return store.migrate();
 	}
 
 	/**
@@ -108,25 +203,7 @@ public class DBConnector {
 	 *         or -1 if not.
 	 */
 	public static int checkForUser(long twitter_id) {
-		int toReturn;
-		try {
-			connection.setAutoCommit(false);
-			String sql = "SELECT twitter_id, user_id FROM users WHERE (twitter_id = '" + twitter_id + "')";
-			Statement stmt = connection.createStatement();
-			ResultSet result = stmt.executeQuery(sql);
-			if (!result.next()) {
-				toReturn = -1;
-			} else {
-				toReturn = result.getInt(2);
-			}
-			stmt.close();
-			connection.commit();
-			return toReturn;
-		} catch (SQLException e) {
-			System.out.print("DBConnector: checkForUser: ");
-			e.printStackTrace();
-			return -1;
-		}
+		return store.checkForUser(twitter_id);
 	}
 
 	/**
@@ -142,29 +219,7 @@ public class DBConnector {
 	 *         successful
 	 */
 	public static int insertNewUser(long twitterID, String oauthToken, String oauthTokenSecret) {
-		int toReturn;
-		try {
-			// insert user
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "INSERT INTO users (twitter_id, oauth_token, oauth_token_secret) VALUES ('" + twitterID + "', "
-					+ "'" + oauthToken + "', " + "'" + oauthTokenSecret + "' )";
-			stmt.executeUpdate(sql);
-			stmt.close();
-			connection.commit();
-			// get userID
-			stmt = connection.createStatement();
-			sql = "SELECT last_insert_rowid();";
-			ResultSet result = stmt.executeQuery(sql);
-			toReturn = result.getInt(1);
-			stmt.close();
-			connection.commit();
-		} catch (SQLException e) {
-			System.out.println("DBConnector.insertNewUser: couldnt insert the new user " + twitterID);
-			e.printStackTrace();
-			toReturn = -1;
-		}
-		return toReturn;
+		return store.insertNewUser(twitterID, oauthToken, oauthTokenSecret);
 	}
 
 	/**
@@ -178,27 +233,7 @@ public class DBConnector {
 	 *         oauthTokenSecret (2)
 	 */
 	public static String[] getUserConfig(int userID) {
-		String[] toReturn = null;
-		try {
-			connection.setAutoCommit(false);
-			String sql = "SELECT twitter_id, oauth_token, oauth_token_secret FROM users WHERE user_id = '" + userID
-					+ "';";
-			Statement stmt = connection.createStatement();
-			ResultSet result = stmt.executeQuery(sql);
-			if (!result.next()) {
-				return toReturn;
-			}
-			toReturn = new String[3];
-			toReturn[0] = Integer.toString(result.getInt(1));
-			toReturn[1] = result.getString(2);
-			toReturn[2] = result.getString(3);
-			stmt.close();
-			connection.commit();
-		} catch (Exception e) {
-			System.out.println("DBConnector: couldnt read config for user_id " + userID);
-			e.printStackTrace();
-		}
-		return toReturn;
+		return store.getUserConfig(userID);
 	}
 
 	/**
@@ -207,27 +242,13 @@ public class DBConnector {
 	 * @return an int-count for registered users
 	 */
 	public static int getRegisteredUsers() {
-		int toReturn = 0;
-
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			ResultSet result = stmt.executeQuery("SELECT Count(*) FROM users;");
-			toReturn = result.getInt(1);
-			stmt.close();
-			connection.commit();
-		} catch (SQLException e) {
-			System.out.println("DBConnector.countTweets: ");
-			e.printStackTrace();
-			return 0;
-		}
-
-		return toReturn;
+		return store.getRegisteredUsers();
 	}
 
 	/**
 	 * writes a TweetGroup into the database and returns its new groupID.
-	 * updates the tables 'groups' and 'tweets'.
+	 * updates the tables 'groups' and 'tweets'. On success the group and its
+	 * tweets carry their new IDs, so they don't need to be read again.
 	 *
 	 * @param tweetGroup
 	 *            a TweetGroup-Object consisting of title, description and a
@@ -238,50 +259,7 @@ public class DBConnector {
 	 *
 	 */
 	public static int insertTweetGroup(TweetGroup tweetGroup, int userID) {
-		int toReturn;
-		try {
-			connection.setAutoCommit(false);
-			PreparedStatement prepGroups = connection
-					.prepareStatement("INSERT INTO groups(user_id, group_name, description, enabled, threaded, flashcard) VALUES(?,?,?,?,?,?)");
-			PreparedStatement prepTweets = connection.prepareStatement(
-					"INSERT INTO tweets(user_id, group_id, scheduled_date, tweet, scheduled, tweeted, img_url, longitude, latitude) VALUES(?,?,?,?,?,?,?,?,?)");
-			// update table groups
-			prepGroups.setInt(1, userID);
-			prepGroups.setString(2, tweetGroup.title);
-			prepGroups.setString(3, tweetGroup.description);
-			prepGroups.setBoolean(4, false);
-			prepGroups.setBoolean(5, tweetGroup.threaded);
-			prepGroups.setString(6, tweetGroup.flashcard);
-			prepGroups.executeUpdate();
-			// get groupID
-			Statement stmt = connection.createStatement();
-			String sql = "SELECT last_insert_rowid();";
-			ResultSet result = stmt.executeQuery(sql);
-			int group_id = result.getInt(1);
-			toReturn = group_id;
-			// update table 'tweets'
-			for (Tweet tweet : tweetGroup.tweets) {
-				prepTweets.setInt(1, userID);
-				prepTweets.setInt(2, group_id);
-				prepTweets.setString(3, tweet.tweetDate);
-				prepTweets.setString(4, tweet.content);
-				prepTweets.setBoolean(5, false);
-				prepTweets.setBoolean(6, false);
-				prepTweets.setString(7, tweet.imageUrl);
-				prepTweets.setFloat(8, tweet.longitude);
-				prepTweets.setFloat(9, tweet.latitude);
-				prepTweets.executeUpdate();
-			}
-			prepGroups.close();
-			prepTweets.close();
-			stmt.close();
-			connection.commit();
-		} catch (Exception e) {
-			System.out.print("DBConnector.insertTweets: Couldnt insert tweets ");
-			e.printStackTrace();
-			toReturn = -1;
-		}
-		return toReturn;
+		return store.insertTweetGroup(tweetGroup, userID);
 	}
 
 	/**
@@ -298,21 +276,7 @@ public class DBConnector {
 	 * @return returns true if update was successful
 	 */
 	public static boolean updateGroupStatus(int groupID, boolean enabled, int userID) {
-		try {
-			int boolint = (enabled) ? 1 : 0;
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "UPDATE groups SET enabled = '" + boolint + "' WHERE (group_id = '" + groupID
-					+ "' AND user_id = '" + userID + "')";
-			stmt.executeUpdate(sql);
-			stmt.close();
-			connection.commit();
-		} catch (SQLException e) {
-			System.out.println("DBConnector.updateGroupStatus: couldnt update group-status");
-			e.printStackTrace();
-			return false;
-		}
-		return true;
+		return store.updateGroupStatus(groupID, enabled, userID);
 	}
 
 	/**
@@ -325,20 +289,7 @@ public class DBConnector {
 	 * @return returns true if update was successful
 	 */
 	public static boolean flagAsScheduled(int tweetID, int userID) {
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "UPDATE tweets SET scheduled = '1' WHERE (tweet_id = '" + tweetID + "' AND user_id = '"
-					+ userID + "')";
-			stmt.executeUpdate(sql);
-			stmt.close();
-			connection.commit();
-		} catch (SQLException e) {
-			System.out.print("DBConnector.flagAsScheduled: failed");
-			e.printStackTrace();
-			return false;
-		}
-		return true;
+		return store.flagAsScheduled(tweetID, userID);
 	}
 
 	/**
@@ -351,20 +302,43 @@ public class DBConnector {
 	 * @return returns true if update was successful
 	 */
 	public static boolean flagAsTweeted(int tweetID, int userID) {
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "UPDATE tweets SET tweeted = '1' WHERE (tweet_id = '" + tweetID + "' AND user_id = '" + userID
-					+ "')";
-			stmt.executeUpdate(sql);
-			stmt.close();
-			connection.commit();
-		} catch (SQLException e) {
-			System.out.print("DBConnector.flagAsTweeted: failed");
-			e.printStackTrace();
-			return false;
-		}
-		return true;
+		return store.flagAsTweeted(tweetID, userID);
+	}
+
+	/**
+	 * queues flagging the given tweet as scheduled. The update is committed
+	 * together with other queued status updates within
+	 * statusFlushInterval milliseconds.
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @param userID
+	 *            userID
+	 */
+	public static void flagAsScheduledLater(int tweetID, int userID) {
+		store.flagAsScheduledLater(tweetID, userID);
+	}
+
+	/**
+	 * queues setting the statusID of a published tweet, see
+	 * flagAsScheduledLater()
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @param statusId
+	 *            id of the status on twitter
+	 */
+	public static void addStatusIDLater(int tweetID, long statusId) {
+		store.addStatusIDLater(tweetID, statusId);
+	}
+
+	/**
+	 * commits all queued status updates, blocks until they are written
+	 *
+	 * @return returns true if all updates were written
+	 */
+	public static boolean flushStatusUpdates() {
+		return store.flushStatusUpdates();
 	}
 
 	/**
@@ -377,22 +351,7 @@ public class DBConnector {
 	 *            userID
 	 */
 	public static void deleteGroup(int groupID, int userID) {
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "DELETE FROM groups WHERE group_id = '" + groupID + "' AND user_id = '" + userID + "'";
-			stmt.executeUpdate(sql);
-			stmt.close();
-			connection.commit();
-			sql = "DELETE FROM tweets WHERE group_id='" + groupID + "'";
-			stmt = connection.createStatement();
-			stmt.executeUpdate(sql);
-			stmt.close();
-			connection.commit();
-		} catch (SQLException e) {
-			System.out.println("DBConnector.deleteGroup:");
-			e.printStackTrace();
-		}
+		store.deleteGroup(groupID, userID);
 	}
 
 	/**
@@ -404,17 +363,50 @@ public class DBConnector {
 	 *            userID
 	 */
 	public static void deleteTweet(int tweetID, int userID) {
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "DELETE FROM tweets WHERE tweet_id = '" + tweetID + "' AND user_id = '" + userID + "'";
-			stmt.executeUpdate(sql);
-			stmt.close();
-			connection.commit();
-		} catch (SQLException e) {
-			System.out.println("DBConnector.deleteTweet:");
-			e.printStackTrace();
-		}
+		store.deleteTweet(tweetID, userID);
+	}
+
+	/**
+	 * deletes the given TweetGroups of a user in table 'groups', all tweets
+	 * related to these groups in table 'tweets' and all their repeats in table
+	 * 'repeats' in a single transaction. Groups of other users are ignored.
+	 *
+	 * @param groupIDs
+	 *            to delete
+	 * @param userID
+	 *            userID
+	 * @return the tweetIDs of all deleted tweets, to be descheduled
+	 */
+	public static List<Integer> deleteGroups(Collection<Integer> groupIDs, int userID) {
+		return store.deleteGroups(groupIDs, userID);
+	}
+
+	/**
+	 * deletes the given tweets of a user in table 'tweets' in a single
+	 * transaction. Tweets of other users are ignored.
+	 *
+	 * @param tweetIDs
+	 *            to delete
+	 * @param userID
+	 *            userID
+	 * @return the tweetIDs of all deleted tweets, to be descheduled
+	 */
+	public static List<Integer> deleteTweets(Collection<Integer> tweetIDs, int userID) {
+		return store.deleteTweets(tweetIDs, userID);
+	}
+
+	/**
+	 * moves all published tweets scheduled before the given time from table
+	 * 'tweets' to table 'tweets_archive'. This is done in the background
+	 * every DBConfig.archiveInterval milliseconds for the tweets older than
+	 * DBConfig.archiveAfter milliseconds.
+	 *
+	 * @param before
+	 *            epoch milliseconds
+	 * @return number of archived tweets
+	 */
+	public static int archiveTweets(long before) {
+		return store.archiveTweets(before);
 	}
 
 	/**
@@ -432,27 +424,9 @@ public class DBConnector {
 	 * @return a list of all tweets which satisfy the given status-combination
 	 */
 	public static List<Tweet> getTweetsForUser(int userID, boolean scheduled, boolean tweeted, int groupID) {
-		int scheduledInt = (scheduled) ? 1 : 0;
-		int tweetedInt = (tweeted) ? 1 : 0;
-		String query = "SELECT * FROM tweets WHERE(user_id = '" + userID + "' AND group_id = '" + groupID
-				+ "' AND scheduled = '" + scheduledInt + "' AND tweeted = '" + tweetedInt
-				+ "') ORDER BY scheduled_date ASC";
-		return getTweets(query, userID);
+		return store.getTweetsForUser(userID, scheduled, tweeted, groupID);
 	}
 
-	/**
-	 * @param userID
-	 * @param groupID
-	 * @return all tweets with the given groupID
-	 */
-	private static List<Tweet> getTweetsForUser(int userID, int groupID) {
-		String query = "SELECT * FROM tweets WHERE(user_id = '" + userID + "' AND group_id = '" + groupID
-				+ "') ORDER BY scheduled_date ASC";
-		return getTweets(query, userID);
-	}
-	
-
-
 	/**
 	 * returns a list of all tweets of a user with the given scheduled- and
 	 * tweeted-status
@@ -466,11 +440,7 @@ public class DBConnector {
 	 * @return all tweets which satisfy the given status-combination
 	 */
 	public static List<Tweet> getTweetsForUser(int userID, boolean scheduled, boolean tweeted) {
-		int scheduledInt = (scheduled) ? 1 : 0;
-		int tweetedInt = (tweeted) ? 1 : 0;
-		String query = "SELECT * FROM tweets WHERE(user_id = '" + userID + "' AND scheduled = '" + scheduledInt
-				+ "' AND tweeted = '" + tweetedInt + "') ORDER BY scheduled_date ASC";
-		return getTweets(query, userID);
+		return store.getTweetsForUser(userID, scheduled, tweeted);
 	}
 
 	/**
@@ -481,57 +451,132 @@ public class DBConnector {
 	 * @return all tweets from the user
 	 */
 	public static List<Tweet> getTweetsForUser(int userID) {
-		String query = "SELECT * FROM tweets WHERE(user_id = '" + userID + "') ORDER BY scheduled_date ASC";
-		return getTweets(query, userID);
+		return store.getTweetsForUser(userID);
 	}
 
 	/**
-	 * returns a list of 5 upcoming tweets
+	 * returns a list of 5 upcoming tweets, possibly read up to
+	 * DBConfig.statsSnapshotTtl milliseconds ago
 	 *
 	 * @return a list of 5 upcoming tweets
 	 */
 	public static List<Tweet> getUpcomingTweets() {
-		String now = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
-		String query = "SELECT * FROM tweets WHERE(scheduled = 1 AND tweeted = 0 AND scheduled_date > '" + now
-				+ "') ORDER BY scheduled_date ASC LIMIT 5";
-		return getTweets(query, 0);
+		return store.getUpcomingTweets();
 	}
 
 	/**
-	 * returns a list of 15 recent tweets
+	 * returns a list of 15 recent tweets, possibly read up to
+	 * DBConfig.statsSnapshotTtl milliseconds ago
 	 *
 	 * @return a list of 15 recent tweets
 	 */
 	public static List<Tweet> getLatestTweets() {
-		String query = "SELECT * FROM tweets WHERE(tweeted = 1) ORDER BY scheduled_date DESC LIMIT 15";
-		return getTweets(query, 0);
+		return store.getLatestTweets();
 	}
 
 	/**
+	 * returns a list of 15 recent tweets. Without the archive this is
+	 * getLatestTweets(), with the archive the tweets are read from both
+	 * tables right away.
+	 *
+	 * @param withArchive
+	 *            read the archived tweets, too
+	 * @return a list of 15 recent tweets
+	 */
+	public static List<Tweet> getLatestTweets(boolean withArchive) {
+		return store.getLatestTweets(withArchive);
+	}
+
+	/**
+	 * returns one page of the tweets of a user (or of one of his groups). The
+	 * upcoming tweets come first, followed by the past tweets, both in
+	 * ascending order of their date. Pages are selected by the cursor of the
+	 * neighbouring page (keyset pagination): with backward = false the page
+	 * after the cursor is returned, with backward = true the page before it.
+	 * Without a cursor the first (or, backward, the last) page is returned.
 	 *
-	 * @param query
 	 * @param userID
-	 * @return list of tweets selected with the query
-	 */
-	private static List<Tweet> getTweets(String query, int userID) {
-		List<Tweet> toReturn = new ArrayList<Tweet>();
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			ResultSet result = stmt.executeQuery(query);
-			while (result.next()) {
-				Tweet tweet = new Tweet(result.getString(4), result.getString(5), result.getInt(1), result.getInt(3),
-						result.getBoolean(6), result.getBoolean(7), userID, result.getString(8), result.getFloat(9),
-						result.getFloat(10), result.getLong(11));
-				toReturn.add(tweet);
-			}
-			stmt.close();
-			connection.commit();
-		} catch (SQLException e) {
-			System.out.print("DBConnector.getTweets: ");
-			e.printStackTrace();
-		}
-		return toReturn;
+	 *            userID
+	 * @param groupID
+	 *            groupID, or -1 for the tweets of all groups
+	 * @param cursor
+	 *            Page.first or Page.last of the neighbouring page, or null
+	 * @param backward
+	 *            return the page before the cursor
+	 * @param size
+	 *            max. number of tweets of the page
+	 * @return the page of tweets
+	 */
+	public static Page<Tweet> getTweetsPage(int userID, int groupID, String cursor, boolean backward, int size) {
+		return store.getTweetsPage(userID, groupID, cursor, backward, size, false);
+	}
+
+	/**
+	 * like getTweetsPage(userID, groupID, cursor, backward, size), optionally
+	 * paging through the archived tweets, too
+	 *
+	 * @param userID
+	 *            userID
+	 * @param groupID
+	 *            groupID, or -1 for the tweets of all groups
+	 * @param cursor
+	 *            Page.first or Page.last of the neighbouring page, or null
+	 * @param backward
+	 *            return the page before the cursor
+	 * @param size
+	 *            max. number of tweets of the page
+	 * @param withArchive
+	 *            page through the archived tweets, too
+	 * @return the page of tweets
+	 */
+	public static Page<Tweet> getTweetsPage(int userID, int groupID, String cursor, boolean backward, int size,
+			boolean withArchive) {
+		return store.getTweetsPage(userID, groupID, cursor, backward, size, withArchive);
+	}
+
+	/**
+	 * returns one page of the groups of a user in the order they were
+	 * created. The groups carry their tweetCount, but no tweets. See
+	 * getTweetsPage() for cursor and backward.
+	 *
+	 * @param userID
+	 *            userID
+	 * @param cursor
+	 *            Page.first or Page.last of the neighbouring page, or null
+	 * @param backward
+	 *            return the page before the cursor
+	 * @param size
+	 *            max. number of groups of the page
+	 * @return the page of groups
+	 */
+	public static Page<TweetGroup> getGroupsPage(int userID, String cursor, boolean backward, int size) {
+		return store.getGroupsPage(userID, cursor, backward, size);
+	}
+
+	/**
+	 * returns the numbers of groups, tweets, scheduled and published tweets
+	 * of a user in one query
+	 *
+	 * @param userID
+	 *            userID
+	 * @return the counts of the user
+	 */
+	public static TweetCounts getTweetCounts(int userID) {
+		return store.getTweetCounts(userID);
+	}
+
+	/**
+	 * returns the numbers of tweets, scheduled and published tweets of the
+	 * given groups of a user in one query
+	 *
+	 * @param userID
+	 *            userID
+	 * @param groupIDs
+	 *            groupIDs
+	 * @return the counts by groupID, groups without tweets are missing
+	 */
+	public static Map<Integer, TweetCounts> getTweetCounts(int userID, Collection<Integer> groupIDs) {
+		return store.getTweetCounts(userID, groupIDs);
 	}
 
 	/**
@@ -540,8 +585,7 @@ public class DBConnector {
 	 * @return number of scheduled Tweets
 	 */
 	public static int getScheduledTweets() {
-		String query = "SELECT Count(*) FROM tweets WHERE(scheduled = 1 AND tweeted = 0)";
-		return countTweets(query);
+		return store.getScheduledTweets();
 	}
 
 	/**
@@ -550,8 +594,7 @@ public class DBConnector {
 	 * @return number of published Tweets
 	 */
 	public static int getPublishedTweets() {
-		String query = "SELECT Count(*) FROM tweets WHERE(tweeted = 1)";
-		return countTweets(query);
+		return store.getPublishedTweets();
 	}
 
 	/**
@@ -560,70 +603,55 @@ public class DBConnector {
 	 * @return number of published Tweets
 	 */
 	public static int getAllTweets() {
-		String query = "SELECT Count(*) FROM tweets";
-		return countTweets(query);
+		return store.getAllTweets();
 	}
 
 	/**
-	 * returns the number of Tweets for the query
+	 * returns the tweetGroup with the given groupID (if userID fits to groupID)
 	 *
-	 * @param query
-	 *            the SQL query
-	 * @return number of tweets
+	 * @param userID
+	 *            userID
+	 * @param groupID
+	 *            groupID
+	 * @return tweetGroup with groupID
 	 */
-	public static int countTweets(String query) {
-		int toReturn;
-
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			ResultSet result = stmt.executeQuery(query);
-			toReturn = result.getInt(1);
-			stmt.close();
-			connection.commit();
-		} catch (SQLException e) {
-			System.out.println("DBConnector.countTweets: ");
-			e.printStackTrace();
-			return 0;
-		}
+	public static TweetGroup getTweetGroupForUser(int userID, int groupID) {
+		return store.getTweetGroupForUser(userID, groupID);
+	}
 
-		return toReturn;
+	/**
+	 * returns the tweetGroup with the given groupID (if userID fits to
+	 * groupID), optionally without its tweets
+	 *
+	 * @param userID
+	 *            userID
+	 * @param groupID
+	 *            groupID
+	 * @param withTweets
+	 *            read the tweets of the group, too
+	 * @return tweetGroup with groupID
+	 */
+	public static TweetGroup getTweetGroupForUser(int userID, int groupID, boolean withTweets) {
+		return store.getTweetGroupForUser(userID, groupID, withTweets);
 	}
 
 	/**
-	 * returns the tweetGroup with the given groupID (if userID fits to groupID)
+	 * returns the tweetGroup with the given groupID (if userID fits to
+	 * groupID), optionally without its tweets or with its archived tweets
 	 *
 	 * @param userID
 	 *            userID
 	 * @param groupID
 	 *            groupID
+	 * @param withTweets
+	 *            read the tweets of the group, too
+	 * @param withArchive
+	 *            read the archived tweets of the group, too
 	 * @return tweetGroup with groupID
 	 */
-	public static TweetGroup getTweetGroupForUser(int userID, int groupID) {
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "SELECT group_name, description, enabled, group_id, threaded, flashcard FROM groups WHERE (user_id = '" + userID
-					+ "' AND group_id = '" + groupID + "')";
-			ResultSet result = stmt.executeQuery(sql);
-			if (!result.next())
-				return null;
-			TweetGroup group = new TweetGroup(result.getInt(4), result.getString(1), result.getString(2),
-					result.getBoolean(3), result.getBoolean(5));
-			String flashcard = result.getString(6);
-			if(flashcard != null){
-				group.setFlashCard(result.getString(6));
-			}
-			stmt.close();
-			connection.commit();
-			List<Tweet> tweets = getTweetsForUser(userID, groupID);
-			group.setTweets(tweets);
-			return group;
-		} catch (SQLException e) {
-			System.out.print("DBConnector.getTweetGroupForUser: ");
-			e.printStackTrace();
-			return null;
-		}
+	public static TweetGroup getTweetGroupForUser(int userID, int groupID, boolean withTweets,
+			boolean withArchive) {
+		return store.getTweetGroupForUser(userID, groupID, withTweets, withArchive);
 	}
 
 	/**
@@ -634,20 +662,7 @@ public class DBConnector {
 	 * @return groupIDs of the users group
 	 */
 	public static List<Integer> getGroupIDsForUser(int userID) {
-		List<Integer> toReturn = new ArrayList<Integer>();
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "SELECT group_id FROM groups WHERE (user_id = '" + userID + "')";
-			ResultSet result = stmt.executeQuery(sql);
-			while (result.next()) {
-				toReturn.add(result.getInt(1));
-			}
-		} catch (SQLException e) {
-			System.out.print("DBConnector.getGroupIDsForUser: ");
-			e.printStackTrace();
-		}
-		return toReturn;
+		return store.getGroupIDsForUser(userID);
 	}
 
 	/**
@@ -661,25 +676,9 @@ public class DBConnector {
 	 * @return tweet with tweetID
 	 */
 	public static Tweet getTweetByID(int tweetID, int userID) {
-		Tweet toReturn = null;
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "SELECT * FROM tweets WHERE (tweet_id = '" + tweetID + "' AND user_id = '" + userID + "')";
-			ResultSet result = stmt.executeQuery(sql);
-			if (!result.next()) {
-				return null;
-			}
-			toReturn = new Tweet(result.getString(4), result.getString(5), result.getInt(1), result.getInt(3),
-					result.getBoolean(6), result.getBoolean(7), userID, result.getString(8), result.getFloat(9),
-					result.getFloat(10), result.getLong(11));
-		} catch (SQLException e) {
-			System.out.print("DBConnector.getGroupIDsForUser: ");
-			e.printStackTrace();
-		}
-		return toReturn;
+		return store.getTweetByID(tweetID, userID);
 	}
-	
+
 	/**
 	 * reads a single tweet from the database specified by tweetID (if userID
 	 * fits to tweetID)
@@ -689,25 +688,8 @@ public class DBConnector {
 	 * @return tweet with tweetID
 	 */
 	public static Tweet getTweetByID(int tweetID) {
-		Tweet toReturn = null;
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "SELECT * FROM tweets WHERE (tweet_id = '" + tweetID + "')";
-			ResultSet result = stmt.executeQuery(sql);
-			if (!result.next()) {
-				return null;
-			}
-			toReturn = new Tweet(result.getString(4), result.getString(5), result.getInt(1), result.getInt(3),
-					result.getBoolean(6), result.getBoolean(7), 0, result.getString(8), result.getFloat(9),
-					result.getFloat(10), result.getLong(11));
-		} catch (SQLException e) {
-			System.out.print("DBConnector.getGroupIDsForUser: ");
-			e.printStackTrace();
-		}
-		return toReturn;
+		return store.getTweetByID(tweetID);
 	}
-	
 
 	/**
 	 * returns the groupTitle of the given group (if userID fits to groupID)
@@ -717,22 +699,8 @@ public class DBConnector {
 	 * @return groupTitle of the given group
 	 */
 	public static String getGroupTitle(int groupID) {
-		String toReturn = null;
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "SELECT group_name FROM groups WHERE (group_id = '" + groupID + "')";
-			ResultSet result = stmt.executeQuery(sql);
-			if (!result.next()) {
-				return null;
-			}
-			toReturn = result.getString(1);
-		} catch (SQLException e) {
-			System.out.print("DBConnector.getGroupIDsForUser: ");
-			e.printStackTrace();
-		}
-		return toReturn;
-	}	
+		return store.getGroupTitle(groupID);
+	}
 
 	/**
 	 * returns the groupTitle of the given group (if userID fits to groupID)
@@ -744,22 +712,7 @@ public class DBConnector {
 	 * @return groupTitle of the given group
 	 */
 	public static String getGroupTitle(int groupID, int userID) {
-		String toReturn = null;
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "SELECT group_name FROM groups WHERE (group_id = '" + groupID + "' AND user_id = '" + userID
-					+ "')";
-			ResultSet result = stmt.executeQuery(sql);
-			if (!result.next()) {
-				return null;
-			}
-			toReturn = result.getString(1);
-		} catch (SQLException e) {
-			System.out.print("DBConnector.getGroupIDsForUser: ");
-			e.printStackTrace();
-		}
-		return toReturn;
+		return store.getGroupTitle(groupID, userID);
 	}
 
 	/**
@@ -776,26 +729,7 @@ public class DBConnector {
 	 *            userID
 	 */
 	public static void editGroup(int groupID, String title, String description, int userID, String flashcard) {
-		try {
-			connection.setAutoCommit(false);
-			PreparedStatement stmt = connection.prepareStatement(
-					"UPDATE groups SET group_name = ?, description = ?,  flashcard = ? WHERE (group_id = ?  AND user_id = ?)");
-			// String sql = "UPDATE groups SET group_name = '" + title + "',
-			// description = '" + description
-			// + "' WHERE (group_id = '" + groupID + "' AND user_id = '" +
-			// userID + "')";
-			stmt.setString(1, title);
-			stmt.setString(2, description);
-			stmt.setString(3, flashcard);
-			stmt.setInt(4, groupID);
-			stmt.setInt(5, userID);
-			stmt.executeUpdate();
-			stmt.close();
-			connection.commit();
-		} catch (SQLException e) {
-			System.out.print("DBConnector.editGroup: ");
-			e.printStackTrace();
-		}
+		store.editGroup(groupID, title, description, userID, flashcard);
 	}
 
 	/**
@@ -817,49 +751,16 @@ public class DBConnector {
 	 */
 	public static void editTweet(int tweetID, String content, int userID, String imageUrl, float longitude,
 			float latitude, String tweetDate) {
-		try {
-			connection.setAutoCommit(false);
-			PreparedStatement stmt = connection.prepareStatement(
-					"UPDATE tweets SET tweet = ?, img_url = ?, longitude = ?, latitude = ?, scheduled_date = ? WHERE (tweet_id = ? AND user_id = ?)");
-			// String sql = "UPDATE tweets SET tweet = '" + content + "',
-			// img_url = '" + imageUrl + "', longitude = '"
-			// + longitude + "', latitude = '" + latitude + "' WHERE (tweet_id =
-			// '" + tweetID
-			// + "' AND user_id = '" + userID + "')";
-			stmt.setString(1, content);
-			stmt.setString(2, imageUrl);
-			stmt.setFloat(3, longitude);
-			stmt.setFloat(4, latitude);
-			stmt.setString(5, tweetDate);
-			stmt.setInt(6, tweetID);
-			stmt.setInt(7, userID);
-			stmt.executeUpdate();
-			stmt.close();
-			connection.commit();
-		} catch (SQLException e) {
-			System.out.print("DBConnector.editTweet: ");
-			e.printStackTrace();
-		}
+		store.editTweet(tweetID, content, userID, imageUrl, longitude, latitude, tweetDate);
 	}
-	
+
 	/**
 	 * sets the statusID of a published tweet 
 	 * @param tweet
 	 * @param statusId
 	 */
-	public static void addStatusID(int tweetID, long statusId){
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "UPDATE tweets SET status_id = '" + statusId + "' WHERE (tweet_id = '" + tweetID+"')";
-			stmt.executeUpdate(sql);
-			stmt.close();
-		} catch (SQLException e) {
-			System.out.println("DBConnector.addStatusID: ");
-			e.printStackTrace();
-		}
-		
-		
+	public static void addStatusID(int tweetID, long statusId) {
+		store.addStatusID(tweetID, statusId);
 	}
 
 	/**
@@ -874,37 +775,7 @@ public class DBConnector {
 	 * @return tweetID of the new tweet
 	 */
 	public static int addTweetToGroup(int userID, Tweet tweet, int groupID) {
-		try {
-			connection.setAutoCommit(false);
-			PreparedStatement prepStmt = connection.prepareStatement(
-					"INSERT INTO tweets (user_id, group_id, scheduled_date, tweet, scheduled, tweeted, img_url, longitude, latitude) VALUES(?,?,?,?,?,?,?,?,?)");
-			prepStmt.setInt(1, userID);
-			prepStmt.setInt(2, groupID);
-			prepStmt.setString(3, tweet.tweetDate);
-			prepStmt.setString(4, tweet.content);
-			prepStmt.setBoolean(5, false);
-			prepStmt.setBoolean(6, false);
-			prepStmt.setString(7, tweet.imageUrl);
-			prepStmt.setFloat(8, tweet.longitude);
-			prepStmt.setFloat(9, tweet.latitude);
-			prepStmt.executeUpdate();
-			prepStmt.close();
-			connection.commit();
-			Statement stmt = connection.createStatement();
-			String sql = "SELECT last_insert_rowid();";
-			ResultSet result = stmt.executeQuery(sql);
-			int toReturn = result.getInt(1);
-			stmt.close();
-			prepStmt.close();
-			connection.commit();
-			DBConnector.updateGroupStatus(groupID, false, userID);
-			return toReturn;
-
-		} catch (SQLException e) {
-			System.out.print("DBConnector.addTweetToGroup: ");
-			e.printStackTrace();
-			return -1;
-		}
+		return store.addTweetToGroup(userID, tweet, groupID);
 	}
 
 	/**
@@ -917,46 +788,18 @@ public class DBConnector {
 	 * @return enabled enabled status
 	 */
 	public static boolean isEnabledGroup(int groupID, int userID) {
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "SELECT enabled FROM groups WHERE (group_id = '" + groupID + "' AND user_id = '" + userID
-					+ "')";
-			ResultSet result = stmt.executeQuery(sql);
-			boolean enabled = result.getBoolean(1);
-			stmt.close();
-			connection.commit();
-			return enabled;
-		} catch (SQLException e) {
-			System.out.print("DBConnector.isEnabledGroup: ");
-			e.printStackTrace();
-			return false;
-		}
+		return store.isEnabledGroup(groupID, userID);
 	}
-	
+
 	/**
 	 * @param groupID
 	 * @param userID
 	 * @return returns true if group is a threaded group
 	 */
-	public static boolean isThreadedGroup(int groupID, int userID){
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "SELECT threaded FROM groups WHERE (group_id = '" + groupID + "' AND user_id = '" + userID
-					+ "')";
-			ResultSet result = stmt.executeQuery(sql);
-			boolean threaded = result.getBoolean(1);
-			stmt.close();
-			connection.commit();
-			return threaded;
-		} catch (SQLException e) {
-			System.out.print("DBConnector.isThreadedGroup: ");
-			e.printStackTrace();
-			return false;
-		}
+	public static boolean isThreadedGroup(int groupID, int userID) {
+		return store.isThreadedGroup(groupID, userID);
 	}
-	
+
 	/**
 	 * updates the threaded-attribute of the given tweetgroup
 	 * table 'groups'
@@ -965,91 +808,233 @@ public class DBConnector {
 	 * @param threaded
 	 * @return returns true is update was successful
 	 */
-	public static boolean setThreaded(int groupID, int userID, boolean threaded){
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			int boolint = (threaded) ? 1 : 0;
-			String sql = "UPDATE groups SET threaded = '" + boolint + "' WHERE (group_id = '" + groupID
-					+ "' AND user_id = '" + userID + "')";
-			stmt.executeUpdate(sql);
-			stmt.close();
-			connection.commit();
-		} catch (SQLException e) {
-			System.out.println("DBConnector.setThreaded: ");
-			e.printStackTrace();
-			return false;
-		}
-		return true;
-		
+	public static boolean setThreaded(int groupID, int userID, boolean threaded) {
+		return store.setThreaded(groupID, userID, threaded);
+	}
+
+	/**
+	 * streams all tweets of enabled groups which are not tweeted yet and
+	 * scheduled for a date after now to the given consumer, together with
+	 * their userID, in a single pass over all active tweets. The
+	 * TweetScheduler reads just its time window with the ranged variant.
+	 *
+	 * The consumer may write to the store, but must not call this method
+	 * again.
+	 *
+	 * @param consumer
+	 *            receives each tweet and the userID of its owner
+	 * @return the number of tweets handed to the consumer
+	 */
+	public static int forEachSchedulableTweet(BiConsumer<Tweet, Integer> consumer) {
+		return store.forEachSchedulableTweet(consumer);
+	}
+
+	/**
+	 * streams the tweets of enabled groups which are not tweeted yet and
+	 * scheduled for a time in [from, to) to the given consumer, together with
+	 * their userID. The TweetScheduler loads its next time bucket with it.
+	 *
+	 * The consumer may write to the store, but must not call this method
+	 * again.
+	 *
+	 * @param from
+	 *            start of the range in epoch milliseconds (inclusive)
+	 * @param to
+	 *            end of the range in epoch milliseconds (exclusive)
+	 * @param consumer
+	 *            receives each tweet and the userID of its owner
+	 * @return the number of tweets handed to the consumer
+	 */
+	public static int forEachSchedulableTweet(long from, long to, BiConsumer<Tweet, Integer> consumer) {
+		return store.forEachSchedulableTweet(from, to, consumer);
+	}
+
+	/**
+	 * streams the tweets of enabled groups which are flagged as scheduled but
+	 * not tweeted, although they were due before the given time (e.g. because
+	 * the application was down), to the given consumer, together with their
+	 * userID.
+	 *
+	 * The consumer may write to the store, but must not call this method
+	 * again.
+	 *
+	 * @param before
+	 *            epoch milliseconds the tweets were due before
+	 * @param consumer
+	 *            receives each tweet and the userID of its owner
+	 * @return the number of tweets handed to the consumer
+	 */
+	public static int forEachMisfiredTweet(long before, BiConsumer<Tweet, Integer> consumer) {
+		return store.forEachMisfiredTweet(before, consumer);
+	}
+
+	/**
+	 * records what was done about misfired tweets. Skipped tweets are no
+	 * longer flagged as scheduled, so they aren't reported again.
+	 *
+	 * @param misfires
+	 *            the misfires, an earlier record of a tweet is replaced
+	 */
+	public static void recordMisfires(List<Misfire> misfires) {
+		store.recordMisfires(misfires);
+	}
+
+	/**
+	 * returns the recorded misfires of a user, the latest first, with the
+	 * date and text of their tweets
+	 *
+	 * @param userID
+	 *            userID
+	 * @param limit
+	 *            max. number of misfires
+	 * @return the misfires
+	 */
+	public static List<Misfire> getMisfires(int userID, int limit) {
+		return store.getMisfires(userID, limit);
+	}
+
+	/**
+	 * claims a tweet for a node, so no other node sharing the database posts
+	 * it. The claim succeeds if the tweet isn't tweeted and has no lease, an
+	 * expired lease or a lease of the same node (which is renewed). Lease rows
+	 * are deleted with their tweets.
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @param userID
+	 *            userID
+	 * @param node
+	 *            name of the claiming node
+	 * @param now
+	 *            epoch milliseconds
+	 * @param leaseTime
+	 *            milliseconds the lease is held, unless it is completed
+	 * @return true if the node holds the lease now
+	 */
+	public static boolean claimTweet(int tweetID, int userID, String node, long now, long leaseTime) {
+		return store.claimTweet(tweetID, userID, node, now, leaseTime);
+	}
+
+	/**
+	 * marks the lease of a posted tweet as done, it never expires and the
+	 * tweet can't be claimed again
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @param node
+	 *            name of the node holding the lease
+	 */
+	public static void completeLease(int tweetID, String node) {
+		store.completeLease(tweetID, node);
+	}
+
+	/**
+	 * streams the tweets of enabled groups which aren't tweeted although a
+	 * node claimed them, because its lease expired before it was done (e.g.
+	 * the node went down while posting), to the given consumer, together with
+	 * their userID.
+	 *
+	 * The consumer may write to the store, but must not call this method
+	 * again.
+	 *
+	 * @param now
+	 *            epoch milliseconds the leases expired before
+	 * @param consumer
+	 *            receives each tweet and the userID of its owner
+	 * @return the number of tweets handed to the consumer
+	 */
+	public static int forEachExpiredLease(long now, BiConsumer<Tweet, Integer> consumer) {
+		return store.forEachExpiredLease(now, consumer);
 	}
-	
-	
 
 	/**
 	 *
 	 * returns a map of all enabled (active) groups from the database, sorted by
-	 * its usersIDs. This method is called once at the start of the application,
-	 * to schedule all active tweets.
+	 * its usersIDs.
 	 *
 	 * @return a map of all active TweetGroups sorted by its users
 	 */
 	public static Map<Integer, List<TweetGroup>> getAllEnabledGroups() {
-		Map<Integer, List<TweetGroup>> toReturn = new HashMap<Integer, List<TweetGroup>>();
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "SELECT user_id, group_id FROM groups WHERE (enabled = '1')";
-			ResultSet result = stmt.executeQuery(sql);
-			TweetGroup group;
-			while (result.next()) {
-				int userID = result.getInt(1);
-				int groupID = result.getInt(2);
-				group = DBConnector.getTweetGroupForUser(userID, groupID);
-				List<TweetGroup> groupList = toReturn.get(userID);
-				if (groupList == null) {
-					groupList = new ArrayList<TweetGroup>();
-				}
-				groupList.add(group);
-				toReturn.put(userID, groupList);
-			}
-			stmt.close();
-			connection.commit();
-		} catch (SQLException e) {
-			System.out.print("DBConnector.getAllEnabledGroupsByUser: ");
-			e.printStackTrace();
-		}
-		return toReturn;
+		return store.getAllEnabledGroups();
 	}
 
 	/**
 	 * deletes a user from the database - deletes user config. from table
 	 * 'users' - deletes all tweetGroups in table 'groups' - deletes all tweets
-	 * in table 'tweets'
+	 * in table 'tweets' - deletes all repeats in table 'repeats' - in a single
+	 * transaction
 	 *
 	 * @param userID
 	 *            userID
+	 * @return the tweetIDs of all deleted tweets, to be descheduled
+	 */
+	public static List<Integer> deleteUser(int userID) {
+		return store.deleteUser(userID);
+	}
+
+	/**
+	 * returns the status_id of the tweet scheduled right before the given one
+	 * in the same group, i.e. the status a threaded tweet replies to.
+	 *
+	 * @param tweetID
+	 *            the tweet to reply with
+	 * @param groupID
+	 *            groupID
+	 * @param userID
+	 *            userID
+	 * @return the status_id of the preceding tweet (0 if it is not published),
+	 *         -1 if the tweet is the first of its group
+	 */
+	public static long getReplyID(int tweetID, int groupID, int userID) {
+		return store.getReplyID(tweetID, groupID, userID);
+	}
+
+	/**
+	 * returns the flashcard of the given group
+	 *
+	 * @param groupID
+	 *            groupID
+	 * @return file name of the flashcard, or null if the group doesn't exist
 	 */
-	public static void deleteUser(int userID) {
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "DELETE FROM users WHERE user_id = '" + userID + "'";
-			stmt.executeUpdate(sql);
-			stmt.close();
-			stmt = connection.createStatement();
-			sql = "DELETE FROM groups WHERE user_id = '" + userID + "'";
-			stmt.executeUpdate(sql);
-			stmt.close();
-			stmt = connection.createStatement();
-			sql = "DELETE FROM tweets WHERE user_id = '" + userID + "'";
-			stmt.executeUpdate(sql);
-			stmt.close();
-			connection.commit();
-		} catch (SQLException e) {
-			System.out.print("DBConnector.deleteUser: ");
-			e.printStackTrace();
+	public static String getFlashcard(int groupID) {
+		return store.getFlashcard(groupID);
+	}
+
+	/**
+	 * Updates a Users token and secret
+	 *
+	 * @param userID
+	 *            The user to update
+	 * @param oAuthToken
+	 *            new oauthToken
+	 * @param oAuthTokenSecret
+	 *            new oauthTokenSecret
+	 * @return true if update was successful and false if not
+	 */
+	public static boolean updateUserTokens(int userID, String oAuthToken, String oAuthTokenSecret) {
+		return store.updateUserTokens(userID, oAuthToken, oAuthTokenSecret);
+	}
+
+	/**
+	 * returns the number of Tweets for the query. Only supported by the
+	 * SQLiteTweetStore, other stores return 0.
+	 *
+	 * @param query
+	 *            the SQL query with ?-placeholders
+	 * @param params
+	 *            the values for the placeholders
+	 * @return number of tweets
+	 */
+	public static int countTweets(String query, Object... params) {
+		if (!(opened instanceof SQLiteTweetStore)) {
+			System.out.println("DBConnector.countTweets: SQL queries are not supported by " + opened.getClass().getSimpleName());
+			return 0;
 		}
+		SQLiteTweetStore target = (SQLiteTweetStore) opened;
+		if (queryMetrics == null) {
+			return target.countTweets(query, params);
+		}
+		return queryMetrics.time("countTweets", () -> target.countTweets(query, params), null, query);
 	}
 
 	/**
@@ -1064,10 +1049,9 @@ public class DBConnector {
 		List<Tweet> repeatTweets = new ArrayList<Tweet>();
 		Tweet repeatTweet;
 		for (Tweet tweet : group.tweets) {
-			LocalDateTime time = LocalDateTime.parse(tweet.tweetDate,
-					DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+			LocalDateTime time = LocalDateTime.parse(tweet.tweetDate, Tweet.DATE_FORMAT);
 			time = time.plusSeconds(delayInSeconds);
-			String timeString = time.format( DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+			String timeString = time.format(Tweet.DATE_FORMAT);
 			repeatTweet = new Tweet(timeString, tweet.content, tweet.imageUrl, tweet.longitude, tweet.latitude);
 			repeatTweets.add(repeatTweet);
 		}
@@ -1075,7 +1059,6 @@ public class DBConnector {
 		return repeatGroup;
 	}
 
-
 	/**
 	 * @param group group to repeat
 	 * @param userID  user of group
@@ -1089,10 +1072,9 @@ public class DBConnector {
 		Tweet updatedTweet;
 		String timeString = null;
 		for (Tweet tweet : group.tweets) {
-			LocalDateTime time = LocalDateTime.parse(tweet.tweetDate,
-					DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+			LocalDateTime time = LocalDateTime.parse(tweet.tweetDate, Tweet.DATE_FORMAT);
 			time = time.plusYears(delayInYears);
-			timeString = time.format( DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+			timeString = time.format(Tweet.DATE_FORMAT);
 			updatedTweet = new Tweet(timeString, tweet.content, tweet.imageUrl, tweet.longitude, tweet.latitude);
 			updatedTweets.add(updatedTweet);
 		}
@@ -1102,90 +1084,4 @@ public class DBConnector {
 		return updatedGroup;
 	}
 
-	/**
-	 * @param tweetID
-	 * @param groupID
-	 * @param userID
-	 * @return returns the status_id of the last published tweet in this tweetgroup
-	 */
-	public static long getReplyID(int tweetID, int groupID, int userID) {	
-		TweetGroup group = DBConnector.getTweetGroupForUser(userID, groupID);
-		List<Tweet> tweets = group.tweets;
-		long replyID = -1;
-		Tweet before = null;
-		for (Tweet tweet : tweets) {
-			if (tweet.tweetID == tweetID && before != null) {
-				replyID = before.statusID;
-				break;
-			}
-			before = tweet;
-		}
-		return replyID;
-//		try {
-//			connection.setAutoCommit(false);
-//			Statement stmt = connection.createStatement();
-//			String sql = "SELECT status_id FROM tweets WHERE (group_id = '" + groupID + "' AND user_id = '" + userID
-//					+ "' AND tweet_id = '"+(tweetID-1)+"')";
-//			ResultSet result = stmt.executeQuery(sql);
-//			long replyID = result.getLong(1);
-//			stmt.close();
-//			connection.commit();
-//			return replyID;
-//		} catch (SQLException e) {
-//			System.out.print("DBConnector.getReplyID: ");
-//			e.printStackTrace();
-//			return -1;
-//		}
-	}
-
-	public static String getFlashcard(int groupID) {
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "SELECT flashcard FROM groups WHERE (group_id = '"+groupID+"')";
-			ResultSet result = stmt.executeQuery(sql);
-			String toReturn = result.getString(1);
-			stmt.close();
-			connection.commit();
-			return toReturn;
-		} catch (SQLException e) {
-			System.out.print("DBConnector.getFlashcard: ");
-			e.printStackTrace();
-			return null;
-		}
-	}
-
-
-    /**
-     * Updates a Users token and secret
-     * @param userID The user to update
-     * @param oAuthToken
-     * @param oAuthTokenSecret
-     * @return true if update was successful and false if not
-     */
-	public static boolean updateUserTokens(int userID, String oAuthToken , String oAuthTokenSecret){
-
-		try {
-			connection.setAutoCommit(false);
-			Statement stmt = connection.createStatement();
-			String sql = "UPDATE users SET oauth_token = '" + oAuthToken + "' WHERE (user_id = '" + userID + "')";
-			stmt.executeUpdate(sql);
-			stmt.close();
-
-			stmt = connection.createStatement();
-			sql = "UPDATE users SET oauth_token_secret = '" + oAuthTokenSecret + "' WHERE (user_id = '" + userID + "')";
-			stmt.executeUpdate(sql);
-			stmt.close();
-
-			connection.commit();
-		} catch (SQLException e) {
-			System.out.println("DBConnector.updateUserTokens: couldnt update user" + userID);
-			e.printStackTrace();
-			return false;
-		}
-		return true;
-
-
-	}
-	
 }
@@ -0,0 +1,74 @@
+package autoChirp.database;
+
+/**
+ * Progress and result of an online backup (see DatabaseBackup).
+ */
+public class BackupStatus {
+
+	/**
+	 * path of the backup file
+	 */
+	public String file;
+
+	/**
+	 * epoch milliseconds the backup was started at
+	 */
+	public long started;
+
+	/**
+	 * milliseconds the backup took (so far, while running)
+	 */
+	public long duration;
+
+	/**
+	 * size of the database in bytes when the backup was started
+	 */
+	public long bytesTotal;
+
+	/**
+	 * bytes written to the backup file (so far, while running)
+	 */
+	public long bytesWritten;
+
+	/**
+	 * the backup is still running
+	 */
+	public boolean running;
+
+	/**
+	 * the backup file is complete
+	 */
+	public boolean succeeded;
+
+	/**
+	 * message of the error the backup failed with, or null
+	 */
+	public String error;
+
+	/**
+	 * @return the written share of bytesTotal in percent (0 to 100)
+	 */
+	public int getPercent() {
+		if (succeeded) {
+			return 100;
+		}
+		return (bytesTotal == 0) ? 0 : (int) Math.min(99, bytesWritten * 100 / bytesTotal);
+	}
+
+	/**
+	 * @return a copy of this status
+	 */
+	public BackupStatus copy() {
+		BackupStatus copy = new BackupStatus();
+		copy.file = file;
+		copy.started = started;
+		copy.duration = duration;
+		copy.bytesTotal = bytesTotal;
+		copy.bytesWritten = bytesWritten;
+		copy.running = running;
+		copy.succeeded = succeeded;
+		copy.error = error;
+		return copy;
+	}
+
+}
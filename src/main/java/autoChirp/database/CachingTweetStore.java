@@ -0,0 +1,433 @@
+package autoChirp.database;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import autoChirp.tweetCreation.Tweet;
+import autoChirp.tweetCreation.TweetGroup;
+
+/**
+ * A TweetStore which reads TweetGroups through a GroupCache and hands all
+ * other calls to the wrapped store. Every write that changes a group or one
+ * of its tweets invalidates the cached group.
+ *
+ * Status updates queued with the *Later methods are written behind by the
+ * wrapped store, so a group missing in the cache is only read after the
+ * queued updates were flushed.
+ */
+public class CachingTweetStore implements TweetStore {
+
+	private final TweetStore delegate;
+	private final GroupCache cache;
+
+	/**
+	 * @param delegate
+	 *            the store to cache
+	 * @param config
+	 *            groupCacheSize and groupCacheTweets
+	 */
+	public CachingTweetStore(TweetStore delegate, DBConfig config) {
+		this.delegate = delegate;
+		this.cache = new GroupCache(config.groupCacheSize, config.groupCacheTweets);
+	}
+
+	/**
+	 * @return the cached store
+	 */
+	public TweetStore getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * @return the metrics of the cache, see GroupCache.getMetrics()
+	 */
+	public Map<String, Number> getMetrics() {
+		return cache.getMetrics();
+	}
+
+	@Override
+	public void createOutputTables(String dbCreationFileName) {
+		delegate.createOutputTables(dbCreationFileName);
+		cache.clear();
+	}
+
+	@Override
+	public TweetGroup getTweetGroupForUser(int userID, int groupID) {
+		return getTweetGroupForUser(userID, groupID, true);
+	}
+
+	@Override
+	public TweetGroup getTweetGroupForUser(int userID, int groupID, boolean withTweets) {
+		TweetGroup group = cache.get(userID, groupID, withTweets);
+		if (group != null) {
+			return group;
+		}
+		if (!withTweets) {
+			return delegate.getTweetGroupForUser(userID, groupID, false);
+		}
+		long generation = cache.generation();
+		delegate.flushStatusUpdates();
+		group = delegate.getTweetGroupForUser(userID, groupID, true);
+		if (group != null) {
+			cache.put(userID, group, generation);
+		}
+		return group;
+	}
+
+	/**
+	 * only groups without archived tweets are cached, groups with them are
+	 * read from the store
+	 */
+	@Override
+	public TweetGroup getTweetGroupForUser(int userID, int groupID, boolean withTweets, boolean withArchive) {
+		if (!withArchive || !withTweets) {
+			return getTweetGroupForUser(userID, groupID, withTweets);
+		}
+		delegate.flushStatusUpdates();
+		return delegate.getTweetGroupForUser(userID, groupID, true, true);
+	}
+
+	@Override
+	public List<Integer> deleteUser(int userID) {
+		List<Integer> toReturn = delegate.deleteUser(userID);
+		cache.invalidateUser(userID);
+		return toReturn;
+	}
+
+	@Override
+	public BackupStatus backup(String file) {
+		return delegate.backup(file);
+	}
+
+	@Override
+	public boolean startBackup() {
+		return delegate.startBackup();
+	}
+
+	@Override
+	public BackupStatus getBackupStatus() {
+		return delegate.getBackupStatus();
+	}
+
+	@Override
+	public void close() {
+		delegate.close();
+		cache.clear();
+	}
+
+	@Override
+	public int migrate() {
+		return delegate.migrate();
+	}
+
+	@Override
+	public int checkForUser(long twitter_id) {
+		return delegate.checkForUser(twitter_id);
+	}
+
+	@Override
+	public int insertNewUser(long twitterID, String oauthToken, String oauthTokenSecret) {
+		return delegate.insertNewUser(twitterID, oauthToken, oauthTokenSecret);
+	}
+
+	@Override
+	public String[] getUserConfig(int userID) {
+		return delegate.getUserConfig(userID);
+	}
+
+	@Override
+	public int getRegisteredUsers() {
+		return delegate.getRegisteredUsers();
+	}
+
+	@Override
+	public int insertTweetGroup(TweetGroup tweetGroup, int userID) {
+		return delegate.insertTweetGroup(tweetGroup, userID);
+	}
+
+	@Override
+	public boolean updateGroupStatus(int groupID, boolean enabled, int userID) {
+		boolean toReturn = delegate.updateGroupStatus(groupID, enabled, userID);
+		cache.invalidate(userID, groupID);
+		return toReturn;
+	}
+
+	@Override
+	public boolean flagAsScheduled(int tweetID, int userID) {
+		boolean toReturn = delegate.flagAsScheduled(tweetID, userID);
+		cache.invalidateTweet(tweetID);
+		return toReturn;
+	}
+
+	@Override
+	public boolean flagAsTweeted(int tweetID, int userID) {
+		boolean toReturn = delegate.flagAsTweeted(tweetID, userID);
+		cache.invalidateTweet(tweetID);
+		return toReturn;
+	}
+
+	@Override
+	public void flagAsScheduledLater(int tweetID, int userID) {
+		delegate.flagAsScheduledLater(tweetID, userID);
+		cache.invalidateTweet(tweetID);
+	}
+
+	@Override
+	public void addStatusIDLater(int tweetID, long statusId) {
+		delegate.addStatusIDLater(tweetID, statusId);
+		cache.invalidateTweet(tweetID);
+	}
+
+	@Override
+	public boolean flushStatusUpdates() {
+		return delegate.flushStatusUpdates();
+	}
+
+	@Override
+	public void deleteGroup(int groupID, int userID) {
+		delegate.deleteGroup(groupID, userID);
+		cache.invalidate(userID, groupID);
+	}
+
+	@Override
+	public void deleteTweet(int tweetID, int userID) {
+		delegate.deleteTweet(tweetID, userID);
+		cache.invalidateTweet(tweetID);
+	}
+
+	/**
+	 * the archived tweets were cached with their groups, so all groups are
+	 * dropped if any tweet was archived
+	 */
+	@Override
+	public int archiveTweets(long before) {
+		int toReturn = delegate.archiveTweets(before);
+		if (toReturn > 0) {
+			cache.clear();
+		}
+		return toReturn;
+	}
+
+	@Override
+	public List<Integer> deleteGroups(Collection<Integer> groupIDs, int userID) {
+		List<Integer> toReturn = delegate.deleteGroups(groupIDs, userID);
+		for (Integer groupID : groupIDs) {
+			cache.invalidate(userID, groupID);
+		}
+		return toReturn;
+	}
+
+	@Override
+	public List<Integer> deleteTweets(Collection<Integer> tweetIDs, int userID) {
+		List<Integer> toReturn = delegate.deleteTweets(tweetIDs, userID);
+		for (Integer tweetID : tweetIDs) {
+			cache.invalidateTweet(tweetID);
+		}
+		return toReturn;
+	}
+
+	@Override
+	public List<Tweet> getTweetsForUser(int userID, boolean scheduled, boolean tweeted, int groupID) {
+		return delegate.getTweetsForUser(userID, scheduled, tweeted, groupID);
+	}
+
+	@Override
+	public List<Tweet> getTweetsForUser(int userID, boolean scheduled, boolean tweeted) {
+		return delegate.getTweetsForUser(userID, scheduled, tweeted);
+	}
+
+	@Override
+	public List<Tweet> getTweetsForUser(int userID) {
+		return delegate.getTweetsForUser(userID);
+	}
+
+	@Override
+	public List<Tweet> getUpcomingTweets() {
+		return delegate.getUpcomingTweets();
+	}
+
+	@Override
+	public List<Tweet> getLatestTweets() {
+		return delegate.getLatestTweets();
+	}
+
+	@Override
+	public List<Tweet> getLatestTweets(boolean withArchive) {
+		return delegate.getLatestTweets(withArchive);
+	}
+
+	@Override
+	public Page<Tweet> getTweetsPage(int userID, int groupID, String cursor, boolean backward, int size,
+			boolean withArchive) {
+		return delegate.getTweetsPage(userID, groupID, cursor, backward, size, withArchive);
+	}
+
+	@Override
+	public Page<TweetGroup> getGroupsPage(int userID, String cursor, boolean backward, int size) {
+		return delegate.getGroupsPage(userID, cursor, backward, size);
+	}
+
+	@Override
+	public TweetCounts getTweetCounts(int userID) {
+		return delegate.getTweetCounts(userID);
+	}
+
+	@Override
+	public Map<Integer, TweetCounts> getTweetCounts(int userID, Collection<Integer> groupIDs) {
+		return delegate.getTweetCounts(userID, groupIDs);
+	}
+
+	@Override
+	public int getScheduledTweets() {
+		return delegate.getScheduledTweets();
+	}
+
+	@Override
+	public int getPublishedTweets() {
+		return delegate.getPublishedTweets();
+	}
+
+	@Override
+	public int getAllTweets() {
+		return delegate.getAllTweets();
+	}
+
+	@Override
+	public List<Integer> getGroupIDsForUser(int userID) {
+		return delegate.getGroupIDsForUser(userID);
+	}
+
+	@Override
+	public Tweet getTweetByID(int tweetID, int userID) {
+		return delegate.getTweetByID(tweetID, userID);
+	}
+
+	@Override
+	public Tweet getTweetByID(int tweetID) {
+		return delegate.getTweetByID(tweetID);
+	}
+
+	@Override
+	public String getGroupTitle(int groupID) {
+		return delegate.getGroupTitle(groupID);
+	}
+
+	@Override
+	public String getGroupTitle(int groupID, int userID) {
+		return delegate.getGroupTitle(groupID, userID);
+	}
+
+	@Override
+	public void editGroup(int groupID, String title, String description, int userID, String flashcard) {
+		delegate.editGroup(groupID, title, description, userID, flashcard);
+		cache.invalidate(userID, groupID);
+	}
+
+	@Override
+	public void editTweet(int tweetID, String content, int userID, String imageUrl, float longitude, float latitude,
+			String tweetDate) {
+		delegate.editTweet(tweetID, content, userID, imageUrl, longitude, latitude, tweetDate);
+		cache.invalidateTweet(tweetID);
+	}
+
+	@Override
+	public void addStatusID(int tweetID, long statusId) {
+		delegate.addStatusID(tweetID, statusId);
+		cache.invalidateTweet(tweetID);
+	}
+
+	@Override
+	public int addTweetToGroup(int userID, Tweet tweet, int groupID) {
+		int toReturn = delegate.addTweetToGroup(userID, tweet, groupID);
+		cache.invalidate(userID, groupID);
+		return toReturn;
+	}
+
+	@Override
+	public boolean isEnabledGroup(int groupID, int userID) {
+		return delegate.isEnabledGroup(groupID, userID);
+	}
+
+	@Override
+	public boolean isThreadedGroup(int groupID, int userID) {
+		return delegate.isThreadedGroup(groupID, userID);
+	}
+
+	@Override
+	public boolean setThreaded(int groupID, int userID, boolean threaded) {
+		boolean toReturn = delegate.setThreaded(groupID, userID, threaded);
+		cache.invalidate(userID, groupID);
+		return toReturn;
+	}
+
+	@Override
+	public int forEachSchedulableTweet(BiConsumer<Tweet, Integer> consumer) {
+		return delegate.forEachSchedulableTweet(consumer);
+	}
+
+	@Override
+	public int forEachSchedulableTweet(long from, long to, BiConsumer<Tweet, Integer> consumer) {
+		return delegate.forEachSchedulableTweet(from, to, consumer);
+	}
+
+	@Override
+	public int forEachMisfiredTweet(long before, BiConsumer<Tweet, Integer> consumer) {
+		return delegate.forEachMisfiredTweet(before, consumer);
+	}
+
+	/**
+	 * skipped tweets lose their scheduled flag
+	 */
+	@Override
+	public void recordMisfires(List<Misfire> misfires) {
+		delegate.recordMisfires(misfires);
+		for (Misfire misfire : misfires) {
+			if (Misfire.SKIPPED.equals(misfire.action)) {
+				cache.invalidateTweet(misfire.tweetID);
+			}
+		}
+	}
+
+	@Override
+	public List<Misfire> getMisfires(int userID, int limit) {
+		return delegate.getMisfires(userID, limit);
+	}
+
+	@Override
+	public boolean claimTweet(int tweetID, int userID, String node, long now, long leaseTime) {
+		return delegate.claimTweet(tweetID, userID, node, now, leaseTime);
+	}
+
+	@Override
+	public void completeLease(int tweetID, String node) {
+		delegate.completeLease(tweetID, node);
+	}
+
+	@Override
+	public int forEachExpiredLease(long now, BiConsumer<Tweet, Integer> consumer) {
+		return delegate.forEachExpiredLease(now, consumer);
+	}
+
+	@Override
+	public Map<Integer, List<TweetGroup>> getAllEnabledGroups() {
+		return delegate.getAllEnabledGroups();
+	}
+
+	@Override
+	public long getReplyID(int tweetID, int groupID, int userID) {
+		return delegate.getReplyID(tweetID, groupID, userID);
+	}
+
+	@Override
+	public String getFlashcard(int groupID) {
+		return delegate.getFlashcard(groupID);
+	}
+
+	@Override
+	public boolean updateUserTokens(int userID, String oAuthToken, String oAuthTokenSecret) {
+		return delegate.updateUserTokens(userID, oAuthToken, oAuthTokenSecret);
+	}
+
+}
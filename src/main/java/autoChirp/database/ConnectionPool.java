@@ -0,0 +1,231 @@
+package autoChirp.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Manages the connections to the SQLite database: a small pool of read-only
+ * connections and one dedicated writer connection. The database is switched to
+ * WAL journal mode, so readers work on a consistent snapshot and never wait for
+ * the writer (and vice versa).
+ *
+ * Both kinds of connections are reentrant per thread: a thread that already
+ * holds a reader gets the same reader again, and a thread holding the writer
+ * reads through the writer, so it sees its own uncommitted changes.
+ *
+ * Every connection has its own StatementCache, see prepare().
+ */
+public class ConnectionPool {
+
+	private final Connection writer;
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private final BlockingQueue<Connection> readers;
+	private final Map<Connection, StatementCache> caches = new IdentityHashMap<Connection, StatementCache>();
+	private final ThreadLocal<ReadLease> leases = new ThreadLocal<ReadLease>();
+	private final DBConfig config;
+	private final String url;
+
+	/**
+	 * the reader held by a thread and the number of nested acquisitions
+	 */
+	private static class ReadLease {
+		private Connection connection;
+		private int depth;
+	}
+
+	/**
+	 * opens the writer and config.readPoolSize reader connections to the given
+	 * database file and applies the configured PRAGMAs
+	 *
+	 * @param dbFilePath
+	 *            file to database
+	 * @param config
+	 *            pool size and PRAGMA settings
+	 * @throws SQLException
+	 *             if a connection could not be opened
+	 */
+	public ConnectionPool(String dbFilePath, DBConfig config) throws SQLException {
+		this.config = config;
+		url = "jdbc:sqlite:" + dbFilePath;
+		// the writer is opened first, it creates the file and enables WAL
+		writer = DriverManager.getConnection(url);
+		caches.put(writer, new StatementCache(writer, config.statementCacheSize));
+		execute(writer, "PRAGMA journal_mode = WAL");
+		applyPragmas(writer);
+		writer.setAutoCommit(false);
+		int size = Math.max(1, config.readPoolSize);
+		readers = new ArrayBlockingQueue<Connection>(size);
+		for (int i = 0; i < size; i++) {
+			Connection reader = DriverManager.getConnection(url);
+			caches.put(reader, new StatementCache(reader, config.statementCacheSize));
+			applyPragmas(reader);
+			execute(reader, "PRAGMA query_only = 1");
+			readers.add(reader);
+		}
+	}
+
+	/**
+	 * opens a connection outside of the pool, with the configured PRAGMAs and
+	 * in auto-commit mode, for long running work which must not hold a
+	 * pooled connection (see DatabaseBackup). The caller closes it.
+	 *
+	 * @return a new connection to the database
+	 * @throws SQLException
+	 *             if the connection could not be opened
+	 */
+	public Connection openDedicated() throws SQLException {
+		Connection connection = DriverManager.getConnection(url);
+		try {
+			applyPragmas(connection);
+		} catch (SQLException e) {
+			connection.close();
+			throw e;
+		}
+		return connection;
+	}
+
+	private void applyPragmas(Connection connection) throws SQLException {
+		execute(connection, "PRAGMA busy_timeout = " + config.busyTimeout);
+		execute(connection, "PRAGMA cache_size = " + config.cacheSize);
+		execute(connection, "PRAGMA mmap_size = " + config.mmapSize);
+		execute(connection, "PRAGMA synchronous = " + config.synchronous);
+	}
+
+	private static void execute(Connection connection, String sql) throws SQLException {
+		Statement stmt = connection.createStatement();
+		try {
+			stmt.execute(sql);
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * returns a read-only connection. Every call has to be paired with
+	 * releaseRead(), ideally in a finally-block.
+	 *
+	 * @return a connection for SELECT statements
+	 * @throws SQLException
+	 *             if no reader became available within the busy-timeout
+	 */
+	public Connection acquireRead() throws SQLException {
+		if (writeLock.isHeldByCurrentThread()) {
+			return writer;
+		}
+		ReadLease lease = leases.get();
+		if (lease != null) {
+			lease.depth++;
+			return lease.connection;
+		}
+		Connection connection;
+		try {
+			connection = readers.poll(config.busyTimeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("interrupted while waiting for a reader connection");
+		}
+		if (connection == null) {
+			throw new SQLException("no reader connection available after " + config.busyTimeout + "ms");
+		}
+		lease = new ReadLease();
+		lease.connection = connection;
+		lease.depth = 1;
+		leases.set(lease);
+		return connection;
+	}
+
+	/**
+	 * hands a connection obtained by acquireRead() back to the pool
+	 *
+	 * @param connection
+	 *            the connection to release
+	 */
+	public void releaseRead(Connection connection) {
+		if (connection == writer) {
+			return;
+		}
+		ReadLease lease = leases.get();
+		if (lease == null || lease.connection != connection) {
+			return;
+		}
+		if (--lease.depth == 0) {
+			leases.remove();
+			readers.offer(connection);
+		}
+	}
+
+	/**
+	 * returns the writer connection (autoCommit is always off) and blocks all
+	 * other writing threads until releaseWrite() is called. Callers commit
+	 * their own changes, everything left uncommitted is rolled back on
+	 * release.
+	 *
+	 * @return the writer connection
+	 */
+	public Connection acquireWrite() {
+		writeLock.lock();
+		return writer;
+	}
+
+	/**
+	 * releases the writer connection obtained by acquireWrite()
+	 *
+	 * @param connection
+	 *            the writer connection
+	 */
+	public void releaseWrite(Connection connection) {
+		try {
+			if (writeLock.getHoldCount() == 1) {
+				connection.rollback();
+			}
+		} catch (SQLException e) {
+			System.out.print("ConnectionPool.releaseWrite: ");
+			e.printStackTrace();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * returns a cached prepared statement for the given SQL. The connection
+	 * has to be held by the calling thread (see acquireRead() and
+	 * acquireWrite()).
+	 *
+	 * @param connection
+	 *            a connection of this pool
+	 * @param sql
+	 *            the SQL with ?-placeholders
+	 * @return a prepared statement with cleared parameters
+	 * @throws SQLException
+	 *             if the statement could not be prepared
+	 */
+	public PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+		return caches.get(connection).prepare(sql);
+	}
+
+	/**
+	 * closes all connections of this pool
+	 */
+	public void close() {
+		for (Map.Entry<Connection, StatementCache> entry : caches.entrySet()) {
+			entry.getValue().clear();
+			Connection connection = entry.getKey();
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				System.out.print("ConnectionPool.close: ");
+				e.printStackTrace();
+			}
+		}
+	}
+
+}
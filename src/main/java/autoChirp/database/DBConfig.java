@@ -0,0 +1,138 @@
+package autoChirp.database;
+
+/**
+ * Holds the tuning parameters of the database layer. The defaults are suitable
+ * for tests and small installations, the application overrides them from its
+ * properties (autochirp.database.*) on startup.
+ */
+public class DBConfig {
+
+	/**
+	 * value of store for the SQLiteTweetStore
+	 */
+	public static final String SQLITE = "sqlite";
+
+	/**
+	 * value of store for the MemoryTweetStore
+	 */
+	public static final String MEMORY = "memory";
+
+	/**
+	 * the TweetStore behind DBConnector, SQLITE or MEMORY
+	 */
+	public String store = SQLITE;
+
+	/**
+	 * number of read-only connections kept open next to the single writer
+	 */
+	public int readPoolSize = 4;
+
+	/**
+	 * milliseconds a connection waits on a locked database before failing
+	 */
+	public int busyTimeout = 5000;
+
+	/**
+	 * value for PRAGMA cache_size (negative values are KiB, positive values
+	 * pages)
+	 */
+	public int cacheSize = -8000;
+
+	/**
+	 * value for PRAGMA mmap_size in bytes, 0 disables memory mapped I/O
+	 */
+	public long mmapSize = 0;
+
+	/**
+	 * value for PRAGMA synchronous (OFF, NORMAL or FULL)
+	 */
+	public String synchronous = "NORMAL";
+
+	/**
+	 * number of prepared statements cached per connection
+	 */
+	public int statementCacheSize = 64;
+
+	/**
+	 * number of tweets written with one JDBC batch when a TweetGroup is
+	 * inserted, and number of tweets archived in one transaction
+	 */
+	public int batchSize = 500;
+
+	/**
+	 * commit after every batch and let other writers in between, instead of
+	 * inserting a TweetGroup in one transaction
+	 */
+	public boolean commitBatches = false;
+
+	/**
+	 * milliseconds between two flushes of the queued status updates of tweets
+	 * (see StatusWriter)
+	 */
+	public long statusFlushInterval = 200;
+
+	/**
+	 * milliseconds the upcoming and latest tweets of the statistics page are
+	 * kept in memory
+	 */
+	public long statsSnapshotTtl = 10000;
+
+	/**
+	 * max. number of TweetGroups kept in the GroupCache, 0 disables the cache
+	 */
+	public int groupCacheSize = 256;
+
+	/**
+	 * max. number of tweets of all TweetGroups kept in the GroupCache
+	 */
+	public int groupCacheTweets = 50000;
+
+	/**
+	 * milliseconds after their date published tweets are moved to the
+	 * archive (see TweetArchiver), 0 disables archiving
+	 */
+	public long archiveAfter = 30L * 24 * 60 * 60 * 1000;
+
+	/**
+	 * milliseconds between two runs of the TweetArchiver
+	 */
+	public long archiveInterval = 60 * 60 * 1000;
+
+	/**
+	 * directory the scheduled backups are written to (see DatabaseBackup)
+	 */
+	public String backupDir = "backups";
+
+	/**
+	 * milliseconds between two scheduled backups, 0 disables them
+	 */
+	public long backupInterval = 0;
+
+	/**
+	 * number of backups kept in backupDir, 0 keeps all
+	 */
+	public int backupKeep = 7;
+
+	/**
+	 * number of database pages a backup writes before it pauses
+	 */
+	public int backupStepPages = 1000;
+
+	/**
+	 * milliseconds a backup pauses after every backupStepPages pages
+	 */
+	public long backupStepSleep = 20;
+
+	/**
+	 * measure the latency, rows and errors of every call to the store (see
+	 * QueryMetrics)
+	 */
+	public boolean queryMetrics = true;
+
+	/**
+	 * calls to the store slower than this many milliseconds are logged, 0
+	 * disables the log
+	 */
+	public long slowQueryThreshold = 250;
+
+}
@@ -0,0 +1,293 @@
+package autoChirp.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.sqlite.ProgressHandler;
+
+/**
+ * Backs up the SQLite database while the application keeps running. The
+ * backup is written by VACUUM INTO on a connection of its own, which reads
+ * one consistent snapshot of the database. In WAL journal mode readers never
+ * block the writer, so tweets are flagged and published while a backup runs.
+ * The copy is written to a '.part' file, which is renamed when it is
+ * complete, so a backup file is never torn.
+ *
+ * Backups are throttled: after every backupStepPages pages written the backup
+ * pauses for backupStepSleep milliseconds, so it doesn't saturate the disk the
+ * writer commits to. They are started by an admin (see startBackup()) and
+ * every backupInterval milliseconds, unless it is 0. Only the newest
+ * backupKeep files in backupDir are kept.
+ */
+public class DatabaseBackup {
+
+	private static final String PREFIX = "autochirp-";
+	private static final String SUFFIX = ".db";
+	private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+	// virtual machine instructions between two calls of the progress handler
+	private static final int PROGRESS_STEP = 10000;
+
+	private final ConnectionPool pool;
+	private final DBConfig config;
+	private final ScheduledExecutorService executor;
+	private final AtomicBoolean running = new AtomicBoolean();
+	private volatile BackupStatus status;
+	private volatile boolean closed;
+
+	/**
+	 * starts the scheduled backups in a background thread if
+	 * config.backupInterval is not 0, the first one after one interval
+	 *
+	 * @param pool
+	 *            the pool of the database to back up
+	 * @param config
+	 *            backup directory, interval, throttling and number of kept
+	 *            backups
+	 */
+	public DatabaseBackup(ConnectionPool pool, DBConfig config) {
+		this.pool = pool;
+		this.config = config;
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "DatabaseBackup");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (config.backupInterval > 0) {
+			executor.scheduleWithFixedDelay(() -> {
+				if (running.compareAndSet(false, true)) {
+					backupToDir();
+				}
+			}, config.backupInterval, config.backupInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * writes a backup of the database to the given file, blocks until it is
+	 * complete. An existing file is replaced.
+	 *
+	 * @param file
+	 *            path of the backup file
+	 * @return the status of the finished backup, with an error if another
+	 *         backup is running
+	 */
+	public BackupStatus backup(String file) {
+		if (closed || !running.compareAndSet(false, true)) {
+			BackupStatus busy = new BackupStatus();
+			busy.file = file;
+			busy.error = closed ? "the database is closed" : "another backup is running";
+			return busy;
+		}
+		try {
+			return write(file);
+		} finally {
+			running.set(false);
+		}
+	}
+
+	/**
+	 * starts a backup into backupDir in the background, see getStatus() for
+	 * its progress
+	 *
+	 * @return true if the backup was started, false if another backup is
+	 *         running
+	 */
+	public boolean startBackup() {
+		if (closed || !running.compareAndSet(false, true)) {
+			return false;
+		}
+		try {
+			executor.execute(this::backupToDir);
+			return true;
+		} catch (RejectedExecutionException e) {
+			running.set(false);
+			return false;
+		}
+	}
+
+	/**
+	 * @return a copy of the status of the running or last backup, null if
+	 *         there was none yet
+	 */
+	public BackupStatus getStatus() {
+		BackupStatus current = status;
+		if (current == null) {
+			return null;
+		}
+		synchronized (current) {
+			return current.copy();
+		}
+	}
+
+	/**
+	 * aborts a running backup and stops the background thread
+	 */
+	public void close() {
+		closed = true;
+		executor.shutdown();
+		try {
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * backs up into a new file in backupDir and removes the old backups, the
+	 * caller has set 'running'
+	 */
+	private void backupToDir() {
+		try {
+			String file = new File(config.backupDir, PREFIX + LocalDateTime.now().format(FILE_DATE) + SUFFIX)
+					.getPath();
+			if (write(file).succeeded) {
+				prune();
+			}
+		} finally {
+			running.set(false);
+		}
+	}
+
+	private BackupStatus write(String file) {
+		BackupStatus current = new BackupStatus();
+		current.file = file;
+		current.started = System.currentTimeMillis();
+		current.running = true;
+		status = current;
+		File target = new File(file).getAbsoluteFile();
+		File part = new File(target.getPath() + ".part");
+		Connection connection = null;
+		try {
+			target.getParentFile().mkdirs();
+			Files.deleteIfExists(part.toPath());
+			connection = pool.openDedicated();
+			long pageSize = pragma(connection, "page_size");
+			long total = pragma(connection, "page_count") * pageSize;
+			synchronized (current) {
+				current.bytesTotal = total;
+			}
+			ProgressHandler.setHandler(connection, PROGRESS_STEP, new Throttle(current, part, pageSize));
+			PreparedStatement stmt = connection.prepareStatement("VACUUM INTO ?");
+			stmt.setString(1, part.getPath());
+			stmt.execute();
+			stmt.close();
+			Files.move(part.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			synchronized (current) {
+				current.bytesWritten = target.length();
+				current.succeeded = true;
+			}
+			System.out.println("DatabaseBackup: wrote " + target.length() + " bytes to " + file + " in "
+					+ (System.currentTimeMillis() - current.started) + "ms");
+		} catch (SQLException | IOException e) {
+			System.out.print("DatabaseBackup.backup: ");
+			e.printStackTrace();
+			synchronized (current) {
+				current.error = closed ? "aborted" : e.getMessage();
+			}
+			part.delete();
+		} finally {
+			if (connection != null) {
+				try {
+					ProgressHandler.clearHandler(connection);
+					connection.close();
+				} catch (SQLException e) {
+					System.out.print("DatabaseBackup.backup: ");
+					e.printStackTrace();
+				}
+			}
+			synchronized (current) {
+				current.duration = System.currentTimeMillis() - current.started;
+				current.running = false;
+			}
+		}
+		synchronized (current) {
+			return current.copy();
+		}
+	}
+
+	/**
+	 * deletes all but the newest backupKeep backups in backupDir
+	 */
+	private void prune() {
+		if (config.backupKeep <= 0) {
+			return;
+		}
+		File[] backups = new File(config.backupDir)
+				.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+		if (backups == null || backups.length <= config.backupKeep) {
+			return;
+		}
+		// the names start with the date, so they sort from old to new
+		Arrays.sort(backups);
+		for (int i = 0; i < backups.length - config.backupKeep; i++) {
+			if (!backups[i].delete()) {
+				System.out.println("DatabaseBackup: could not delete " + backups[i]);
+			}
+		}
+	}
+
+	private static long pragma(Connection connection, String name) throws SQLException {
+		Statement stmt = connection.createStatement();
+		try {
+			ResultSet result = stmt.executeQuery("PRAGMA " + name);
+			return result.next() ? result.getLong(1) : 0;
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * called by SQLite while VACUUM INTO runs: records the progress, pauses
+	 * after every backupStepPages pages and aborts the backup on close()
+	 */
+	private class Throttle extends ProgressHandler {
+
+		private final BackupStatus current;
+		private final File part;
+		private final long stepBytes;
+		private long pausedAt;
+
+		Throttle(BackupStatus current, File part, long pageSize) {
+			this.current = current;
+			this.part = part;
+			this.stepBytes = Math.max(1, config.backupStepPages) * pageSize;
+		}
+
+		@Override
+		protected int progress() {
+			if (closed) {
+				return 1;
+			}
+			long written = part.length();
+			synchronized (current) {
+				current.bytesWritten = written;
+				current.duration = System.currentTimeMillis() - current.started;
+			}
+			if (config.backupStepSleep > 0 && written - pausedAt >= stepBytes) {
+				pausedAt = written;
+				try {
+					Thread.sleep(config.backupStepSleep);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return 1;
+				}
+			}
+			return 0;
+		}
+	}
+
+}
@@ -0,0 +1,210 @@
+package autoChirp.database;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import autoChirp.tweetCreation.Tweet;
+import autoChirp.tweetCreation.TweetGroup;
+
+/**
+ * A bounded cache of TweetGroups (with their tweets) keyed by userID and
+ * groupID. The least recently used groups are evicted as soon as more than
+ * maxGroups groups or more than maxTweets tweets are cached. Groups are copied
+ * on the way in and out, so callers may change what they get.
+ *
+ * Every invalidation increments a generation counter. A group read from the
+ * store is only put into the cache if no invalidation happened since the read
+ * started, so a concurrent write can't be overwritten with stale data.
+ */
+public class GroupCache {
+
+	private final int maxGroups;
+	private final int maxTweets;
+	private final LinkedHashMap<Long, TweetGroup> groups = new LinkedHashMap<Long, TweetGroup>(16, 0.75f, true);
+	// tweetID -> key of the cached group containing the tweet
+	private final Map<Integer, Long> tweetIndex = new HashMap<Integer, Long>();
+	private long generation;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+
+	/**
+	 * @param maxGroups
+	 *            max. number of cached groups
+	 * @param maxTweets
+	 *            max. number of tweets of all cached groups
+	 */
+	public GroupCache(int maxGroups, int maxTweets) {
+		this.maxGroups = maxGroups;
+		this.maxTweets = maxTweets;
+	}
+
+	/**
+	 * returns a copy of the cached group
+	 *
+	 * @param userID
+	 *            userID
+	 * @param groupID
+	 *            groupID
+	 * @param withTweets
+	 *            copy the tweets of the group, too
+	 * @return the cached group, or null if it is not cached
+	 */
+	public synchronized TweetGroup get(int userID, int groupID, boolean withTweets) {
+		TweetGroup group = groups.get(key(userID, groupID));
+		if (group == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return copy(group, withTweets);
+	}
+
+	/**
+	 * @return the current generation, to be passed to put()
+	 */
+	public synchronized long generation() {
+		return generation;
+	}
+
+	/**
+	 * caches a copy of a group read from the store
+	 *
+	 * @param userID
+	 *            userID
+	 * @param group
+	 *            the group with all its tweets
+	 * @param readGeneration
+	 *            generation() before the group was read
+	 */
+	public synchronized void put(int userID, TweetGroup group, long readGeneration) {
+		if (readGeneration != generation || group.tweets.size() > maxTweets) {
+			return;
+		}
+		long key = key(userID, group.groupID);
+		remove(key);
+		groups.put(key, copy(group, true));
+		for (Tweet tweet : group.tweets) {
+			tweetIndex.put(tweet.tweetID, key);
+		}
+		Iterator<Map.Entry<Long, TweetGroup>> eldest = groups.entrySet().iterator();
+		while (groups.size() > maxGroups || tweetIndex.size() > maxTweets) {
+			TweetGroup evicted = eldest.next().getValue();
+			eldest.remove();
+			unindex(evicted);
+			evictions++;
+		}
+	}
+
+	/**
+	 * removes the given group
+	 *
+	 * @param userID
+	 *            userID
+	 * @param groupID
+	 *            groupID
+	 */
+	public synchronized void invalidate(int userID, int groupID) {
+		generation++;
+		invalidations++;
+		remove(key(userID, groupID));
+	}
+
+	/**
+	 * removes the group containing the given tweet
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 */
+	public synchronized void invalidateTweet(int tweetID) {
+		generation++;
+		invalidations++;
+		Long key = tweetIndex.get(tweetID);
+		if (key != null) {
+			remove(key);
+		}
+	}
+
+	/**
+	 * removes all groups of the given user
+	 *
+	 * @param userID
+	 *            userID
+	 */
+	public synchronized void invalidateUser(int userID) {
+		generation++;
+		invalidations++;
+		Iterator<Map.Entry<Long, TweetGroup>> entries = groups.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<Long, TweetGroup> entry = entries.next();
+			if ((int) (entry.getKey() >>> 32) == userID) {
+				entries.remove();
+				unindex(entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * removes all groups
+	 */
+	public synchronized void clear() {
+		generation++;
+		invalidations++;
+		groups.clear();
+		tweetIndex.clear();
+	}
+
+	/**
+	 * @return hits, misses, hitRate (0 to 1), evictions, invalidations, and the
+	 *         number of cached groups and tweets
+	 */
+	public synchronized Map<String, Number> getMetrics() {
+		Map<String, Number> metrics = new LinkedHashMap<String, Number>();
+		metrics.put("hits", hits);
+		metrics.put("misses", misses);
+		metrics.put("hitRate", (hits + misses == 0) ? 0.0 : (double) hits / (hits + misses));
+		metrics.put("evictions", evictions);
+		metrics.put("invalidations", invalidations);
+		metrics.put("groups", groups.size());
+		metrics.put("tweets", tweetIndex.size());
+		return metrics;
+	}
+
+	private void remove(long key) {
+		TweetGroup group = groups.remove(key);
+		if (group != null) {
+			unindex(group);
+		}
+	}
+
+	private void unindex(TweetGroup group) {
+		for (Tweet tweet : group.tweets) {
+			tweetIndex.remove(tweet.tweetID);
+		}
+	}
+
+	private static long key(int userID, int groupID) {
+		return ((long) userID << 32) | (groupID & 0xffffffffL);
+	}
+
+	private static TweetGroup copy(TweetGroup group, boolean withTweets) {
+		TweetGroup copy = new TweetGroup(group.groupID, group.title, group.description, group.enabled,
+				group.threaded);
+		copy.flashcard = group.flashcard;
+		if (withTweets) {
+			for (Tweet tweet : group.tweets) {
+				Tweet tweetCopy = new Tweet(tweet.tweetDate, tweet.content, tweet.tweetID, tweet.groupID,
+						tweet.scheduled, tweet.tweeted, tweet.groupName, tweet.imageUrl, tweet.longitude,
+						tweet.latitude, tweet.statusID);
+				tweetCopy.scheduledAt = tweet.scheduledAt;
+				copy.tweets.add(tweetCopy);
+			}
+			copy.tweetCount = group.tweetCount;
+		}
+		return copy;
+	}
+
+}
@@ -0,0 +1,410 @@
+package autoChirp.database;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import autoChirp.tweetCreation.Tweet;
+import autoChirp.tweetCreation.TweetGroup;
+
+/**
+ * A TweetStore which measures every call to the wrapped store (see
+ * QueryMetrics). Rows are the tweets, groups or users read, written or
+ * deleted, as far as the result tells them.
+ */
+public class InstrumentedTweetStore implements TweetStore {
+
+	private final TweetStore delegate;
+	private final QueryMetrics metrics;
+
+	/**
+	 * @param delegate
+	 *            the store to measure
+	 * @param metrics
+	 *            the metrics to count the calls in
+	 */
+	public InstrumentedTweetStore(TweetStore delegate, QueryMetrics metrics) {
+		this.delegate = delegate;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return the measured store
+	 */
+	public TweetStore getDelegate() {
+		return delegate;
+	}
+
+	@Override
+	public void createOutputTables(String dbCreationFileName) {
+		metrics.run("createOutputTables", () -> delegate.createOutputTables(dbCreationFileName), dbCreationFileName);
+	}
+
+	@Override
+	public int migrate() {
+		return metrics.time("migrate", delegate::migrate, null);
+	}
+
+	@Override
+	public int checkForUser(long twitter_id) {
+		return metrics.time("checkForUser", () -> delegate.checkForUser(twitter_id), id -> (id < 0) ? 0 : 1,
+				twitter_id);
+	}
+
+	@Override
+	public int insertNewUser(long twitterID, String oauthToken, String oauthTokenSecret) {
+		return metrics.time("insertNewUser", () -> delegate.insertNewUser(twitterID, oauthToken, oauthTokenSecret),
+				id -> (id < 0) ? 0 : 1, twitterID);
+	}
+
+	@Override
+	public String[] getUserConfig(int userID) {
+		return metrics.time("getUserConfig", () -> delegate.getUserConfig(userID), config -> 1, userID);
+	}
+
+	@Override
+	public int getRegisteredUsers() {
+		return metrics.time("getRegisteredUsers", delegate::getRegisteredUsers, null);
+	}
+
+	@Override
+	public int insertTweetGroup(TweetGroup tweetGroup, int userID) {
+		return metrics.time("insertTweetGroup", () -> delegate.insertTweetGroup(tweetGroup, userID),
+				groupID -> tweetGroup.tweets.size() + 1, userID);
+	}
+
+	@Override
+	public boolean updateGroupStatus(int groupID, boolean enabled, int userID) {
+		return metrics.time("updateGroupStatus", () -> delegate.updateGroupStatus(groupID, enabled, userID),
+				InstrumentedTweetStore::ofBoolean, groupID, enabled, userID);
+	}
+
+	@Override
+	public boolean flagAsScheduled(int tweetID, int userID) {
+		return metrics.time("flagAsScheduled", () -> delegate.flagAsScheduled(tweetID, userID),
+				InstrumentedTweetStore::ofBoolean, tweetID, userID);
+	}
+
+	@Override
+	public boolean flagAsTweeted(int tweetID, int userID) {
+		return metrics.time("flagAsTweeted", () -> delegate.flagAsTweeted(tweetID, userID),
+				InstrumentedTweetStore::ofBoolean, tweetID, userID);
+	}
+
+	@Override
+	public void flagAsScheduledLater(int tweetID, int userID) {
+		metrics.run("flagAsScheduledLater", () -> delegate.flagAsScheduledLater(tweetID, userID), tweetID, userID);
+	}
+
+	@Override
+	public void addStatusIDLater(int tweetID, long statusId) {
+		metrics.run("addStatusIDLater", () -> delegate.addStatusIDLater(tweetID, statusId), tweetID, statusId);
+	}
+
+	@Override
+	public boolean flushStatusUpdates() {
+		return metrics.time("flushStatusUpdates", delegate::flushStatusUpdates, null);
+	}
+
+	@Override
+	public void deleteGroup(int groupID, int userID) {
+		metrics.run("deleteGroup", () -> delegate.deleteGroup(groupID, userID), groupID, userID);
+	}
+
+	@Override
+	public void deleteTweet(int tweetID, int userID) {
+		metrics.run("deleteTweet", () -> delegate.deleteTweet(tweetID, userID), tweetID, userID);
+	}
+
+	@Override
+	public List<Integer> deleteGroups(Collection<Integer> groupIDs, int userID) {
+		return metrics.time("deleteGroups", () -> delegate.deleteGroups(groupIDs, userID), List::size,
+				groupIDs.size() + " groups", userID);
+	}
+
+	@Override
+	public List<Integer> deleteTweets(Collection<Integer> tweetIDs, int userID) {
+		return metrics.time("deleteTweets", () -> delegate.deleteTweets(tweetIDs, userID), List::size,
+				tweetIDs.size() + " tweets", userID);
+	}
+
+	@Override
+	public int archiveTweets(long before) {
+		return metrics.time("archiveTweets", () -> delegate.archiveTweets(before), archived -> archived, before);
+	}
+
+	@Override
+	public List<Tweet> getTweetsForUser(int userID, boolean scheduled, boolean tweeted, int groupID) {
+		return metrics.time("getTweetsForUser", () -> delegate.getTweetsForUser(userID, scheduled, tweeted, groupID),
+				List::size, userID, scheduled, tweeted, groupID);
+	}
+
+	@Override
+	public List<Tweet> getTweetsForUser(int userID, boolean scheduled, boolean tweeted) {
+		return metrics.time("getTweetsForUser", () -> delegate.getTweetsForUser(userID, scheduled, tweeted),
+				List::size, userID, scheduled, tweeted);
+	}
+
+	@Override
+	public List<Tweet> getTweetsForUser(int userID) {
+		return metrics.time("getTweetsForUser", () -> delegate.getTweetsForUser(userID), List::size, userID);
+	}
+
+	@Override
+	public List<Tweet> getUpcomingTweets() {
+		return metrics.time("getUpcomingTweets", delegate::getUpcomingTweets, List::size);
+	}
+
+	@Override
+	public List<Tweet> getLatestTweets() {
+		return metrics.time("getLatestTweets", () -> delegate.getLatestTweets(), List::size);
+	}
+
+	@Override
+	public List<Tweet> getLatestTweets(boolean withArchive) {
+		return metrics.time("getLatestTweets", () -> delegate.getLatestTweets(withArchive), List::size, withArchive);
+	}
+
+	@Override
+	public Page<Tweet> getTweetsPage(int userID, int groupID, String cursor, boolean backward, int size,
+			boolean withArchive) {
+		return metrics.time("getTweetsPage",
+				() -> delegate.getTweetsPage(userID, groupID, cursor, backward, size, withArchive),
+				page -> page.entries.size(), userID, groupID, cursor, backward, size, withArchive);
+	}
+
+	@Override
+	public Page<TweetGroup> getGroupsPage(int userID, String cursor, boolean backward, int size) {
+		return metrics.time("getGroupsPage", () -> delegate.getGroupsPage(userID, cursor, backward, size),
+				page -> page.entries.size(), userID, cursor, backward, size);
+	}
+
+	@Override
+	public TweetCounts getTweetCounts(int userID) {
+		return metrics.time("getTweetCounts", () -> delegate.getTweetCounts(userID), counts -> 1, userID);
+	}
+
+	@Override
+	public Map<Integer, TweetCounts> getTweetCounts(int userID, Collection<Integer> groupIDs) {
+		return metrics.time("getTweetCounts", () -> delegate.getTweetCounts(userID, groupIDs), Map::size, userID,
+				groupIDs.size() + " groups");
+	}
+
+	@Override
+	public int getScheduledTweets() {
+		return metrics.time("getScheduledTweets", delegate::getScheduledTweets, null);
+	}
+
+	@Override
+	public int getPublishedTweets() {
+		return metrics.time("getPublishedTweets", delegate::getPublishedTweets, null);
+	}
+
+	@Override
+	public int getAllTweets() {
+		return metrics.time("getAllTweets", delegate::getAllTweets, null);
+	}
+
+	@Override
+	public TweetGroup getTweetGroupForUser(int userID, int groupID) {
+		return metrics.time("getTweetGroupForUser", () -> delegate.getTweetGroupForUser(userID, groupID),
+				InstrumentedTweetStore::ofGroup, userID, groupID);
+	}
+
+	@Override
+	public TweetGroup getTweetGroupForUser(int userID, int groupID, boolean withTweets) {
+		return metrics.time("getTweetGroupForUser", () -> delegate.getTweetGroupForUser(userID, groupID, withTweets),
+				InstrumentedTweetStore::ofGroup, userID, groupID, withTweets);
+	}
+
+	@Override
+	public TweetGroup getTweetGroupForUser(int userID, int groupID, boolean withTweets, boolean withArchive) {
+		return metrics.time("getTweetGroupForUser",
+				() -> delegate.getTweetGroupForUser(userID, groupID, withTweets, withArchive),
+				InstrumentedTweetStore::ofGroup, userID, groupID, withTweets, withArchive);
+	}
+
+	@Override
+	public List<Integer> getGroupIDsForUser(int userID) {
+		return metrics.time("getGroupIDsForUser", () -> delegate.getGroupIDsForUser(userID), List::size, userID);
+	}
+
+	@Override
+	public Tweet getTweetByID(int tweetID, int userID) {
+		return metrics.time("getTweetByID", () -> delegate.getTweetByID(tweetID, userID), tweet -> 1, tweetID,
+				userID);
+	}
+
+	@Override
+	public Tweet getTweetByID(int tweetID) {
+		return metrics.time("getTweetByID", () -> delegate.getTweetByID(tweetID), tweet -> 1, tweetID);
+	}
+
+	@Override
+	public String getGroupTitle(int groupID) {
+		return metrics.time("getGroupTitle", () -> delegate.getGroupTitle(groupID), title -> 1, groupID);
+	}
+
+	@Override
+	public String getGroupTitle(int groupID, int userID) {
+		return metrics.time("getGroupTitle", () -> delegate.getGroupTitle(groupID, userID), title -> 1, groupID,
+				userID);
+	}
+
+	@Override
+	public void editGroup(int groupID, String title, String description, int userID, String flashcard) {
+		metrics.run("editGroup", () -> delegate.editGroup(groupID, title, description, userID, flashcard), groupID,
+				userID);
+	}
+
+	@Override
+	public void editTweet(int tweetID, String content, int userID, String imageUrl, float longitude, float latitude,
+			String tweetDate) {
+		metrics.run("editTweet",
+				() -> delegate.editTweet(tweetID, content, userID, imageUrl, longitude, latitude, tweetDate), tweetID,
+				userID);
+	}
+
+	@Override
+	public void addStatusID(int tweetID, long statusId) {
+		metrics.run("addStatusID", () -> delegate.addStatusID(tweetID, statusId), tweetID, statusId);
+	}
+
+	@Override
+	public int addTweetToGroup(int userID, Tweet tweet, int groupID) {
+		return metrics.time("addTweetToGroup", () -> delegate.addTweetToGroup(userID, tweet, groupID),
+				tweetID -> (tweetID < 0) ? 0 : 1, userID, groupID);
+	}
+
+	@Override
+	public boolean isEnabledGroup(int groupID, int userID) {
+		return metrics.time("isEnabledGroup", () -> delegate.isEnabledGroup(groupID, userID), null, groupID, userID);
+	}
+
+	@Override
+	public boolean isThreadedGroup(int groupID, int userID) {
+		return metrics.time("isThreadedGroup", () -> delegate.isThreadedGroup(groupID, userID), null, groupID,
+				userID);
+	}
+
+	@Override
+	public boolean setThreaded(int groupID, int userID, boolean threaded) {
+		return metrics.time("setThreaded", () -> delegate.setThreaded(groupID, userID, threaded),
+				InstrumentedTweetStore::ofBoolean, groupID, userID, threaded);
+	}
+
+	@Override
+	public int forEachSchedulableTweet(BiConsumer<Tweet, Integer> consumer) {
+		return metrics.time("forEachSchedulableTweet", () -> delegate.forEachSchedulableTweet(consumer),
+				tweets -> tweets);
+	}
+
+	@Override
+	public int forEachSchedulableTweet(long from, long to, BiConsumer<Tweet, Integer> consumer) {
+		return metrics.time("forEachSchedulableTweet", () -> delegate.forEachSchedulableTweet(from, to, consumer),
+				tweets -> tweets, from, to);
+	}
+
+	@Override
+	public int forEachMisfiredTweet(long before, BiConsumer<Tweet, Integer> consumer) {
+		return metrics.time("forEachMisfiredTweet", () -> delegate.forEachMisfiredTweet(before, consumer),
+				tweets -> tweets, before);
+	}
+
+	@Override
+	public void recordMisfires(List<Misfire> misfires) {
+		metrics.time("recordMisfires", () -> {
+			delegate.recordMisfires(misfires);
+			return misfires;
+		}, List::size, misfires.size() + " misfires");
+	}
+
+	@Override
+	public List<Misfire> getMisfires(int userID, int limit) {
+		return metrics.time("getMisfires", () -> delegate.getMisfires(userID, limit), List::size, userID, limit);
+	}
+
+	@Override
+	public boolean claimTweet(int tweetID, int userID, String node, long now, long leaseTime) {
+		return metrics.time("claimTweet", () -> delegate.claimTweet(tweetID, userID, node, now, leaseTime),
+				claimed -> claimed ? 1 : 0, tweetID, userID, node);
+	}
+
+	@Override
+	public void completeLease(int tweetID, String node) {
+		metrics.run("completeLease", () -> delegate.completeLease(tweetID, node), tweetID, node);
+	}
+
+	@Override
+	public int forEachExpiredLease(long now, BiConsumer<Tweet, Integer> consumer) {
+		return metrics.time("forEachExpiredLease", () -> delegate.forEachExpiredLease(now, consumer),
+				tweets -> tweets, now);
+	}
+
+	@Override
+	public Map<Integer, List<TweetGroup>> getAllEnabledGroups() {
+		return metrics.time("getAllEnabledGroups", delegate::getAllEnabledGroups, InstrumentedTweetStore::ofGroups);
+	}
+
+	@Override
+	public List<Integer> deleteUser(int userID) {
+		return metrics.time("deleteUser", () -> delegate.deleteUser(userID), List::size, userID);
+	}
+
+	@Override
+	public long getReplyID(int tweetID, int groupID, int userID) {
+		return metrics.time("getReplyID", () -> delegate.getReplyID(tweetID, groupID, userID), null, tweetID,
+				groupID, userID);
+	}
+
+	@Override
+	public String getFlashcard(int groupID) {
+		return metrics.time("getFlashcard", () -> delegate.getFlashcard(groupID), flashcard -> 1, groupID);
+	}
+
+	@Override
+	public boolean updateUserTokens(int userID, String oAuthToken, String oAuthTokenSecret) {
+		return metrics.time("updateUserTokens", () -> delegate.updateUserTokens(userID, oAuthToken, oAuthTokenSecret),
+				InstrumentedTweetStore::ofBoolean, userID);
+	}
+
+	@Override
+	public BackupStatus backup(String file) {
+		return metrics.time("backup", () -> delegate.backup(file), null, file);
+	}
+
+	@Override
+	public boolean startBackup() {
+		return delegate.startBackup();
+	}
+
+	@Override
+	public BackupStatus getBackupStatus() {
+		return delegate.getBackupStatus();
+	}
+
+	@Override
+	public void close() {
+		delegate.close();
+	}
+
+	private static int ofBoolean(boolean changed) {
+		return changed ? 1 : 0;
+	}
+
+	private static int ofGroup(TweetGroup group) {
+		return 1 + group.tweets.size();
+	}
+
+	private static int ofGroups(Map<Integer, List<TweetGroup>> groups) {
+		int rows = 0;
+		for (List<TweetGroup> userGroups : groups.values()) {
+			for (TweetGroup group : userGroups) {
+				rows += ofGroup(group);
+			}
+		}
+		return rows;
+	}
+
+}
@@ -0,0 +1,909 @@
+package autoChirp.database;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import autoChirp.tweetCreation.Tweet;
+import autoChirp.tweetCreation.TweetGroup;
+
+/**
+ * A TweetStore which keeps users, groups and tweets on the heap. Nothing is
+ * persisted, the store starts empty on every connect. It behaves like the
+ * SQLiteTweetStore (IDs are never reused, orderings and ownership checks are
+ * the same), so it can replace the database in tests and in benchmarks of the
+ * layers above the storage.
+ *
+ * All methods synchronize on the store. Tweets and groups are handed out as
+ * copies, changing them doesn't change the store.
+ */
+public class MemoryTweetStore implements TweetStore {
+
+	private static class UserRow {
+		long twitterID;
+		String oauthToken;
+		String oauthTokenSecret;
+	}
+
+	private static class GroupRow {
+		int userID;
+		String title;
+		String description;
+		boolean enabled;
+		boolean threaded;
+		String flashcard;
+	}
+
+	private static class LeaseRow {
+		String node;
+		long expiresAt;
+		boolean done;
+	}
+
+	private static class TweetRow {
+		int tweetID;
+		int userID;
+		int groupID;
+		String tweetDate;
+		long scheduledAt;
+		String content;
+		boolean scheduled;
+		boolean tweeted;
+		String imageUrl;
+		float longitude;
+		float latitude;
+		long statusID;
+		boolean archived;
+	}
+
+	/**
+	 * ascending by scheduled_at, then tweet_id
+	 */
+	private static final Comparator<TweetRow> BY_TIME = Comparator.<TweetRow> comparingLong(row -> row.scheduledAt)
+			.thenComparingInt(row -> row.tweetID);
+
+	private final Map<Integer, UserRow> users = new TreeMap<Integer, UserRow>();
+	private final Map<Integer, GroupRow> groups = new TreeMap<Integer, GroupRow>();
+	private final Map<Integer, TweetRow> tweets = new TreeMap<Integer, TweetRow>();
+	private final Map<Integer, TweetRow> archive = new TreeMap<Integer, TweetRow>();
+	private final Map<Integer, Misfire> misfires = new TreeMap<Integer, Misfire>();
+	private final Map<Integer, LeaseRow> leases = new TreeMap<Integer, LeaseRow>();
+	private int nextUserID = 1;
+	private int nextGroupID = 1;
+	private int nextTweetID = 1;
+
+	/**
+	 * @param config
+	 *            not used, the store has no settings yet
+	 */
+	public MemoryTweetStore(DBConfig config) {
+	}
+
+	@Override
+	public synchronized void createOutputTables(String dbCreationFileName) {
+		users.clear();
+		groups.clear();
+		tweets.clear();
+		archive.clear();
+		misfires.clear();
+		leases.clear();
+		nextUserID = 1;
+		nextGroupID = 1;
+		nextTweetID = 1;
+	}
+
+	@Override
+	public int migrate() {
+		return 0;
+	}
+
+	@Override
+	public synchronized int checkForUser(long twitter_id) {
+		for (Map.Entry<Integer, UserRow> entry : users.entrySet()) {
+			if (entry.getValue().twitterID == twitter_id) {
+				return entry.getKey();
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public synchronized int insertNewUser(long twitterID, String oauthToken, String oauthTokenSecret) {
+		UserRow user = new UserRow();
+		user.twitterID = twitterID;
+		// missing tokens are stored as 'null' like in the database
+		user.oauthToken = String.valueOf(oauthToken);
+		user.oauthTokenSecret = String.valueOf(oauthTokenSecret);
+		int userID = nextUserID++;
+		users.put(userID, user);
+		return userID;
+	}
+
+	@Override
+	public synchronized String[] getUserConfig(int userID) {
+		UserRow user = users.get(userID);
+		if (user == null) {
+			return null;
+		}
+		return new String[] { Long.toString(user.twitterID), user.oauthToken, user.oauthTokenSecret };
+	}
+
+	@Override
+	public synchronized int getRegisteredUsers() {
+		return users.size();
+	}
+
+	@Override
+	public synchronized int insertTweetGroup(TweetGroup tweetGroup, int userID) {
+		GroupRow group = new GroupRow();
+		group.userID = userID;
+		group.title = tweetGroup.title;
+		group.description = tweetGroup.description;
+		group.threaded = tweetGroup.threaded;
+		group.flashcard = tweetGroup.flashcard;
+		int groupID = nextGroupID++;
+		groups.put(groupID, group);
+		for (Tweet tweet : tweetGroup.tweets) {
+			tweet.tweetID = insertTweet(userID, tweet, groupID);
+			tweet.groupID = groupID;
+			tweet.groupName = tweetGroup.title;
+		}
+		tweetGroup.groupID = groupID;
+		return groupID;
+	}
+
+	@Override
+	public synchronized boolean updateGroupStatus(int groupID, boolean enabled, int userID) {
+		GroupRow group = group(groupID, userID);
+		if (group != null) {
+			group.enabled = enabled;
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized boolean flagAsScheduled(int tweetID, int userID) {
+		TweetRow tweet = tweet(tweetID, userID);
+		if (tweet != null) {
+			tweet.scheduled = true;
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized boolean flagAsTweeted(int tweetID, int userID) {
+		TweetRow tweet = tweet(tweetID, userID);
+		if (tweet != null) {
+			tweet.tweeted = true;
+		}
+		return true;
+	}
+
+	/**
+	 * nothing to write behind, the flag is set at once
+	 */
+	@Override
+	public void flagAsScheduledLater(int tweetID, int userID) {
+		flagAsScheduled(tweetID, userID);
+	}
+
+	/**
+	 * nothing to write behind, the statusID is set at once
+	 */
+	@Override
+	public void addStatusIDLater(int tweetID, long statusId) {
+		addStatusID(tweetID, statusId);
+	}
+
+	@Override
+	public boolean flushStatusUpdates() {
+		return true;
+	}
+
+	@Override
+	public synchronized void deleteGroup(int groupID, int userID) {
+		deleteGroups(Collections.singleton(groupID), userID);
+	}
+
+	@Override
+	public synchronized void deleteTweet(int tweetID, int userID) {
+		deleteTweets(Collections.singleton(tweetID), userID);
+	}
+
+	@Override
+	public synchronized List<Integer> deleteGroups(Collection<Integer> groupIDs, int userID) {
+		List<Integer> toReturn = new ArrayList<Integer>();
+		for (Integer groupID : groupIDs) {
+			if (group(groupID, userID) != null) {
+				groups.remove(groupID);
+				removeTweets(tweet -> tweet.userID == userID && tweet.groupID == groupID, toReturn);
+			}
+		}
+		return toReturn;
+	}
+
+	@Override
+	public synchronized List<Integer> deleteTweets(Collection<Integer> tweetIDs, int userID) {
+		List<Integer> toReturn = new ArrayList<Integer>();
+		HashSet<Integer> toDelete = new HashSet<Integer>(tweetIDs);
+		removeTweets(tweet -> tweet.userID == userID && toDelete.contains(tweet.tweetID), toReturn);
+		return toReturn;
+	}
+
+	/**
+	 * removes all matching tweets (archived ones, too), their misfires and
+	 * leases and adds their tweetIDs to the given list
+	 */
+	private void removeTweets(Predicate<TweetRow> filter, List<Integer> tweetIDs) {
+		Predicate<TweetRow> remove = tweet -> {
+			if (!filter.test(tweet)) {
+				return false;
+			}
+			tweetIDs.add(tweet.tweetID);
+			misfires.remove(tweet.tweetID);
+			leases.remove(tweet.tweetID);
+			return true;
+		};
+		tweets.values().removeIf(remove);
+		archive.values().removeIf(remove);
+	}
+
+	@Override
+	public synchronized int archiveTweets(long before) {
+		int toReturn = 0;
+		for (TweetRow tweet : rows(tweet -> tweet.tweeted && tweet.scheduledAt < before)) {
+			tweet.archived = true;
+			archive.put(tweet.tweetID, tweets.remove(tweet.tweetID));
+			LeaseRow lease = leases.get(tweet.tweetID);
+			if (lease != null && lease.done) {
+				leases.remove(tweet.tweetID);
+			}
+			toReturn++;
+		}
+		return toReturn;
+	}
+
+	@Override
+	public synchronized List<Tweet> getTweetsForUser(int userID, boolean scheduled, boolean tweeted, int groupID) {
+		return select(tweet -> tweet.userID == userID && tweet.groupID == groupID && tweet.scheduled == scheduled
+				&& tweet.tweeted == tweeted);
+	}
+
+	@Override
+	public synchronized List<Tweet> getTweetsForUser(int userID, boolean scheduled, boolean tweeted) {
+		return select(tweet -> tweet.userID == userID && tweet.scheduled == scheduled && tweet.tweeted == tweeted);
+	}
+
+	@Override
+	public synchronized List<Tweet> getTweetsForUser(int userID) {
+		return select(tweet -> tweet.userID == userID);
+	}
+
+	@Override
+	public synchronized List<Tweet> getUpcomingTweets() {
+		long now = System.currentTimeMillis();
+		List<Tweet> upcoming = select(tweet -> tweet.scheduled && !tweet.tweeted && tweet.scheduledAt > now);
+		return new ArrayList<Tweet>(upcoming.subList(0, Math.min(5, upcoming.size())));
+	}
+
+	@Override
+	public synchronized List<Tweet> getLatestTweets() {
+		return getLatestTweets(false);
+	}
+
+	@Override
+	public synchronized List<Tweet> getLatestTweets(boolean withArchive) {
+		List<Tweet> latest = select(tweet -> tweet.tweeted, withArchive);
+		Collections.reverse(latest);
+		return new ArrayList<Tweet>(latest.subList(0, Math.min(15, latest.size())));
+	}
+
+	@Override
+	public synchronized Page<Tweet> getTweetsPage(int userID, int groupID, String cursor, boolean backward,
+			int size, boolean withArchive) {
+		Page<Tweet> toReturn = new Page<Tweet>();
+		long now = System.currentTimeMillis();
+		// the same cursors as the SQLiteTweetStore: section (0 = upcoming,
+		// 1 = past), tweetID, scheduled_at
+		long[] cursorKey = null;
+		if (cursor != null) {
+			String[] key = cursor.split(",", 3);
+			try {
+				cursorKey = new long[] { Integer.parseInt(key[0]), Long.parseLong(key[2]), Integer.parseInt(key[1]) };
+			} catch (RuntimeException e) {
+				// malformed cursor, start from the beginning (or end)
+				cursor = null;
+			}
+		}
+		List<TweetRow> rows = rows(
+				tweet -> tweet.userID == userID && (groupID < 0 || tweet.groupID == groupID), withArchive);
+		List<long[]> keys = new ArrayList<long[]>();
+		for (TweetRow row : rows) {
+			keys.add(new long[] { row.scheduledAt >= now ? 0 : 1, row.scheduledAt, row.tweetID });
+		}
+		List<Integer> order = new ArrayList<Integer>();
+		for (int i = 0; i < rows.size(); i++) {
+			order.add(i);
+		}
+		order.sort((a, b) -> compareKeys(keys.get(a), keys.get(b)));
+		if (backward) {
+			Collections.reverse(order);
+		}
+		List<String> pageKeys = new ArrayList<String>();
+		for (int i : order) {
+			long[] key = keys.get(i);
+			if (cursorKey != null) {
+				int compared = compareKeys(key, cursorKey);
+				if (backward ? compared >= 0 : compared <= 0) {
+					continue;
+				}
+			}
+			toReturn.entries.add(toTweet(rows.get(i)));
+			pageKeys.add(key[0] + "," + key[2] + "," + key[1]);
+			if (pageKeys.size() > size) {
+				break;
+			}
+		}
+		toReturn.total = rows.size();
+		toReturn.fill(pageKeys, cursor != null, backward, size);
+		return toReturn;
+	}
+
+	@Override
+	public synchronized Page<TweetGroup> getGroupsPage(int userID, String cursor, boolean backward, int size) {
+		Page<TweetGroup> toReturn = new Page<TweetGroup>();
+		int cursorID = -1;
+		if (cursor != null) {
+			try {
+				cursorID = Integer.parseInt(cursor);
+			} catch (NumberFormatException e) {
+				cursor = null;
+			}
+		}
+		List<Integer> groupIDs = getGroupIDsForUser(userID);
+		if (backward) {
+			Collections.reverse(groupIDs);
+		}
+		List<String> keys = new ArrayList<String>();
+		for (int groupID : groupIDs) {
+			if (cursor != null && (backward ? groupID >= cursorID : groupID <= cursorID)) {
+				continue;
+			}
+			TweetGroup group = getTweetGroupForUser(userID, groupID, false);
+			group.tweetCount = count(tweet -> tweet.userID == userID && tweet.groupID == groupID).tweets;
+			toReturn.entries.add(group);
+			keys.add(Integer.toString(groupID));
+			if (keys.size() > size) {
+				break;
+			}
+		}
+		toReturn.total = groupIDs.size();
+		toReturn.fill(keys, cursor != null, backward, size);
+		return toReturn;
+	}
+
+	@Override
+	public synchronized TweetCounts getTweetCounts(int userID) {
+		TweetCounts toReturn = count(tweet -> tweet.userID == userID);
+		toReturn.groups = getGroupIDsForUser(userID).size();
+		return toReturn;
+	}
+
+	@Override
+	public synchronized Map<Integer, TweetCounts> getTweetCounts(int userID, Collection<Integer> groupIDs) {
+		Map<Integer, TweetCounts> toReturn = new HashMap<Integer, TweetCounts>();
+		for (Integer groupID : groupIDs) {
+			TweetCounts counts = count(tweet -> tweet.userID == userID && tweet.groupID == groupID);
+			if (counts.tweets > 0) {
+				counts.groups = 1;
+				toReturn.put(groupID, counts);
+			}
+		}
+		return toReturn;
+	}
+
+	/**
+	 * counts the matching tweets, archived ones included
+	 */
+	private TweetCounts count(Predicate<TweetRow> filter) {
+		TweetCounts toReturn = new TweetCounts();
+		for (TweetRow tweet : rows(filter, true)) {
+			toReturn.tweets++;
+			if (tweet.tweeted) {
+				toReturn.published++;
+			} else if (tweet.scheduled) {
+				toReturn.scheduled++;
+			}
+		}
+		return toReturn;
+	}
+
+	@Override
+	public synchronized int getScheduledTweets() {
+		return rows(tweet -> tweet.scheduled && !tweet.tweeted).size();
+	}
+
+	@Override
+	public synchronized int getPublishedTweets() {
+		return rows(tweet -> tweet.tweeted, true).size();
+	}
+
+	@Override
+	public synchronized int getAllTweets() {
+		return tweets.size() + archive.size();
+	}
+
+	@Override
+	public TweetGroup getTweetGroupForUser(int userID, int groupID) {
+		return getTweetGroupForUser(userID, groupID, true);
+	}
+
+	@Override
+	public synchronized TweetGroup getTweetGroupForUser(int userID, int groupID, boolean withTweets) {
+		return getTweetGroupForUser(userID, groupID, withTweets, false);
+	}
+
+	@Override
+	public synchronized TweetGroup getTweetGroupForUser(int userID, int groupID, boolean withTweets,
+			boolean withArchive) {
+		GroupRow row = group(groupID, userID);
+		if (row == null) {
+			return null;
+		}
+		TweetGroup group = new TweetGroup(groupID, row.title, row.description, row.enabled, row.threaded);
+		if (row.flashcard != null) {
+			group.setFlashCard(row.flashcard);
+		}
+		if (withTweets) {
+			group.setTweets(select(tweet -> tweet.userID == userID && tweet.groupID == groupID, withArchive));
+		}
+		return group;
+	}
+
+	@Override
+	public synchronized List<Integer> getGroupIDsForUser(int userID) {
+		List<Integer> toReturn = new ArrayList<Integer>();
+		for (Map.Entry<Integer, GroupRow> entry : groups.entrySet()) {
+			if (entry.getValue().userID == userID) {
+				toReturn.add(entry.getKey());
+			}
+		}
+		return toReturn;
+	}
+
+	@Override
+	public synchronized Tweet getTweetByID(int tweetID, int userID) {
+		TweetRow row = tweet(tweetID, userID);
+		if (row == null) {
+			row = archive.get(tweetID);
+			if (row != null && row.userID != userID) {
+				row = null;
+			}
+		}
+		return (row == null) ? null : toTweet(row);
+	}
+
+	@Override
+	public synchronized Tweet getTweetByID(int tweetID) {
+		TweetRow row = tweets.containsKey(tweetID) ? tweets.get(tweetID) : archive.get(tweetID);
+		return (row == null) ? null : toTweet(row);
+	}
+
+	@Override
+	public synchronized String getGroupTitle(int groupID) {
+		GroupRow group = groups.get(groupID);
+		return (group == null) ? null : group.title;
+	}
+
+	@Override
+	public synchronized String getGroupTitle(int groupID, int userID) {
+		GroupRow group = group(groupID, userID);
+		return (group == null) ? null : group.title;
+	}
+
+	@Override
+	public synchronized void editGroup(int groupID, String title, String description, int userID,
+			String flashcard) {
+		GroupRow group = group(groupID, userID);
+		if (group != null) {
+			group.title = title;
+			group.description = description;
+			group.flashcard = flashcard;
+		}
+	}
+
+	@Override
+	public synchronized void editTweet(int tweetID, String content, int userID, String imageUrl, float longitude,
+			float latitude, String tweetDate) {
+		TweetRow tweet = tweet(tweetID, userID);
+		if (tweet != null) {
+			tweet.content = content;
+			tweet.imageUrl = imageUrl;
+			tweet.longitude = longitude;
+			tweet.latitude = latitude;
+			tweet.tweetDate = tweetDate;
+			tweet.scheduledAt = scheduledAt(tweetDate);
+		}
+	}
+
+	@Override
+	public synchronized void addStatusID(int tweetID, long statusId) {
+		TweetRow tweet = tweets.get(tweetID);
+		if (tweet != null) {
+			tweet.statusID = statusId;
+		}
+	}
+
+	@Override
+	public synchronized int addTweetToGroup(int userID, Tweet tweet, int groupID) {
+		int tweetID = insertTweet(userID, tweet, groupID);
+		updateGroupStatus(groupID, false, userID);
+		return tweetID;
+	}
+
+	@Override
+	public synchronized boolean isEnabledGroup(int groupID, int userID) {
+		GroupRow group = group(groupID, userID);
+		return group != null && group.enabled;
+	}
+
+	@Override
+	public synchronized boolean isThreadedGroup(int groupID, int userID) {
+		GroupRow group = group(groupID, userID);
+		return group != null && group.threaded;
+	}
+
+	@Override
+	public synchronized boolean setThreaded(int groupID, int userID, boolean threaded) {
+		GroupRow group = group(groupID, userID);
+		if (group != null) {
+			group.threaded = threaded;
+		}
+		return true;
+	}
+
+	@Override
+	public int forEachSchedulableTweet(BiConsumer<Tweet, Integer> consumer) {
+		return forEachSchedulableTweet(System.currentTimeMillis() + 1, Long.MAX_VALUE, consumer);
+	}
+
+	/**
+	 * The tweets are copied before they are handed over, the consumer runs
+	 * without holding the store.
+	 */
+	@Override
+	public int forEachSchedulableTweet(long from, long to, BiConsumer<Tweet, Integer> consumer) {
+		List<TweetRow> schedulable;
+		synchronized (this) {
+			schedulable = new ArrayList<TweetRow>();
+			for (TweetRow tweet : tweets.values()) {
+				GroupRow group = group(tweet.groupID, tweet.userID);
+				if (!tweet.tweeted && tweet.scheduledAt >= from && tweet.scheduledAt < to && group != null
+						&& group.enabled) {
+					schedulable.add(tweet);
+				}
+			}
+			schedulable.sort(BY_TIME);
+		}
+		for (TweetRow row : schedulable) {
+			Tweet tweet;
+			synchronized (this) {
+				tweet = toTweet(row);
+			}
+			consumer.accept(tweet, row.userID);
+		}
+		return schedulable.size();
+	}
+
+	/**
+	 * The tweets are copied before they are handed over, the consumer runs
+	 * without holding the store.
+	 */
+	@Override
+	public int forEachMisfiredTweet(long before, BiConsumer<Tweet, Integer> consumer) {
+		List<Tweet> misfired = new ArrayList<Tweet>();
+		List<Integer> userIDs = new ArrayList<Integer>();
+		synchronized (this) {
+			for (TweetRow tweet : tweets.values()) {
+				GroupRow group = group(tweet.groupID, tweet.userID);
+				LeaseRow lease = leases.get(tweet.tweetID);
+				if (tweet.scheduled && !tweet.tweeted && tweet.scheduledAt < before && group != null
+						&& group.enabled && (lease == null || (!lease.done && lease.expiresAt < before))) {
+					misfired.add(toTweet(tweet));
+					userIDs.add(tweet.userID);
+				}
+			}
+		}
+		for (int i = 0; i < misfired.size(); i++) {
+			consumer.accept(misfired.get(i), userIDs.get(i));
+		}
+		return misfired.size();
+	}
+
+	@Override
+	public synchronized void recordMisfires(List<Misfire> misfires) {
+		for (Misfire misfire : misfires) {
+			this.misfires.put(misfire.tweetID, copy(misfire));
+			TweetRow tweet = tweet(misfire.tweetID, misfire.userID);
+			if (tweet != null && Misfire.SKIPPED.equals(misfire.action)) {
+				tweet.scheduled = false;
+			}
+		}
+	}
+
+	@Override
+	public synchronized List<Misfire> getMisfires(int userID, int limit) {
+		List<Misfire> toReturn = new ArrayList<Misfire>();
+		for (Misfire misfire : misfires.values()) {
+			if (misfire.userID != userID) {
+				continue;
+			}
+			TweetRow tweet = tweets.containsKey(misfire.tweetID) ? tweets.get(misfire.tweetID)
+					: archive.get(misfire.tweetID);
+			Misfire copy = copy(misfire);
+			copy.tweetDate = (tweet == null) ? null : tweet.tweetDate;
+			copy.content = (tweet == null) ? null : tweet.content;
+			toReturn.add(copy);
+		}
+		toReturn.sort(Comparator.<Misfire> comparingLong(misfire -> misfire.detectedAt)
+				.thenComparingInt(misfire -> misfire.tweetID).reversed());
+		return toReturn.subList(0, Math.min(limit, toReturn.size()));
+	}
+
+	@Override
+	public synchronized boolean claimTweet(int tweetID, int userID, String node, long now, long leaseTime) {
+		TweetRow tweet = tweet(tweetID, userID);
+		if (tweet == null || tweet.tweeted) {
+			return false;
+		}
+		LeaseRow lease = leases.get(tweetID);
+		if (lease == null) {
+			lease = new LeaseRow();
+			leases.put(tweetID, lease);
+		} else if (lease.done || (lease.expiresAt >= now && !lease.node.equals(node))) {
+			return false;
+		}
+		lease.node = node;
+		lease.expiresAt = now + leaseTime;
+		return true;
+	}
+
+	@Override
+	public synchronized void completeLease(int tweetID, String node) {
+		LeaseRow lease = leases.get(tweetID);
+		if (lease != null && lease.node.equals(node)) {
+			lease.done = true;
+		}
+	}
+
+	/**
+	 * The tweets are copied before they are handed over, the consumer runs
+	 * without holding the store.
+	 */
+	@Override
+	public int forEachExpiredLease(long now, BiConsumer<Tweet, Integer> consumer) {
+		List<Tweet> expired = new ArrayList<Tweet>();
+		List<Integer> userIDs = new ArrayList<Integer>();
+		synchronized (this) {
+			for (Map.Entry<Integer, LeaseRow> entry : leases.entrySet()) {
+				LeaseRow lease = entry.getValue();
+				TweetRow tweet = tweets.get(entry.getKey());
+				GroupRow group = (tweet == null) ? null : group(tweet.groupID, tweet.userID);
+				if (group != null && group.enabled && !lease.done && lease.expiresAt < now && !tweet.tweeted) {
+					expired.add(toTweet(tweet));
+					userIDs.add(tweet.userID);
+				}
+			}
+		}
+		for (int i = 0; i < expired.size(); i++) {
+			consumer.accept(expired.get(i), userIDs.get(i));
+		}
+		return expired.size();
+	}
+
+	@Override
+	public synchronized Map<Integer, List<TweetGroup>> getAllEnabledGroups() {
+		Map<Integer, List<TweetGroup>> toReturn = new HashMap<Integer, List<TweetGroup>>();
+		for (Map.Entry<Integer, GroupRow> entry : groups.entrySet()) {
+			GroupRow group = entry.getValue();
+			if (group.enabled) {
+				List<TweetGroup> groupList = toReturn.get(group.userID);
+				if (groupList == null) {
+					groupList = new ArrayList<TweetGroup>();
+					toReturn.put(group.userID, groupList);
+				}
+				groupList.add(getTweetGroupForUser(group.userID, entry.getKey()));
+			}
+		}
+		return toReturn;
+	}
+
+	@Override
+	public synchronized List<Integer> deleteUser(int userID) {
+		List<Integer> toReturn = new ArrayList<Integer>();
+		removeTweets(tweet -> tweet.userID == userID, toReturn);
+		groups.values().removeIf(group -> group.userID == userID);
+		users.remove(userID);
+		return toReturn;
+	}
+
+	@Override
+	public synchronized long getReplyID(int tweetID, int groupID, int userID) {
+		TweetRow tweet = tweet(tweetID, userID);
+		if (tweet == null || tweet.groupID != groupID) {
+			return -1;
+		}
+		// the predecessor may have been archived already
+		List<TweetRow> before = rows(
+				row -> row.userID == userID && row.groupID == groupID && BY_TIME.compare(row, tweet) < 0, true);
+		return before.isEmpty() ? -1 : before.get(before.size() - 1).statusID;
+	}
+
+	@Override
+	public synchronized String getFlashcard(int groupID) {
+		GroupRow group = groups.get(groupID);
+		return (group == null) ? null : group.flashcard;
+	}
+
+	@Override
+	public synchronized boolean updateUserTokens(int userID, String oAuthToken, String oAuthTokenSecret) {
+		UserRow user = users.get(userID);
+		if (user != null) {
+			user.oauthToken = oAuthToken;
+			user.oauthTokenSecret = oAuthTokenSecret;
+		}
+		return true;
+	}
+
+	/**
+	 * the store lives in the heap only, there is no file to back up
+	 */
+	@Override
+	public BackupStatus backup(String file) {
+		BackupStatus status = new BackupStatus();
+		status.file = file;
+		status.error = "the in-memory store can't be backed up";
+		return status;
+	}
+
+	@Override
+	public boolean startBackup() {
+		return false;
+	}
+
+	@Override
+	public BackupStatus getBackupStatus() {
+		return null;
+	}
+
+	@Override
+	public void close() {
+	}
+
+	private int insertTweet(int userID, Tweet tweet, int groupID) {
+		TweetRow row = new TweetRow();
+		row.tweetID = nextTweetID++;
+		row.userID = userID;
+		row.groupID = groupID;
+		row.tweetDate = tweet.tweetDate;
+		row.scheduledAt = scheduledAt(tweet.tweetDate);
+		row.content = tweet.content;
+		row.imageUrl = tweet.imageUrl;
+		row.longitude = tweet.longitude;
+		row.latitude = tweet.latitude;
+		tweets.put(row.tweetID, row);
+		return row.tweetID;
+	}
+
+	/**
+	 * @return the group, if userID fits to groupID
+	 */
+	private GroupRow group(int groupID, int userID) {
+		GroupRow group = groups.get(groupID);
+		return (group != null && group.userID == userID) ? group : null;
+	}
+
+	/**
+	 * @return the tweet, if userID fits to tweetID
+	 */
+	private TweetRow tweet(int tweetID, int userID) {
+		TweetRow tweet = tweets.get(tweetID);
+		return (tweet != null && tweet.userID == userID) ? tweet : null;
+	}
+
+	/**
+	 * @return the matching tweets ordered by scheduled_at and tweet_id
+	 */
+	private List<TweetRow> rows(Predicate<TweetRow> filter) {
+		return rows(filter, false);
+	}
+
+	/**
+	 * @return the matching tweets, optionally including the archived ones,
+	 *         ordered by scheduled_at and tweet_id
+	 */
+	private List<TweetRow> rows(Predicate<TweetRow> filter, boolean withArchive) {
+		List<TweetRow> toReturn = new ArrayList<TweetRow>();
+		for (TweetRow tweet : tweets.values()) {
+			if (filter.test(tweet)) {
+				toReturn.add(tweet);
+			}
+		}
+		if (withArchive) {
+			for (TweetRow tweet : archive.values()) {
+				if (filter.test(tweet)) {
+					toReturn.add(tweet);
+				}
+			}
+		}
+		toReturn.sort(BY_TIME);
+		return toReturn;
+	}
+
+	/**
+	 * @return copies of the matching tweets ordered by scheduled_at and
+	 *         tweet_id
+	 */
+	private List<Tweet> select(Predicate<TweetRow> filter) {
+		return select(filter, false);
+	}
+
+	/**
+	 * @return copies of the matching tweets, optionally including the
+	 *         archived ones, ordered by scheduled_at and tweet_id
+	 */
+	private List<Tweet> select(Predicate<TweetRow> filter, boolean withArchive) {
+		List<Tweet> toReturn = new ArrayList<Tweet>();
+		for (TweetRow row : rows(filter, withArchive)) {
+			toReturn.add(toTweet(row));
+		}
+		return toReturn;
+	}
+
+	private static Misfire copy(Misfire misfire) {
+		Misfire copy = new Misfire();
+		copy.tweetID = misfire.tweetID;
+		copy.userID = misfire.userID;
+		copy.groupID = misfire.groupID;
+		copy.scheduledAt = misfire.scheduledAt;
+		copy.detectedAt = misfire.detectedAt;
+		copy.action = misfire.action;
+		return copy;
+	}
+
+	private Tweet toTweet(TweetRow row) {
+		GroupRow group = group(row.groupID, row.userID);
+		Tweet tweet = new Tweet(row.tweetDate, row.content, row.tweetID, row.groupID, row.scheduled, row.tweeted,
+				(group == null) ? null : group.title, row.imageUrl, row.longitude, row.latitude, row.statusID);
+		tweet.scheduledAt = (row.scheduledAt == 0) ? null : Instant.ofEpochMilli(row.scheduledAt);
+		tweet.archived = row.archived;
+		return tweet;
+	}
+
+	private static long scheduledAt(String tweetDate) {
+		Instant instant = Tweet.parseDate(tweetDate);
+		return (instant == null) ? 0 : instant.toEpochMilli();
+	}
+
+	/**
+	 * compares page keys (section, scheduled_at, tweet_id)
+	 */
+	private static int compareKeys(long[] a, long[] b) {
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] != b[i]) {
+				return Long.compare(a[i], b[i]);
+			}
+		}
+		return 0;
+	}
+
+}
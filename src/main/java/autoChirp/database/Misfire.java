@@ -0,0 +1,59 @@
+package autoChirp.database;
+
+/**
+ * A tweet which came due while it couldn't be posted (e.g. while the
+ * application was down), and what the TweetScheduler did about it.
+ */
+public class Misfire {
+
+	/**
+	 * the missed tweet was posted late
+	 */
+	public static final String FIRED = "fired";
+
+	/**
+	 * the missed tweet was dropped, it is no longer flagged as scheduled
+	 */
+	public static final String SKIPPED = "skipped";
+
+	/**
+	 * the missed tweet
+	 */
+	public int tweetID;
+
+	/**
+	 * owner of the tweet
+	 */
+	public int userID;
+
+	/**
+	 * group of the tweet
+	 */
+	public int groupID;
+
+	/**
+	 * epoch milliseconds the tweet was due at
+	 */
+	public long scheduledAt;
+
+	/**
+	 * epoch milliseconds the misfire was detected at
+	 */
+	public long detectedAt;
+
+	/**
+	 * FIRED or SKIPPED
+	 */
+	public String action;
+
+	/**
+	 * date of the tweet, only read by getMisfires()
+	 */
+	public String tweetDate;
+
+	/**
+	 * text of the tweet, only read by getMisfires()
+	 */
+	public String content;
+
+}
@@ -0,0 +1,79 @@
+package autoChirp.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. Instead of an offset, the next and
+ * previous pages are requested with the cursor (sort key) of the last or
+ * first entry of this page, so reading a page costs the same on every
+ * position of the listing.
+ *
+ * @param <T>
+ *            type of the entries
+ */
+public class Page<T> {
+
+	/**
+	 * the entries of this page in listing order
+	 */
+	public List<T> entries = new ArrayList<T>();
+
+	/**
+	 * number of entries of the whole listing
+	 */
+	public int total;
+
+	/**
+	 * cursor of the first entry, requests the previous page
+	 */
+	public String first;
+
+	/**
+	 * cursor of the last entry, requests the next page
+	 */
+	public String last;
+
+	/**
+	 * there are entries before this page
+	 */
+	public boolean hasPrevious;
+
+	/**
+	 * there are entries after this page
+	 */
+	public boolean hasNext;
+
+	/**
+	 * trims the size+1 entries read for a page to size, restores the listing
+	 * order of a backward read and sets the cursors and has-flags
+	 *
+	 * @param keys
+	 *            the cursors of the entries, in the order they were read
+	 * @param fromCursor
+	 *            the page was read from a cursor
+	 * @param backward
+	 *            the entries were read backward
+	 * @param size
+	 *            size of the page
+	 */
+	void fill(List<String> keys, boolean fromCursor, boolean backward, int size) {
+		boolean more = entries.size() > size;
+		if (more) {
+			entries.remove(size);
+			keys.remove(size);
+		}
+		if (backward) {
+			Collections.reverse(entries);
+			Collections.reverse(keys);
+		}
+		hasPrevious = backward ? more : fromCursor;
+		hasNext = backward ? fromCursor : more;
+		if (!keys.isEmpty()) {
+			first = keys.get(0);
+			last = keys.get(keys.size() - 1);
+		}
+	}
+
+}
@@ -0,0 +1,202 @@
+package autoChirp.database;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Latency, row and error counts of the calls to a TweetStore, per method (see
+ * InstrumentedTweetStore). The latencies are counted in a histogram with
+ * fixed buckets, the percentiles are the upper bounds of the buckets they
+ * fall into. Calls slower than slowQueryThreshold milliseconds are logged
+ * with their arguments.
+ *
+ * The stores catch their SQLExceptions and return an empty result, so a
+ * failed call is reported by the store with markFailed() in the calling
+ * thread.
+ */
+public class QueryMetrics {
+
+	/**
+	 * upper bounds of the histogram buckets in milliseconds, the last bucket
+	 * counts all slower calls
+	 */
+	public static final long[] BUCKETS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 5000 };
+
+	private static final ThreadLocal<Boolean> FAILED = new ThreadLocal<Boolean>();
+
+	/**
+	 * the counts of one method
+	 */
+	private static class MethodMetrics {
+		final LongAdder calls = new LongAdder();
+		final LongAdder errors = new LongAdder();
+		final LongAdder rows = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+		final AtomicLongArray histogram = new AtomicLongArray(BUCKETS.length + 1);
+		volatile long maxNanos;
+	}
+
+	private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<String, MethodMetrics>();
+	private final long slowQueryThreshold;
+
+	/**
+	 * @param config
+	 *            slowQueryThreshold
+	 */
+	public QueryMetrics(DBConfig config) {
+		this.slowQueryThreshold = config.slowQueryThreshold;
+	}
+
+	/**
+	 * marks the current call of the calling thread as failed, called by the
+	 * stores where they catch an exception
+	 */
+	public static void markFailed() {
+		FAILED.set(Boolean.TRUE);
+	}
+
+	/**
+	 * runs and measures a call
+	 *
+	 * @param method
+	 *            name of the called method
+	 * @param call
+	 *            the call
+	 * @param rows
+	 *            number of rows read or written, computed from the result
+	 *            (null if the method has no rows to count)
+	 * @param args
+	 *            arguments of the call, logged if it is slow
+	 * @return the result of the call
+	 */
+	public <T> T time(String method, Supplier<T> call, ToIntFunction<T> rows, Object... args) {
+		FAILED.remove();
+		long start = System.nanoTime();
+		T result = null;
+		boolean failed = true;
+		try {
+			result = call.get();
+			failed = FAILED.get() != null;
+			return result;
+		} finally {
+			FAILED.remove();
+			long nanos = System.nanoTime() - start;
+			int count = (failed || rows == null || result == null) ? 0 : rows.applyAsInt(result);
+			record(method, nanos, count, failed);
+			if (slowQueryThreshold > 0 && nanos >= slowQueryThreshold * 1000000) {
+				System.out.println("QueryMetrics: slow call " + method + Arrays.toString(args) + " took "
+						+ (nanos / 1000000) + "ms, " + count + " rows" + (failed ? ", failed" : ""));
+			}
+		}
+	}
+
+	/**
+	 * runs and measures a call without result
+	 *
+	 * @param method
+	 *            name of the called method
+	 * @param call
+	 *            the call
+	 * @param args
+	 *            arguments of the call, logged if it is slow
+	 */
+	public void run(String method, Runnable call, Object... args) {
+		time(method, () -> {
+			call.run();
+			return null;
+		}, null, args);
+	}
+
+	private void record(String method, long nanos, int rows, boolean failed) {
+		MethodMetrics metrics = methods.computeIfAbsent(method, name -> new MethodMetrics());
+		metrics.calls.increment();
+		metrics.nanos.add(nanos);
+		metrics.rows.add(rows);
+		if (failed) {
+			metrics.errors.increment();
+		}
+		long millis = nanos / 1000000;
+		int bucket = 0;
+		while (bucket < BUCKETS.length && millis >= BUCKETS[bucket]) {
+			bucket++;
+		}
+		metrics.histogram.incrementAndGet(bucket);
+		if (nanos > metrics.maxNanos) {
+			synchronized (metrics) {
+				metrics.maxNanos = Math.max(metrics.maxNanos, nanos);
+			}
+		}
+	}
+
+	/**
+	 * @return per method (in alphabetical order): calls, errors, rows,
+	 *         totalMs, meanMs, maxMs, p50Ms, p95Ms, p99Ms and the histogram
+	 *         as counts per bucket (keyed by the upper bound in ms, "inf"
+	 *         for the last one)
+	 */
+	public Map<String, Map<String, Object>> getMetrics() {
+		Map<String, Map<String, Object>> toReturn = new TreeMap<String, Map<String, Object>>();
+		for (Map.Entry<String, MethodMetrics> entry : methods.entrySet()) {
+			MethodMetrics metrics = entry.getValue();
+			long calls = metrics.calls.sum();
+			long nanos = metrics.nanos.sum();
+			long[] histogram = new long[BUCKETS.length + 1];
+			Map<String, Long> buckets = new LinkedHashMap<String, Long>();
+			for (int i = 0; i < histogram.length; i++) {
+				histogram[i] = metrics.histogram.get(i);
+				buckets.put((i < BUCKETS.length) ? String.valueOf(BUCKETS[i]) : "inf", histogram[i]);
+			}
+			Map<String, Object> values = new LinkedHashMap<String, Object>();
+			values.put("calls", calls);
+			values.put("errors", metrics.errors.sum());
+			values.put("rows", metrics.rows.sum());
+			values.put("totalMs", nanos / 1000000.0);
+			values.put("meanMs", (calls == 0) ? 0.0 : nanos / 1000000.0 / calls);
+			values.put("maxMs", metrics.maxNanos / 1000000.0);
+			values.put("p50Ms", percentile(histogram, 0.50));
+			values.put("p95Ms", percentile(histogram, 0.95));
+			values.put("p99Ms", percentile(histogram, 0.99));
+			values.put("histogram", buckets);
+			toReturn.put(entry.getKey(), values);
+		}
+		return toReturn;
+	}
+
+	/**
+	 * drops all counts
+	 */
+	public void reset() {
+		methods.clear();
+	}
+
+	/**
+	 * @return the upper bound of the bucket the percentile falls into, -1 for
+	 *         the last bucket, 0 if nothing was counted
+	 */
+	private static long percentile(long[] histogram, double percentile) {
+		long total = 0;
+		for (long count : histogram) {
+			total += count;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * percentile);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS.length; i++) {
+			seen += histogram[i];
+			if (seen >= rank) {
+				return BUCKETS[i];
+			}
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,1641 @@
+package autoChirp.database;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import autoChirp.tweetCreation.Tweet;
+import autoChirp.tweetCreation.TweetGroup;
+
+/**
+ * The TweetStore of the application: users, groups and tweets are kept in a
+ * SQLite database, read by a pool of connections and written by a single
+ * writer connection (see ConnectionPool).
+ *
+ * @author Alena Geduldig
+ * @editor Philip Schildkamp
+ *
+ */
+public class SQLiteTweetStore implements TweetStore {
+
+	/**
+	 * number of IDs bound to one "IN (...)" list, see inChunks()
+	 */
+	private static final int IN_CHUNK = 100;
+	private static final String IN_LIST = "(" + String.join(",", Collections.nCopies(IN_CHUNK, "?")) + ")";
+
+	private final ConnectionPool pool;
+	private final StatusWriter statusWriter;
+	private final DatabaseBackup databaseBackup;
+	private final DBConfig config;
+	private volatile StatsSnapshot statsSnapshot;
+
+	/**
+	 * opens a pool of reader connections and one writer connection in WAL
+	 * journal mode
+	 *
+	 * @param dbFilePath
+	 *            file to database
+	 * @param config
+	 *            pool size and PRAGMA settings
+	 * @throws SQLException
+	 *             if the database could not be opened
+	 */
+	public SQLiteTweetStore(String dbFilePath, DBConfig config) throws SQLException {
+		// register the driver
+		try {
+			Class.forName("org.sqlite.JDBC");
+		} catch (ClassNotFoundException e) {
+			System.out.print("SQLiteTweetStore: ");
+			e.printStackTrace();
+		}
+		this.config = config;
+		pool = new ConnectionPool(dbFilePath, config);
+		statusWriter = new StatusWriter(pool, config);
+		databaseBackup = new DatabaseBackup(pool, config);
+	}
+
+	/**
+	 * aborts a running backup, writes the queued status updates and closes
+	 * all connections to the database
+	 */
+	@Override
+	public void close() {
+		databaseBackup.close();
+		statusWriter.close();
+		pool.close();
+	}
+
+	/**
+	 * the queued status updates are written first, so the backup contains
+	 * them (see DatabaseBackup)
+	 */
+	@Override
+	public BackupStatus backup(String file) {
+		statusWriter.flush();
+		return databaseBackup.backup(file);
+	}
+
+	@Override
+	public boolean startBackup() {
+		statusWriter.flush();
+		return databaseBackup.startBackup();
+	}
+
+	@Override
+	public BackupStatus getBackupStatus() {
+		return databaseBackup.getStatus();
+	}
+
+	/**
+	 * returns the cached prepared statement for the given SQL with all
+	 * parameters bound in order
+	 *
+	 * @param connection
+	 *            a connection held by the calling thread
+	 * @param sql
+	 *            the SQL with ?-placeholders
+	 * @param params
+	 *            the values for the placeholders
+	 * @return the prepared statement
+	 * @throws SQLException
+	 *             if the statement could not be prepared
+	 */
+	private PreparedStatement prepare(Connection connection, String sql, Object... params)
+			throws SQLException {
+		PreparedStatement stmt = pool.prepare(connection, sql);
+		for (int i = 0; i < params.length; i++) {
+			stmt.setObject(i + 1, params[i]);
+		}
+		return stmt;
+	}
+
+	/**
+	 * splits the given IDs into parameter lists for statements of the form
+	 * "... WHERE user_id = ? AND x_id IN " + IN_LIST. Each list starts with
+	 * the given first value (mostly the userID) followed by exactly IN_CHUNK
+	 * IDs, the last list is filled up by repeating its last ID. So every
+	 * statement has the same SQL and is prepared only once.
+	 *
+	 * @param first
+	 *            value for the placeholder before the IN list
+	 * @param ids
+	 *            IDs, not empty
+	 * @return the parameter lists
+	 */
+	private List<Object[]> inChunks(Object first, Collection<Integer> ids) {
+		List<Object[]> toReturn = new ArrayList<Object[]>();
+		Object[] chunk = null;
+		int i = IN_CHUNK;
+		for (Integer id : ids) {
+			if (i == IN_CHUNK) {
+				chunk = new Object[IN_CHUNK + 1];
+				chunk[0] = first;
+				toReturn.add(chunk);
+				i = 0;
+			}
+			chunk[++i] = id;
+		}
+		for (; i < IN_CHUNK; i++) {
+			chunk[i + 1] = chunk[i];
+		}
+		return toReturn;
+	}
+
+	/**
+	 * returns the rowid of the last row inserted with the given (writer)
+	 * connection
+	 *
+	 * @param connection
+	 *            the writer connection
+	 * @return the last inserted rowid
+	 * @throws SQLException
+	 *             if the query failed
+	 */
+	private int lastInsertID(Connection connection) throws SQLException {
+		ResultSet result = prepare(connection, "SELECT last_insert_rowid()").executeQuery();
+		int toReturn = result.next() ? result.getInt(1) : -1;
+		result.close();
+		return toReturn;
+	}
+
+	/**
+	 * returns the value for the column scheduled_at (epoch milliseconds) of
+	 * the given tweetDate, 0 if the date can't be parsed
+	 *
+	 * @param tweetDate
+	 *            date of a tweet (yyyy-MM-dd HH:mm:ss)
+	 * @return epoch milliseconds of tweetDate
+	 */
+	private long scheduledAt(String tweetDate) {
+		Instant instant = Tweet.parseDate(tweetDate);
+		return (instant == null) ? 0 : instant.toEpochMilli();
+	}
+
+	@Override
+	public void createOutputTables(String dbCreationFileName) {
+		// read creationFile
+		StringBuffer sql = new StringBuffer();
+		BufferedReader in;
+		try {
+			in = new BufferedReader(new FileReader(dbCreationFileName));
+			String line = in.readLine();
+			while (line != null) {
+				sql.append(line + "\n");
+				line = in.readLine();
+			}
+			in.close();
+		} catch (IOException e) {
+			System.out.print("SQLiteTweetStore.createOututTables: couldnt create outputtables");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		}
+		Connection connection = pool.acquireWrite();
+		try {
+			Statement stmt = connection.createStatement();
+			stmt.executeUpdate(sql.toString());
+			// the tables are recreated in their unmigrated form
+			stmt.executeUpdate("PRAGMA user_version = 0");
+			stmt.close();
+			connection.commit();
+			System.out.println("Initialized new output-database.");
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.createOututTables: couldnt create outputtable");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseWrite(connection);
+		}
+	}
+
+	@Override
+	public int migrate() {
+		Connection connection = pool.acquireWrite();
+		try {
+			return new SchemaMigrator(connection).migrate();
+		} catch (SQLException | IOException e) {
+			System.out.print("SQLiteTweetStore.migrate: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			return -1;
+		} finally {
+			pool.releaseWrite(connection);
+		}
+	}
+
+	@Override
+	public int checkForUser(long twitter_id) {
+		int toReturn;
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection, "SELECT twitter_id, user_id FROM users WHERE (twitter_id = ?)",
+					twitter_id).executeQuery();
+			if (!result.next()) {
+				toReturn = -1;
+			} else {
+				toReturn = result.getInt(2);
+			}
+			result.close();
+			return toReturn;
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.checkForUser: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			return -1;
+		} finally {
+			pool.releaseRead(connection);
+		}
+	}
+
+	@Override
+	public int insertNewUser(long twitterID, String oauthToken, String oauthTokenSecret) {
+		int toReturn;
+		Connection connection = pool.acquireWrite();
+		try {
+			// insert user (the token columns are NOT NULL, missing tokens are
+			// stored as 'null' like before)
+			prepare(connection, "INSERT INTO users (twitter_id, oauth_token, oauth_token_secret) VALUES (?, ?, ?)",
+					twitterID, String.valueOf(oauthToken), String.valueOf(oauthTokenSecret)).executeUpdate();
+			// get userID
+			toReturn = lastInsertID(connection);
+			connection.commit();
+		} catch (SQLException e) {
+			System.out.println("SQLiteTweetStore.insertNewUser: couldnt insert the new user " + twitterID);
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			toReturn = -1;
+		} finally {
+			pool.releaseWrite(connection);
+		}
+		return toReturn;
+	}
+
+	@Override
+	public String[] getUserConfig(int userID) {
+		String[] toReturn = null;
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection,
+					"SELECT twitter_id, oauth_token, oauth_token_secret FROM users WHERE user_id = ?", userID)
+							.executeQuery();
+			if (result.next()) {
+				toReturn = new String[3];
+				toReturn[0] = Long.toString(result.getLong(1));
+				toReturn[1] = result.getString(2);
+				toReturn[2] = result.getString(3);
+			}
+			result.close();
+		} catch (Exception e) {
+			System.out.println("SQLiteTweetStore.getUserConfig: couldnt read config for user_id " + userID);
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseRead(connection);
+		}
+		return toReturn;
+	}
+
+	@Override
+	public int getRegisteredUsers() {
+		return getCounter("users");
+	}
+
+	/**
+	 * The tweets are written in JDBC batches of config.batchSize, if
+	 * config.commitBatches is set every batch is committed on its own and
+	 * other writers may run in between.
+	 */
+	@Override
+	public int insertTweetGroup(TweetGroup tweetGroup, int userID) {
+		int toReturn = -1;
+		boolean committed = false;
+		Connection connection = pool.acquireWrite();
+		try {
+			// update table groups
+			prepare(connection,
+					"INSERT INTO groups(user_id, group_name, description, enabled, threaded, flashcard) VALUES(?,?,?,?,?,?)",
+					userID, tweetGroup.title, tweetGroup.description, false, tweetGroup.threaded, tweetGroup.flashcard)
+							.executeUpdate();
+			// get groupID
+			int group_id = lastInsertID(connection);
+			toReturn = group_id;
+			// update table 'tweets'
+			PreparedStatement prepTweets = pool.prepare(connection,
+					"INSERT INTO tweets(user_id, group_id, scheduled_date, tweet, scheduled, tweeted, img_url, longitude, latitude, scheduled_at) VALUES(?,?,?,?,?,?,?,?,?,?)");
+			int batchSize = Math.max(1, config.batchSize);
+			for (int start = 0; start < tweetGroup.tweets.size(); start += batchSize) {
+				List<Tweet> batch = tweetGroup.tweets.subList(start,
+						Math.min(start + batchSize, tweetGroup.tweets.size()));
+				for (Tweet tweet : batch) {
+					prepTweets.setInt(1, userID);
+					prepTweets.setInt(2, group_id);
+					prepTweets.setString(3, tweet.tweetDate);
+					prepTweets.setString(4, tweet.content);
+					prepTweets.setBoolean(5, false);
+					prepTweets.setBoolean(6, false);
+					prepTweets.setString(7, tweet.imageUrl);
+					prepTweets.setFloat(8, tweet.longitude);
+					prepTweets.setFloat(9, tweet.latitude);
+					prepTweets.setLong(10, scheduledAt(tweet.tweetDate));
+					prepTweets.addBatch();
+				}
+				prepTweets.executeBatch();
+				// the writer holds the database lock for the whole batch, so
+				// the new (AUTOINCREMENT) tweetIDs are consecutive
+				int firstID = lastInsertID(connection) - batch.size() + 1;
+				for (int i = 0; i < batch.size(); i++) {
+					batch.get(i).tweetID = firstID + i;
+				}
+				if (config.commitBatches) {
+					connection.commit();
+					committed = true;
+					pool.releaseWrite(connection);
+					connection = pool.acquireWrite();
+				}
+			}
+			connection.commit();
+		} catch (Exception e) {
+			System.out.print("SQLiteTweetStore.insertTweets: Couldnt insert tweets ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			if (committed) {
+				// remove the batches committed so far
+				deleteGroup(toReturn, userID);
+			}
+			toReturn = -1;
+		} finally {
+			pool.releaseWrite(connection);
+		}
+		if (toReturn != -1) {
+			tweetGroup.groupID = toReturn;
+			for (Tweet tweet : tweetGroup.tweets) {
+				tweet.groupID = toReturn;
+				tweet.groupName = tweetGroup.title;
+			}
+		}
+		return toReturn;
+	}
+
+	@Override
+	public boolean updateGroupStatus(int groupID, boolean enabled, int userID) {
+		Connection connection = pool.acquireWrite();
+		try {
+			prepare(connection, "UPDATE groups SET enabled = ? WHERE (group_id = ? AND user_id = ?)", enabled, groupID,
+					userID).executeUpdate();
+			connection.commit();
+		} catch (SQLException e) {
+			System.out.println("SQLiteTweetStore.updateGroupStatus: couldnt update group-status");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			return false;
+		} finally {
+			pool.releaseWrite(connection);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean flagAsScheduled(int tweetID, int userID) {
+		Connection connection = pool.acquireWrite();
+		try {
+			prepare(connection, "UPDATE tweets SET scheduled = 1 WHERE (tweet_id = ? AND user_id = ?)", tweetID, userID)
+					.executeUpdate();
+			connection.commit();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.flagAsScheduled: failed");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			return false;
+		} finally {
+			pool.releaseWrite(connection);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean flagAsTweeted(int tweetID, int userID) {
+		Connection connection = pool.acquireWrite();
+		try {
+			prepare(connection, "UPDATE tweets SET tweeted = 1 WHERE (tweet_id = ? AND user_id = ?)", tweetID, userID)
+					.executeUpdate();
+			connection.commit();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.flagAsTweeted: failed");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			return false;
+		} finally {
+			pool.releaseWrite(connection);
+		}
+		return true;
+	}
+
+	@Override
+	public void flagAsScheduledLater(int tweetID, int userID) {
+		statusWriter.flagAsScheduled(tweetID, userID);
+	}
+
+	@Override
+	public void addStatusIDLater(int tweetID, long statusId) {
+		statusWriter.addStatusID(tweetID, statusId);
+	}
+
+	@Override
+	public boolean flushStatusUpdates() {
+		return statusWriter.flush();
+	}
+
+	@Override
+	public void deleteGroup(int groupID, int userID) {
+		deleteGroups(Collections.singleton(groupID), userID);
+	}
+
+	@Override
+	public void deleteTweet(int tweetID, int userID) {
+		deleteTweets(Collections.singleton(tweetID), userID);
+	}
+
+	@Override
+	public List<Integer> deleteGroups(Collection<Integer> groupIDs, int userID) {
+		List<Integer> toReturn = new ArrayList<Integer>();
+		if (groupIDs.isEmpty()) {
+			return toReturn;
+		}
+		Connection connection = pool.acquireWrite();
+		try {
+			for (Object[] chunk : inChunks(userID, groupIDs)) {
+				selectIDs(connection, "SELECT tweet_id FROM tweets WHERE user_id = ? AND group_id IN " + IN_LIST,
+						chunk, toReturn);
+				prepare(connection, "DELETE FROM tweets WHERE user_id = ? AND group_id IN " + IN_LIST, chunk)
+						.executeUpdate();
+				selectIDs(connection,
+						"SELECT tweet_id FROM tweets_archive WHERE user_id = ? AND group_id IN " + IN_LIST, chunk,
+						toReturn);
+				prepare(connection, "DELETE FROM tweets_archive WHERE user_id = ? AND group_id IN " + IN_LIST, chunk)
+						.executeUpdate();
+				prepare(connection, "DELETE FROM misfires WHERE user_id = ? AND group_id IN " + IN_LIST, chunk)
+						.executeUpdate();
+				prepare(connection, "DELETE FROM leases WHERE user_id = ? AND group_id IN " + IN_LIST, chunk)
+						.executeUpdate();
+				prepare(connection, "DELETE FROM repeats WHERE user_id = ? AND group_id IN " + IN_LIST, chunk)
+						.executeUpdate();
+				prepare(connection, "DELETE FROM groups WHERE user_id = ? AND group_id IN " + IN_LIST, chunk)
+						.executeUpdate();
+			}
+			connection.commit();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.deleteGroups: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			toReturn.clear();
+		} finally {
+			pool.releaseWrite(connection);
+		}
+		return toReturn;
+	}
+
+	@Override
+	public List<Integer> deleteTweets(Collection<Integer> tweetIDs, int userID) {
+		List<Integer> toReturn = new ArrayList<Integer>();
+		if (tweetIDs.isEmpty()) {
+			return toReturn;
+		}
+		Connection connection = pool.acquireWrite();
+		try {
+			for (Object[] chunk : inChunks(userID, tweetIDs)) {
+				selectIDs(connection, "SELECT tweet_id FROM tweets WHERE user_id = ? AND tweet_id IN " + IN_LIST,
+						chunk, toReturn);
+				prepare(connection, "DELETE FROM tweets WHERE user_id = ? AND tweet_id IN " + IN_LIST, chunk)
+						.executeUpdate();
+				selectIDs(connection,
+						"SELECT tweet_id FROM tweets_archive WHERE user_id = ? AND tweet_id IN " + IN_LIST, chunk,
+						toReturn);
+				prepare(connection, "DELETE FROM tweets_archive WHERE user_id = ? AND tweet_id IN " + IN_LIST, chunk)
+						.executeUpdate();
+				prepare(connection, "DELETE FROM misfires WHERE user_id = ? AND tweet_id IN " + IN_LIST, chunk)
+						.executeUpdate();
+				prepare(connection, "DELETE FROM leases WHERE user_id = ? AND tweet_id IN " + IN_LIST, chunk)
+						.executeUpdate();
+			}
+			connection.commit();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.deleteTweets: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			toReturn.clear();
+		} finally {
+			pool.releaseWrite(connection);
+		}
+		return toReturn;
+	}
+
+	/**
+	 * Moves the tweets in transactions of config.batchSize tweets, other
+	 * writers get the writer connection in between.
+	 */
+	@Override
+	public int archiveTweets(long before) {
+		// status updates of the archived tweets must not be written to 'tweets' later
+		statusWriter.flush();
+		int toReturn = 0;
+		int batchSize = Math.max(1, config.batchSize);
+		List<Integer> tweetIDs = new ArrayList<Integer>();
+		do {
+			tweetIDs.clear();
+			Connection connection = pool.acquireWrite();
+			try {
+				selectIDs(connection, "SELECT tweet_id FROM tweets"
+						+ " WHERE (scheduled IN (0, 1) AND tweeted = 1 AND scheduled_at < ?) LIMIT ?",
+						new Object[] { before, batchSize }, tweetIDs);
+				if (tweetIDs.isEmpty()) {
+					break;
+				}
+				for (Object[] chunk : inChunks(1, tweetIDs)) {
+					prepare(connection, "INSERT INTO tweets_archive (" + TweetMapper.COLUMNS + ") SELECT "
+							+ TweetMapper.COLUMNS + " FROM tweets WHERE tweeted = ? AND tweet_id IN " + IN_LIST, chunk)
+							.executeUpdate();
+					prepare(connection, "DELETE FROM tweets WHERE tweeted = ? AND tweet_id IN " + IN_LIST, chunk)
+							.executeUpdate();
+					// an archived tweet is never claimed again
+					prepare(connection, "DELETE FROM leases WHERE done = ? AND tweet_id IN " + IN_LIST, chunk)
+							.executeUpdate();
+				}
+				connection.commit();
+				toReturn += tweetIDs.size();
+			} catch (SQLException e) {
+				System.out.print("SQLiteTweetStore.archiveTweets: ");
+				e.printStackTrace();
+				QueryMetrics.markFailed();
+				break;
+			} finally {
+				pool.releaseWrite(connection);
+			}
+		} while (tweetIDs.size() == batchSize);
+		return toReturn;
+	}
+
+	/**
+	 * adds the IDs in the first column of the query result to the given list
+	 */
+	private void selectIDs(Connection connection, String query, Object[] params, List<Integer> ids)
+			throws SQLException {
+		ResultSet result = prepare(connection, query, params).executeQuery();
+		while (result.next()) {
+			ids.add(result.getInt(1));
+		}
+		result.close();
+	}
+
+	@Override
+	public List<Tweet> getTweetsForUser(int userID, boolean scheduled, boolean tweeted, int groupID) {
+		String query = TweetMapper.SELECT
+				+ " WHERE(t.user_id = ? AND t.group_id = ? AND t.scheduled = ? AND t.tweeted = ?)"
+				+ " ORDER BY t.scheduled_at ASC";
+		return getTweets(query, userID, groupID, scheduled, tweeted);
+	}
+
+	/**
+	 * @param userID
+	 * @param groupID
+	 * @param withArchive
+	 * @return all tweets with the given groupID
+	 */
+	private List<Tweet> getTweetsForUser(int userID, int groupID, boolean withArchive) {
+		String query = TweetMapper.select(withArchive)
+				+ " WHERE(t.user_id = ? AND t.group_id = ?) ORDER BY t.scheduled_at ASC, t.tweet_id ASC";
+		return getTweets(query, userID, groupID);
+	}
+
+	@Override
+	public List<Tweet> getTweetsForUser(int userID, boolean scheduled, boolean tweeted) {
+		String query = TweetMapper.SELECT + " WHERE(t.user_id = ? AND t.scheduled = ? AND t.tweeted = ?)"
+				+ " ORDER BY t.scheduled_at ASC";
+		return getTweets(query, userID, scheduled, tweeted);
+	}
+
+	@Override
+	public List<Tweet> getTweetsForUser(int userID) {
+		String query = TweetMapper.SELECT + " WHERE(t.user_id = ?) ORDER BY t.scheduled_at ASC";
+		return getTweets(query, userID);
+	}
+
+	/**
+	 * see getStatsSnapshot()
+	 */
+	@Override
+	public List<Tweet> getUpcomingTweets() {
+		return getStatsSnapshot().upcomingTweets;
+	}
+
+	/**
+	 * see getStatsSnapshot()
+	 */
+	@Override
+	public List<Tweet> getLatestTweets() {
+		return getStatsSnapshot().latestTweets;
+	}
+
+	@Override
+	public List<Tweet> getLatestTweets(boolean withArchive) {
+		if (!withArchive) {
+			return getLatestTweets();
+		}
+		// the latest 15 of each table, merged
+		return getTweets("SELECT * FROM (" + TweetMapper.SELECT
+				+ " WHERE(t.tweeted = 1) ORDER BY t.scheduled_at DESC LIMIT 15) UNION ALL SELECT * FROM ("
+				+ TweetMapper.SELECT_ARCHIVE
+				+ " WHERE(t.tweeted = 1) ORDER BY t.scheduled_at DESC LIMIT 15) ORDER BY scheduled_at DESC LIMIT 15");
+	}
+
+	/**
+	 * returns the upcoming and latest tweets as read at most
+	 * config.statsSnapshotTtl milliseconds ago. The snapshot is read again
+	 * earlier when its first upcoming tweet is due.
+	 *
+	 * @return the current snapshot
+	 */
+	private StatsSnapshot getStatsSnapshot() {
+		StatsSnapshot snapshot = statsSnapshot;
+		long now = System.currentTimeMillis();
+		if (snapshot == null || now >= snapshot.validUntil) {
+			List<Tweet> upcoming = getTweets(TweetMapper.SELECT
+					+ " WHERE(t.scheduled = 1 AND t.tweeted = 0 AND t.scheduled_at > ?)"
+					+ " ORDER BY t.scheduled_at ASC LIMIT 5", now);
+			List<Tweet> latest = getTweets(
+					TweetMapper.SELECT + " WHERE(t.tweeted = 1) ORDER BY t.scheduled_at DESC LIMIT 15");
+			long validUntil = now + config.statsSnapshotTtl;
+			if (!upcoming.isEmpty()) {
+				validUntil = Math.min(validUntil, upcoming.get(0).scheduledAt.toEpochMilli());
+			}
+			snapshot = new StatsSnapshot(upcoming, latest, validUntil);
+			statsSnapshot = snapshot;
+		}
+		return snapshot;
+	}
+
+	/**
+	 *
+	 * @param query
+	 *            a TweetMapper.SELECT query with ?-placeholders
+	 * @param params
+	 *            the values for the placeholders
+	 * @return list of tweets selected with the query
+	 */
+	private List<Tweet> getTweets(String query, Object... params) {
+		List<Tweet> toReturn = new ArrayList<Tweet>();
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection, query, params).executeQuery();
+			while (result.next()) {
+				toReturn.add(TweetMapper.map(result));
+			}
+			result.close();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.getTweets: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseRead(connection);
+		}
+		return toReturn;
+	}
+
+	@Override
+	public Page<Tweet> getTweetsPage(int userID, int groupID, String cursor, boolean backward, int size,
+			boolean withArchive) {
+		Page<Tweet> toReturn = new Page<Tweet>();
+		long now = System.currentTimeMillis();
+		// cursor = section (0 = upcoming, 1 = past), tweetID, scheduled_at
+		int cursorSection = -1;
+		int cursorID = 0;
+		long cursorTime = 0;
+		if (cursor != null) {
+			String[] key = cursor.split(",", 3);
+			try {
+				cursorSection = Integer.parseInt(key[0]);
+				cursorID = Integer.parseInt(key[1]);
+				cursorTime = Long.parseLong(key[2]);
+			} catch (RuntimeException e) {
+				// malformed cursor, start from the beginning (or end)
+				cursor = null;
+				cursorSection = -1;
+			}
+		}
+		String order = backward ? " DESC" : " ASC";
+		String compare = backward ? " < " : " > ";
+		String owner = (groupID < 0) ? "t.user_id = ?" : "t.user_id = ? AND t.group_id = ?";
+		// one index range per section, merged in order of the sections
+		StringBuffer sql = new StringBuffer();
+		List<Object> params = new ArrayList<Object>();
+		for (int section = 0; section < 2; section++) {
+			if (cursor != null && (backward ? section > cursorSection : section < cursorSection)) {
+				continue;
+			}
+			if (sql.length() > 0) {
+				sql.append(" UNION ALL ");
+			}
+			sql.append("SELECT * FROM (SELECT " + section + " AS section, * FROM (" + TweetMapper.select(withArchive)
+					+ " WHERE ("
+					+ owner + " AND t.scheduled_at " + (section == 0 ? ">=" : "<") + " ?");
+			params.add(userID);
+			if (groupID >= 0) {
+				params.add(groupID);
+			}
+			params.add(now);
+			if (section == cursorSection) {
+				sql.append(" AND (t.scheduled_at" + compare + "? OR (t.scheduled_at = ? AND t.tweet_id" + compare
+						+ "?))");
+				params.add(cursorTime);
+				params.add(cursorTime);
+				params.add(cursorID);
+			}
+			sql.append(") ORDER BY t.scheduled_at" + order + ", t.tweet_id" + order + " LIMIT ?))");
+			params.add(size + 1);
+		}
+		sql.append(" ORDER BY section" + order + ", scheduled_at" + order + ", tweet_id" + order + " LIMIT ?");
+		params.add(size + 1);
+
+		List<String> keys = new ArrayList<String>();
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection, sql.toString(), params.toArray()).executeQuery();
+			while (result.next()) {
+				Tweet tweet = TweetMapper.map(result);
+				toReturn.entries.add(tweet);
+				keys.add(result.getInt("section") + "," + tweet.tweetID + "," + result.getLong("scheduled_at"));
+			}
+			result.close();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.getTweetsPage: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseRead(connection);
+		}
+		// one row of the counters (see migration 9), the same for every size
+		String count = "SELECT IFNULL(Sum(tweets" + (withArchive ? " + archived" : "") + "), 0) FROM "
+				+ ((groupID < 0) ? "user_counters WHERE (user_id = ?)"
+						: "group_counters WHERE (user_id = ? AND group_id = ?)");
+		toReturn.total = (groupID < 0) ? countTweets(count, userID) : countTweets(count, userID, groupID);
+		toReturn.fill(keys, cursor != null, backward, size);
+		return toReturn;
+	}
+
+	@Override
+	public Page<TweetGroup> getGroupsPage(int userID, String cursor, boolean backward, int size) {
+		Page<TweetGroup> toReturn = new Page<TweetGroup>();
+		String order = backward ? " DESC" : " ASC";
+		String sql = "SELECT g.group_id, g.group_name, g.description, g.enabled, g.threaded, g.flashcard "
+				+ "FROM groups g WHERE (g.user_id = ?"
+				+ (cursor == null ? "" : " AND g.group_id" + (backward ? " < " : " > ") + "?")
+				+ ") ORDER BY g.group_id" + order + " LIMIT ?";
+		Object[] params = (cursor == null) ? new Object[] { userID, size + 1 }
+				: new Object[] { userID, cursor, size + 1 };
+		List<String> keys = new ArrayList<String>();
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection, sql, params).executeQuery();
+			while (result.next()) {
+				TweetGroup group = new TweetGroup(result.getInt(1), result.getString(2), result.getString(3),
+						result.getBoolean(4), result.getBoolean(5));
+				if (result.getString(6) != null) {
+					group.setFlashCard(result.getString(6));
+				}
+				toReturn.entries.add(group);
+				keys.add(Integer.toString(group.groupID));
+			}
+			result.close();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.getGroupsPage: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseRead(connection);
+		}
+		toReturn.total = countTweets("SELECT IFNULL(Sum(groups), 0) FROM user_counters WHERE (user_id = ?)", userID);
+		toReturn.fill(keys, cursor != null, backward, size);
+		List<Integer> groupIDs = new ArrayList<Integer>();
+		for (TweetGroup group : toReturn.entries) {
+			groupIDs.add(group.groupID);
+		}
+		Map<Integer, TweetCounts> counts = getTweetCounts(userID, groupIDs);
+		for (TweetGroup group : toReturn.entries) {
+			TweetCounts groupCounts = counts.get(group.groupID);
+			group.tweetCount = (groupCounts == null) ? 0 : groupCounts.tweets;
+		}
+		return toReturn;
+	}
+
+	/**
+	 * Reads the index on (user_id, group_id, scheduled, tweeted) only (see
+	 * migration 6). Archived tweets are published (see archiveTweets()), they
+	 * are counted on the index on (user_id, group_id, scheduled_at).
+	 */
+	@Override
+	public TweetCounts getTweetCounts(int userID) {
+		TweetCounts toReturn = new TweetCounts();
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection,
+					"SELECT (SELECT Count(*) FROM groups WHERE user_id = ?), Count(*),"
+							+ " Total(scheduled = 1 AND tweeted = 0), Total(tweeted = 1),"
+							+ " (SELECT Count(*) FROM tweets_archive WHERE user_id = ?)"
+							+ " FROM tweets WHERE user_id = ?",
+					userID, userID, userID).executeQuery();
+			if (result.next()) {
+				int archived = result.getInt(5);
+				toReturn.groups = result.getInt(1);
+				toReturn.tweets = result.getInt(2) + archived;
+				toReturn.scheduled = result.getInt(3);
+				toReturn.published = result.getInt(4) + archived;
+			}
+			result.close();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.getTweetCounts: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseRead(connection);
+		}
+		return toReturn;
+	}
+
+	/**
+	 * see getTweetCounts(userID)
+	 */
+	@Override
+	public Map<Integer, TweetCounts> getTweetCounts(int userID, Collection<Integer> groupIDs) {
+		Map<Integer, TweetCounts> toReturn = new HashMap<Integer, TweetCounts>();
+		if (groupIDs.isEmpty()) {
+			return toReturn;
+		}
+		String sql = "SELECT group_id, Count(*), Total(scheduled = 1 AND tweeted = 0), Total(tweeted = 1) FROM ("
+				+ "SELECT group_id, scheduled, tweeted FROM tweets WHERE user_id = ? AND group_id IN " + IN_LIST
+				+ " UNION ALL SELECT group_id, 0, 1 FROM tweets_archive WHERE user_id = ? AND group_id IN " + IN_LIST
+				+ ") GROUP BY group_id";
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			for (Object[] chunk : inChunks(userID, groupIDs)) {
+				Object[] params = new Object[chunk.length * 2];
+				System.arraycopy(chunk, 0, params, 0, chunk.length);
+				System.arraycopy(chunk, 0, params, chunk.length, chunk.length);
+				ResultSet result = prepare(connection, sql, params).executeQuery();
+				while (result.next()) {
+					TweetCounts counts = new TweetCounts();
+					counts.groups = 1;
+					counts.tweets = result.getInt(2);
+					counts.scheduled = result.getInt(3);
+					counts.published = result.getInt(4);
+					toReturn.put(result.getInt(1), counts);
+				}
+				result.close();
+			}
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.getTweetCounts: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseRead(connection);
+		}
+		return toReturn;
+	}
+
+	@Override
+	public int getScheduledTweets() {
+		return getCounter("scheduled");
+	}
+
+	@Override
+	public int getPublishedTweets() {
+		return getCounter("published");
+	}
+
+	@Override
+	public int getAllTweets() {
+		return getCounter("tweets");
+	}
+
+	/**
+	 * returns the value of a counter in table 'counters'. The counters are
+	 * maintained by triggers (see migration 4), so reading them costs the same
+	 * for any size of the tables.
+	 *
+	 * @param name
+	 *            users, tweets, published or scheduled
+	 * @return the value of the counter
+	 */
+	private int getCounter(String name) {
+		return countTweets("SELECT value FROM counters WHERE (name = ?)", name);
+	}
+
+	/**
+	 * returns the number of Tweets for the query
+	 *
+	 * @param query
+	 *            the SQL query with ?-placeholders
+	 * @param params
+	 *            the values for the placeholders
+	 * @return number of tweets
+	 */
+	public int countTweets(String query, Object... params) {
+		int toReturn;
+
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection, query, params).executeQuery();
+			toReturn = result.getInt(1);
+			result.close();
+		} catch (SQLException e) {
+			System.out.println("SQLiteTweetStore.countTweets: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			return 0;
+		} finally {
+			pool.releaseRead(connection);
+		}
+
+		return toReturn;
+	}
+
+	@Override
+	public TweetGroup getTweetGroupForUser(int userID, int groupID) {
+		return getTweetGroupForUser(userID, groupID, true);
+	}
+
+	@Override
+	public TweetGroup getTweetGroupForUser(int userID, int groupID, boolean withTweets) {
+		return getTweetGroupForUser(userID, groupID, withTweets, false);
+	}
+
+	@Override
+	public TweetGroup getTweetGroupForUser(int userID, int groupID, boolean withTweets, boolean withArchive) {
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection,
+					"SELECT group_name, description, enabled, group_id, threaded, flashcard FROM groups WHERE (user_id = ? AND group_id = ?)",
+					userID, groupID).executeQuery();
+			if (!result.next()) {
+				result.close();
+				return null;
+			}
+			TweetGroup group = new TweetGroup(result.getInt(4), result.getString(1), result.getString(2),
+					result.getBoolean(3), result.getBoolean(5));
+			String flashcard = result.getString(6);
+			if(flashcard != null){
+				group.setFlashCard(result.getString(6));
+			}
+			result.close();
+			if (withTweets) {
+				List<Tweet> tweets = getTweetsForUser(userID, groupID, withArchive);
+				group.setTweets(tweets);
+			}
+			return group;
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.getTweetGroupForUser: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			return null;
+		} finally {
+			pool.releaseRead(connection);
+		}
+	}
+
+	@Override
+	public List<Integer> getGroupIDsForUser(int userID) {
+		List<Integer> toReturn = new ArrayList<Integer>();
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection, "SELECT group_id FROM groups WHERE (user_id = ?)", userID)
+					.executeQuery();
+			while (result.next()) {
+				toReturn.add(result.getInt(1));
+			}
+			result.close();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.getGroupIDsForUser: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseRead(connection);
+		}
+		return toReturn;
+	}
+
+	@Override
+	public Tweet getTweetByID(int tweetID, int userID) {
+		return getTweetByID(" WHERE (t.tweet_id = ? AND t.user_id = ?)", tweetID, userID);
+	}
+
+	@Override
+	public Tweet getTweetByID(int tweetID) {
+		return getTweetByID(" WHERE (t.tweet_id = ?)", tweetID);
+	}
+
+	/**
+	 * reads a tweet from 'tweets', or from 'tweets_archive' if it was archived
+	 *
+	 * @param where
+	 *            the WHERE-clause selecting the tweet
+	 * @param params
+	 *            the values of the ?-placeholders
+	 * @return the tweet or null
+	 */
+	private Tweet getTweetByID(String where, Object... params) {
+		Tweet toReturn = null;
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			for (String select : new String[] { TweetMapper.SELECT, TweetMapper.SELECT_ARCHIVE }) {
+				ResultSet result = prepare(connection, select + where, params).executeQuery();
+				if (result.next()) {
+					toReturn = TweetMapper.map(result);
+				}
+				result.close();
+				if (toReturn != null) {
+					break;
+				}
+			}
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.getTweetByID: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseRead(connection);
+		}
+		return toReturn;
+	}
+
+	@Override
+	public String getGroupTitle(int groupID) {
+		String toReturn = null;
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection, "SELECT group_name FROM groups WHERE (group_id = ?)", groupID)
+					.executeQuery();
+			if (!result.next()) {
+				result.close();
+				return null;
+			}
+			toReturn = result.getString(1);
+			result.close();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.getGroupIDsForUser: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseRead(connection);
+		}
+		return toReturn;
+	}	
+
+	@Override
+	public String getGroupTitle(int groupID, int userID) {
+		String toReturn = null;
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection, "SELECT group_name FROM groups WHERE (group_id = ? AND user_id = ?)",
+					groupID, userID).executeQuery();
+			if (!result.next()) {
+				result.close();
+				return null;
+			}
+			toReturn = result.getString(1);
+			result.close();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.getGroupIDsForUser: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseRead(connection);
+		}
+		return toReturn;
+	}
+
+	@Override
+	public void editGroup(int groupID, String title, String description, int userID, String flashcard) {
+		Connection connection = pool.acquireWrite();
+		try {
+			prepare(connection,
+					"UPDATE groups SET group_name = ?, description = ?, flashcard = ? WHERE (group_id = ? AND user_id = ?)",
+					title, description, flashcard, groupID, userID).executeUpdate();
+			connection.commit();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.editGroup: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseWrite(connection);
+		}
+	}
+
+	@Override
+	public void editTweet(int tweetID, String content, int userID, String imageUrl, float longitude,
+			float latitude, String tweetDate) {
+		Connection connection = pool.acquireWrite();
+		try {
+			prepare(connection,
+					"UPDATE tweets SET tweet = ?, img_url = ?, longitude = ?, latitude = ?, scheduled_date = ?, scheduled_at = ? WHERE (tweet_id = ? AND user_id = ?)",
+					content, imageUrl, longitude, latitude, tweetDate, scheduledAt(tweetDate), tweetID, userID)
+							.executeUpdate();
+			connection.commit();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.editTweet: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseWrite(connection);
+		}
+	}
+
+	@Override
+	public void addStatusID(int tweetID, long statusId){
+		Connection connection = pool.acquireWrite();
+		try {
+			prepare(connection, "UPDATE tweets SET status_id = ? WHERE (tweet_id = ?)", statusId, tweetID).executeUpdate();
+			connection.commit();
+		} catch (SQLException e) {
+			System.out.println("SQLiteTweetStore.addStatusID: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseWrite(connection);
+		}
+		
+		
+	}
+
+	@Override
+	public int addTweetToGroup(int userID, Tweet tweet, int groupID) {
+		Connection connection = pool.acquireWrite();
+		try {
+			prepare(connection,
+					"INSERT INTO tweets (user_id, group_id, scheduled_date, tweet, scheduled, tweeted, img_url, longitude, latitude, scheduled_at) VALUES(?,?,?,?,?,?,?,?,?,?)",
+					userID, groupID, tweet.tweetDate, tweet.content, false, false, tweet.imageUrl, tweet.longitude,
+					tweet.latitude, scheduledAt(tweet.tweetDate)).executeUpdate();
+			int toReturn = lastInsertID(connection);
+			connection.commit();
+			updateGroupStatus(groupID, false, userID);
+			return toReturn;
+
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.addTweetToGroup: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			return -1;
+		} finally {
+			pool.releaseWrite(connection);
+		}
+	}
+
+	@Override
+	public boolean isEnabledGroup(int groupID, int userID) {
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection, "SELECT enabled FROM groups WHERE (group_id = ? AND user_id = ?)",
+					groupID, userID).executeQuery();
+			boolean enabled = result.next() && result.getBoolean(1);
+			result.close();
+			return enabled;
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.isEnabledGroup: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			return false;
+		} finally {
+			pool.releaseRead(connection);
+		}
+	}
+
+	@Override
+	public boolean isThreadedGroup(int groupID, int userID){
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection, "SELECT threaded FROM groups WHERE (group_id = ? AND user_id = ?)",
+					groupID, userID).executeQuery();
+			boolean threaded = result.next() && result.getBoolean(1);
+			result.close();
+			return threaded;
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.isThreadedGroup: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			return false;
+		} finally {
+			pool.releaseRead(connection);
+		}
+	}
+
+	@Override
+	public boolean setThreaded(int groupID, int userID, boolean threaded){
+		Connection connection = pool.acquireWrite();
+		try {
+			prepare(connection, "UPDATE groups SET threaded = ? WHERE (group_id = ? AND user_id = ?)", threaded, groupID,
+					userID).executeUpdate();
+			connection.commit();
+		} catch (SQLException e) {
+			System.out.println("SQLiteTweetStore.setThreaded: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			return false;
+		} finally {
+			pool.releaseWrite(connection);
+		}
+		return true;
+		
+	}
+
+	@Override
+	public int forEachSchedulableTweet(BiConsumer<Tweet, Integer> consumer) {
+		return forEachSchedulableTweet(System.currentTimeMillis() + 1, Long.MAX_VALUE, consumer);
+	}
+
+	/**
+	 * The tweets are read with a single query on a range of the (scheduled,
+	 * tweeted, scheduled_at) index and handed over row by row, so no group is
+	 * held in memory. The consumer runs while the query is open.
+	 */
+	@Override
+	public int forEachSchedulableTweet(long from, long to, BiConsumer<Tweet, Integer> consumer) {
+		int toReturn = 0;
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			// scheduled IN (0, 1) lets SQLite use the (scheduled, tweeted,
+			// scheduled_at) index for both states
+			ResultSet result = prepare(connection, TweetMapper.SELECT
+					+ " WHERE (t.scheduled IN (0, 1) AND t.tweeted = 0 AND t.scheduled_at >= ? AND t.scheduled_at < ?"
+					+ " AND g.enabled = 1)", from, to).executeQuery();
+			try {
+				while (result.next()) {
+					consumer.accept(TweetMapper.map(result), result.getInt("user_id"));
+					toReturn++;
+				}
+			} finally {
+				result.close();
+			}
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.forEachSchedulableTweet: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseRead(connection);
+		}
+		return toReturn;
+	}
+
+	/**
+	 * Reads a range of the (scheduled, tweeted, scheduled_at) index, the
+	 * consumer runs while the query is open.
+	 */
+	@Override
+	public int forEachMisfiredTweet(long before, BiConsumer<Tweet, Integer> consumer) {
+		int toReturn = 0;
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection, TweetMapper.SELECT
+					+ " WHERE (t.scheduled = 1 AND t.tweeted = 0 AND t.scheduled_at < ? AND g.enabled = 1"
+					+ " AND NOT EXISTS (SELECT 1 FROM leases l WHERE l.tweet_id = t.tweet_id"
+					+ " AND (l.done = 1 OR l.expires_at >= ?)))", before, before).executeQuery();
+			try {
+				while (result.next()) {
+					consumer.accept(TweetMapper.map(result), result.getInt("user_id"));
+					toReturn++;
+				}
+			} finally {
+				result.close();
+			}
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.forEachMisfiredTweet: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseRead(connection);
+		}
+		return toReturn;
+	}
+
+	@Override
+	public void recordMisfires(List<Misfire> misfires) {
+		if (misfires.isEmpty()) {
+			return;
+		}
+		// a queued flag must not schedule a skipped tweet again
+		statusWriter.flush();
+		Connection connection = pool.acquireWrite();
+		try {
+			PreparedStatement record = prepare(connection, "INSERT OR REPLACE INTO misfires"
+					+ " (tweet_id, user_id, group_id, scheduled_at, detected_at, action) VALUES (?, ?, ?, ?, ?, ?)");
+			PreparedStatement skip = prepare(connection,
+					"UPDATE tweets SET scheduled = 0 WHERE (tweet_id = ? AND user_id = ?)");
+			for (Misfire misfire : misfires) {
+				record.setInt(1, misfire.tweetID);
+				record.setInt(2, misfire.userID);
+				record.setInt(3, misfire.groupID);
+				record.setLong(4, misfire.scheduledAt);
+				record.setLong(5, misfire.detectedAt);
+				record.setString(6, misfire.action);
+				record.addBatch();
+				if (Misfire.SKIPPED.equals(misfire.action)) {
+					skip.setInt(1, misfire.tweetID);
+					skip.setInt(2, misfire.userID);
+					skip.addBatch();
+				}
+			}
+			record.executeBatch();
+			skip.executeBatch();
+			connection.commit();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.recordMisfires: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseWrite(connection);
+		}
+	}
+
+	/**
+	 * The text and date are read from the tweet, which may have been archived
+	 * since.
+	 */
+	@Override
+	public List<Misfire> getMisfires(int userID, int limit) {
+		List<Misfire> toReturn = new ArrayList<Misfire>();
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection,
+					"SELECT m.tweet_id, m.group_id, m.scheduled_at, m.detected_at, m.action,"
+							+ " COALESCE(t.scheduled_date, a.scheduled_date), COALESCE(t.tweet, a.tweet) FROM misfires m"
+							+ " LEFT JOIN tweets t ON (t.tweet_id = m.tweet_id)"
+							+ " LEFT JOIN tweets_archive a ON (a.tweet_id = m.tweet_id)"
+							+ " WHERE (m.user_id = ?) ORDER BY m.detected_at DESC, m.tweet_id DESC LIMIT ?",
+					userID, limit).executeQuery();
+			while (result.next()) {
+				Misfire misfire = new Misfire();
+				misfire.tweetID = result.getInt(1);
+				misfire.userID = userID;
+				misfire.groupID = result.getInt(2);
+				misfire.scheduledAt = result.getLong(3);
+				misfire.detectedAt = result.getLong(4);
+				misfire.action = result.getString(5);
+				misfire.tweetDate = result.getString(6);
+				misfire.content = result.getString(7);
+				toReturn.add(misfire);
+			}
+			result.close();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.getMisfires: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseRead(connection);
+		}
+		return toReturn;
+	}
+
+	/**
+	 * Each statement runs under the write lock of the database file, which
+	 * other processes wait for up to busyTimeout milliseconds. So of several
+	 * nodes claiming the same tweet exactly one inserts or takes over the
+	 * lease, the others change no row.
+	 */
+	@Override
+	public boolean claimTweet(int tweetID, int userID, String node, long now, long leaseTime) {
+		Connection connection = pool.acquireWrite();
+		try {
+			// the first claim of the tweet
+			int claimed = prepare(connection,
+					"INSERT OR IGNORE INTO leases (tweet_id, user_id, group_id, node, expires_at)"
+							+ " SELECT tweet_id, user_id, group_id, ?, ? FROM tweets"
+							+ " WHERE (tweet_id = ? AND user_id = ? AND tweeted = 0)",
+					node, now + leaseTime, tweetID, userID).executeUpdate();
+			// an expired lease, or one of this node
+			if (claimed == 0) {
+				claimed = prepare(connection,
+						"UPDATE leases SET node = ?, expires_at = ?"
+								+ " WHERE (tweet_id = ? AND done = 0 AND (expires_at < ? OR node = ?) AND EXISTS"
+								+ " (SELECT 1 FROM tweets WHERE tweet_id = ? AND user_id = ? AND tweeted = 0))",
+						node, now + leaseTime, tweetID, now, node, tweetID, userID).executeUpdate();
+			}
+			connection.commit();
+			return claimed > 0;
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.claimTweet: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			return false;
+		} finally {
+			pool.releaseWrite(connection);
+		}
+	}
+
+	@Override
+	public void completeLease(int tweetID, String node) {
+		Connection connection = pool.acquireWrite();
+		try {
+			prepare(connection, "UPDATE leases SET done = 1 WHERE (tweet_id = ? AND node = ?)", tweetID, node)
+					.executeUpdate();
+			connection.commit();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.completeLease: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseWrite(connection);
+		}
+	}
+
+	@Override
+	public int forEachExpiredLease(long now, BiConsumer<Tweet, Integer> consumer) {
+		int toReturn = 0;
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection, TweetMapper.SELECT + " JOIN leases l ON (l.tweet_id = t.tweet_id)"
+					+ " WHERE (l.done = 0 AND l.expires_at < ? AND t.tweeted = 0 AND g.enabled = 1)", now)
+							.executeQuery();
+			try {
+				while (result.next()) {
+					consumer.accept(TweetMapper.map(result), result.getInt("user_id"));
+					toReturn++;
+				}
+			} finally {
+				result.close();
+			}
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.forEachExpiredLease: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseRead(connection);
+		}
+		return toReturn;
+	}
+
+	@Override
+	public Map<Integer, List<TweetGroup>> getAllEnabledGroups() {
+		Map<Integer, List<TweetGroup>> toReturn = new HashMap<Integer, List<TweetGroup>>();
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection, "SELECT user_id, group_id FROM groups WHERE (enabled = 1)")
+					.executeQuery();
+			List<int[]> enabled = new ArrayList<int[]>();
+			while (result.next()) {
+				enabled.add(new int[] { result.getInt(1), result.getInt(2) });
+			}
+			result.close();
+			TweetGroup group;
+			for (int[] ids : enabled) {
+				int userID = ids[0];
+				int groupID = ids[1];
+				group = getTweetGroupForUser(userID, groupID);
+				List<TweetGroup> groupList = toReturn.get(userID);
+				if (groupList == null) {
+					groupList = new ArrayList<TweetGroup>();
+				}
+				groupList.add(group);
+				toReturn.put(userID, groupList);
+			}
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.getAllEnabledGroupsByUser: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+		} finally {
+			pool.releaseRead(connection);
+		}
+		return toReturn;
+	}
+
+	@Override
+	public List<Integer> deleteUser(int userID) {
+		List<Integer> toReturn = new ArrayList<Integer>();
+		Connection connection = pool.acquireWrite();
+		try {
+			selectIDs(connection, "SELECT tweet_id FROM tweets WHERE user_id = ?", new Object[] { userID }, toReturn);
+			prepare(connection, "DELETE FROM tweets WHERE user_id = ?", userID).executeUpdate();
+			selectIDs(connection, "SELECT tweet_id FROM tweets_archive WHERE user_id = ?", new Object[] { userID },
+					toReturn);
+			prepare(connection, "DELETE FROM tweets_archive WHERE user_id = ?", userID).executeUpdate();
+			prepare(connection, "DELETE FROM misfires WHERE user_id = ?", userID).executeUpdate();
+			prepare(connection, "DELETE FROM leases WHERE user_id = ?", userID).executeUpdate();
+			prepare(connection, "DELETE FROM repeats WHERE user_id = ?", userID).executeUpdate();
+			prepare(connection, "DELETE FROM groups WHERE user_id = ?", userID).executeUpdate();
+			prepare(connection, "DELETE FROM users WHERE user_id = ?", userID).executeUpdate();
+			connection.commit();
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.deleteUser: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			toReturn.clear();
+		} finally {
+			pool.releaseWrite(connection);
+		}
+		return toReturn;
+	}
+
+	/**
+	 * Writes the queued status updates first, the status_id of the preceding
+	 * tweet may still be queued. Then reads one row of 'tweets' and one of
+	 * 'tweets_archive' using their indexes on (user_id, group_id,
+	 * scheduled_at), the predecessor may have been archived already.
+	 */
+	@Override
+	public long getReplyID(int tweetID, int groupID, int userID) {
+		statusWriter.flush();
+		String predecessor = "SELECT * FROM (SELECT p.status_id, p.scheduled_at, p.tweet_id FROM tweets t"
+				+ " JOIN %s p ON (p.user_id = t.user_id AND p.group_id = t.group_id"
+				+ " AND (p.scheduled_at, p.tweet_id) < (t.scheduled_at, t.tweet_id))"
+				+ " WHERE (t.tweet_id = ? AND t.group_id = ? AND t.user_id = ?)"
+				+ " ORDER BY p.scheduled_at DESC, p.tweet_id DESC LIMIT 1)";
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection,
+					"SELECT status_id FROM (" + String.format(predecessor, "tweets") + " UNION ALL "
+							+ String.format(predecessor, "tweets_archive")
+							+ ") ORDER BY scheduled_at DESC, tweet_id DESC LIMIT 1",
+					tweetID, groupID, userID, tweetID, groupID, userID).executeQuery();
+			long replyID = result.next() ? result.getLong(1) : -1;
+			result.close();
+			return replyID;
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.getReplyID: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			return -1;
+		} finally {
+			pool.releaseRead(connection);
+		}
+	}
+
+	@Override
+	public String getFlashcard(int groupID) {
+		Connection connection = null;
+		try {
+			connection = pool.acquireRead();
+			ResultSet result = prepare(connection, "SELECT flashcard FROM groups WHERE (group_id = ?)", groupID)
+					.executeQuery();
+			String toReturn = result.next() ? result.getString(1) : null;
+			result.close();
+			return toReturn;
+		} catch (SQLException e) {
+			System.out.print("SQLiteTweetStore.getFlashcard: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			return null;
+		} finally {
+			pool.releaseRead(connection);
+		}
+	}
+
+	@Override
+	public boolean updateUserTokens(int userID, String oAuthToken , String oAuthTokenSecret){
+
+		Connection connection = pool.acquireWrite();
+		try {
+			prepare(connection, "UPDATE users SET oauth_token = ?, oauth_token_secret = ? WHERE (user_id = ?)",
+					oAuthToken, oAuthTokenSecret, userID).executeUpdate();
+			connection.commit();
+		} catch (SQLException e) {
+			System.out.println("SQLiteTweetStore.updateUserTokens: couldnt update user" + userID);
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			return false;
+		} finally {
+			pool.releaseWrite(connection);
+		}
+		return true;
+
+
+	}
+
+}
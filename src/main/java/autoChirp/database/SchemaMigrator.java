@@ -0,0 +1,148 @@
+package autoChirp.database;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+
+import autoChirp.tweetCreation.Tweet;
+
+/**
+ * Upgrades an existing database to the current schema version. The version of
+ * a database is kept in SQLite's PRAGMA user_version, migration number n is
+ * the classpath resource database/migrations/n.sql. Missing migrations are
+ * applied in ascending order, each one in its own transaction together with
+ * the new version number, so an interrupted upgrade resumes with the first
+ * migration that was not committed. Data a migration can't compute in SQL
+ * is changed in Java (see migrateData()) within the same transaction.
+ *
+ * schema.sql describes version 0, DBConnector.createOutputTables() resets
+ * user_version accordingly.
+ */
+public class SchemaMigrator {
+
+	private static final String MIGRATIONS = "/database/migrations/";
+
+	private final Connection connection;
+
+	/**
+	 * @param connection
+	 *            the writer connection (autoCommit off)
+	 */
+	public SchemaMigrator(Connection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * applies all migrations newer than the current version of the database
+	 *
+	 * @return the schema version of the database after the upgrade
+	 * @throws SQLException
+	 *             if a migration failed, the failed migration is rolled back
+	 * @throws IOException
+	 *             if a migration could not be read
+	 */
+	public int migrate() throws SQLException, IOException {
+		int version = getVersion();
+		String sql = readMigration(version + 1);
+		while (sql != null) {
+			version++;
+			Statement stmt = connection.createStatement();
+			try {
+				stmt.executeUpdate(sql);
+				migrateData(version);
+				stmt.executeUpdate("PRAGMA user_version = " + version);
+				connection.commit();
+			} catch (SQLException e) {
+				connection.rollback();
+				throw new SQLException("migration " + version + " failed: " + e.getMessage(), e);
+			} finally {
+				stmt.close();
+			}
+			System.out.println("Migrated database to version " + version);
+			sql = readMigration(version + 1);
+		}
+		return version;
+	}
+
+	/**
+	 * @return the schema version of the database
+	 * @throws SQLException
+	 *             if the version could not be read
+	 */
+	public int getVersion() throws SQLException {
+		Statement stmt = connection.createStatement();
+		try {
+			ResultSet result = stmt.executeQuery("PRAGMA user_version");
+			return result.next() ? result.getInt(1) : 0;
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * the data changes of a migration which are done in Java, run after its
+	 * SQL
+	 */
+	private void migrateData(int version) throws SQLException {
+		switch (version) {
+		case 3:
+			backfillScheduledAt();
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * computes scheduled_at of the existing tweets with Tweet.parseDate(),
+	 * like it is computed for new tweets. SQLite's strftime() would use the
+	 * time zone of the C library, which needn't be the one of the JVM.
+	 */
+	private void backfillScheduledAt() throws SQLException {
+		Statement select = connection.createStatement();
+		PreparedStatement update = connection
+				.prepareStatement("UPDATE tweets SET scheduled_at = ? WHERE tweet_id = ?");
+		try {
+			ResultSet result = select.executeQuery("SELECT tweet_id, scheduled_date FROM tweets");
+			while (result.next()) {
+				Instant instant = Tweet.parseDate(result.getString(2));
+				update.setLong(1, (instant == null) ? 0 : instant.toEpochMilli());
+				update.setInt(2, result.getInt(1));
+				update.addBatch();
+			}
+			result.close();
+			update.executeBatch();
+		} finally {
+			select.close();
+			update.close();
+		}
+	}
+
+	private static String readMigration(int version) throws IOException {
+		InputStream in = SchemaMigrator.class.getResourceAsStream(MIGRATIONS + version + ".sql");
+		if (in == null) {
+			return null;
+		}
+		StringBuffer sql = new StringBuffer();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		try {
+			String line = reader.readLine();
+			while (line != null) {
+				sql.append(line + "\n");
+				line = reader.readLine();
+			}
+		} finally {
+			reader.close();
+		}
+		return sql.toString();
+	}
+
+}
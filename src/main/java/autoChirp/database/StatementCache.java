@@ -0,0 +1,87 @@
+package autoChirp.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of prepared statements for a single connection, so SQLite parses and
+ * plans every query only once per connection. The cache is not synchronized,
+ * it relies on the ConnectionPool handing each connection to one thread at a
+ * time.
+ *
+ * A cached statement is shared by all callers using the same SQL string, so
+ * its ResultSet has to be read and closed before the same SQL is executed
+ * again.
+ */
+public class StatementCache {
+
+	private final Connection connection;
+	private final Map<String, PreparedStatement> statements;
+
+	/**
+	 * @param connection
+	 *            the connection the statements are prepared on
+	 * @param maxSize
+	 *            number of statements kept open, the least recently used
+	 *            statement is closed first
+	 */
+	public StatementCache(Connection connection, final int maxSize) {
+		this.connection = connection;
+		this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() <= maxSize) {
+					return false;
+				}
+				close(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * returns the cached statement for the given SQL or prepares a new one
+	 *
+	 * @param sql
+	 *            the SQL with ?-placeholders
+	 * @return a prepared statement with cleared parameters and batch
+	 * @throws SQLException
+	 *             if the statement could not be prepared
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement stmt = statements.get(sql);
+		if (stmt == null || stmt.isClosed()) {
+			stmt = connection.prepareStatement(sql);
+			statements.put(sql, stmt);
+		} else {
+			stmt.clearParameters();
+			stmt.clearBatch();
+		}
+		return stmt;
+	}
+
+	/**
+	 * closes all cached statements
+	 */
+	public void clear() {
+		for (PreparedStatement stmt : statements.values()) {
+			close(stmt);
+		}
+		statements.clear();
+	}
+
+	private static void close(PreparedStatement stmt) {
+		try {
+			stmt.close();
+		} catch (SQLException e) {
+			System.out.print("StatementCache.close: ");
+			e.printStackTrace();
+		}
+	}
+
+}
@@ -0,0 +1,43 @@
+package autoChirp.database;
+
+import java.util.Collections;
+import java.util.List;
+
+import autoChirp.tweetCreation.Tweet;
+
+/**
+ * The upcoming and latest tweets shown on the statistics page, read once and
+ * shared by all requests until validUntil.
+ */
+public class StatsSnapshot {
+
+	/**
+	 * the next tweets to be published, read only
+	 */
+	public final List<Tweet> upcomingTweets;
+
+	/**
+	 * the most recently published tweets, read only
+	 */
+	public final List<Tweet> latestTweets;
+
+	/**
+	 * epoch milliseconds after which the snapshot has to be read again
+	 */
+	public final long validUntil;
+
+	/**
+	 * @param upcomingTweets
+	 *            the next tweets to be published
+	 * @param latestTweets
+	 *            the most recently published tweets
+	 * @param validUntil
+	 *            epoch milliseconds after which the snapshot is outdated
+	 */
+	public StatsSnapshot(List<Tweet> upcomingTweets, List<Tweet> latestTweets, long validUntil) {
+		this.upcomingTweets = Collections.unmodifiableList(upcomingTweets);
+		this.latestTweets = Collections.unmodifiableList(latestTweets);
+		this.validUntil = validUntil;
+	}
+
+}
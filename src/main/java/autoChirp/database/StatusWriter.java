@@ -0,0 +1,222 @@
+package autoChirp.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the scheduled flag and the status_id of tweets behind the caller's
+ * back. The tweeted flag is not written behind, it guards against posting a
+ * tweet twice and is committed before the tweet is posted. Updates are
+ * collected per tweet, so repeated updates of one tweet are written once, and
+ * all updates collected since the last flush are committed in one
+ * transaction. A background thread flushes every statusFlushInterval
+ * milliseconds, or as soon as batchSize tweets are pending.
+ *
+ * Pending updates are flushed by close() and, if the JVM exits without
+ * close() being called, by a shutdown hook. Updates of a failed flush are kept
+ * and retried with the next one.
+ */
+public class StatusWriter {
+
+	private static final String FLAG_SCHEDULED = "UPDATE tweets SET scheduled = 1 WHERE (tweet_id = ? AND user_id = ?)";
+	private static final String SET_STATUS_ID = "UPDATE tweets SET status_id = ? WHERE (tweet_id = ?)";
+
+	/**
+	 * the pending updates of one tweet
+	 */
+	private static class Update {
+		int userID = -1;
+		boolean scheduled;
+		long statusID;
+	}
+
+	private final ConnectionPool pool;
+	private final int batchSize;
+	private final ScheduledExecutorService flusher;
+	private final Thread shutdownHook;
+	private Map<Integer, Update> pending = new LinkedHashMap<Integer, Update>();
+	private final Object flushLock = new Object();
+	private boolean flushRequested;
+	private boolean closed;
+
+	/**
+	 * @param pool
+	 *            the pool whose writer connection is used for the updates
+	 * @param config
+	 *            flush interval and batch size
+	 */
+	public StatusWriter(ConnectionPool pool, DBConfig config) {
+		this.pool = pool;
+		this.batchSize = Math.max(1, config.batchSize);
+		flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "StatusWriter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long interval = Math.max(1, config.statusFlushInterval);
+		flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+		shutdownHook = new Thread(this::close, "StatusWriter-shutdown");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	/**
+	 * queues flagging the given tweet as scheduled
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @param userID
+	 *            userID
+	 */
+	public void flagAsScheduled(int tweetID, int userID) {
+		synchronized (this) {
+			update(tweetID, userID).scheduled = true;
+		}
+		requestFlushIfFull();
+	}
+
+	/**
+	 * queues setting the statusID of a published tweet
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @param statusID
+	 *            id of the status on twitter
+	 */
+	public void addStatusID(int tweetID, long statusID) {
+		synchronized (this) {
+			update(tweetID, -1).statusID = statusID;
+		}
+		requestFlushIfFull();
+	}
+
+	/**
+	 * @return number of tweets with updates that are not written yet
+	 */
+	public synchronized int getPending() {
+		return pending.size();
+	}
+
+	/**
+	 * writes all pending updates in one transaction, blocks until they are
+	 * committed. A flush running in another thread is waited for, so all
+	 * updates queued before the call are written when it returns.
+	 *
+	 * @return true if all updates were written
+	 */
+	public boolean flush() {
+		synchronized (flushLock) {
+			return write();
+		}
+	}
+
+	private boolean write() {
+		Map<Integer, Update> toWrite;
+		synchronized (this) {
+			flushRequested = false;
+			if (pending.isEmpty()) {
+				return true;
+			}
+			toWrite = pending;
+			pending = new LinkedHashMap<Integer, Update>();
+		}
+		Connection connection = pool.acquireWrite();
+		try {
+			PreparedStatement scheduled = pool.prepare(connection, FLAG_SCHEDULED);
+			PreparedStatement statusIDs = pool.prepare(connection, SET_STATUS_ID);
+			for (Map.Entry<Integer, Update> entry : toWrite.entrySet()) {
+				Update update = entry.getValue();
+				if (update.scheduled) {
+					scheduled.setInt(1, entry.getKey());
+					scheduled.setInt(2, update.userID);
+					scheduled.addBatch();
+				}
+				if (update.statusID != 0) {
+					statusIDs.setLong(1, update.statusID);
+					statusIDs.setInt(2, entry.getKey());
+					statusIDs.addBatch();
+				}
+			}
+			scheduled.executeBatch();
+			statusIDs.executeBatch();
+			connection.commit();
+			return true;
+		} catch (SQLException e) {
+			System.out.print("StatusWriter.flush: ");
+			e.printStackTrace();
+			QueryMetrics.markFailed();
+			requeue(toWrite);
+			return false;
+		} finally {
+			pool.releaseWrite(connection);
+		}
+	}
+
+	/**
+	 * stops the background thread and writes all pending updates. Updates
+	 * queued afterwards are not written.
+	 */
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		flusher.shutdown();
+		try {
+			flusher.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// closed by the hook itself, the JVM is already shutting down
+		}
+	}
+
+	private Update update(int tweetID, int userID) {
+		Update update = pending.get(tweetID);
+		if (update == null) {
+			update = new Update();
+			pending.put(tweetID, update);
+		}
+		if (userID >= 0) {
+			update.userID = userID;
+		}
+		return update;
+	}
+
+	private void requestFlushIfFull() {
+		synchronized (this) {
+			if (closed || flushRequested || pending.size() < batchSize) {
+				return;
+			}
+			flushRequested = true;
+		}
+		flusher.execute(this::flush);
+	}
+
+	/**
+	 * puts updates of a failed flush back, newer updates of the same tweet
+	 * are kept
+	 */
+	private synchronized void requeue(Map<Integer, Update> failed) {
+		for (Map.Entry<Integer, Update> entry : failed.entrySet()) {
+			Update old = entry.getValue();
+			Update update = update(entry.getKey(), old.userID);
+			update.scheduled |= old.scheduled;
+			if (update.statusID == 0) {
+				update.statusID = old.statusID;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+package autoChirp.database;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves published tweets out of the table read by scheduling and listing:
+ * every archiveInterval milliseconds all tweets published more than
+ * archiveAfter milliseconds ago are archived (see TweetStore.archiveTweets()).
+ */
+public class TweetArchiver {
+
+	private final TweetStore store;
+	private final long archiveAfter;
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * starts archiving in a background thread, the first run is after one
+	 * interval
+	 *
+	 * @param store
+	 *            the store to archive the tweets of
+	 * @param config
+	 *            archiveAfter and archiveInterval
+	 */
+	public TweetArchiver(TweetStore store, DBConfig config) {
+		this.store = store;
+		this.archiveAfter = config.archiveAfter;
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "TweetArchiver");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long interval = Math.max(1, config.archiveInterval);
+		executor.scheduleWithFixedDelay(this::archive, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * archives all tweets published more than archiveAfter milliseconds ago
+	 *
+	 * @return number of archived tweets
+	 */
+	public int archive() {
+		try {
+			int archived = store.archiveTweets(System.currentTimeMillis() - archiveAfter);
+			if (archived > 0) {
+				System.out.println("TweetArchiver: archived " + archived + " tweets");
+			}
+			return archived;
+		} catch (RuntimeException e) {
+			// keep the schedule alive, the next run tries again
+			System.out.print("TweetArchiver.archive: ");
+			e.printStackTrace();
+			return 0;
+		}
+	}
+
+	/**
+	 * stops the background thread, waits for a running archive() to finish
+	 */
+	public void close() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,30 @@
+package autoChirp.database;
+
+/**
+ * The numbers of groups and tweets of a user (or of one of his groups), read
+ * with one aggregate query instead of loading the rows. Archived tweets are
+ * counted as tweets and published tweets.
+ */
+public class TweetCounts {
+
+	/**
+	 * number of groups, 1 for the counts of a group
+	 */
+	public int groups;
+
+	/**
+	 * number of all tweets
+	 */
+	public int tweets;
+
+	/**
+	 * number of tweets scheduled but not yet published
+	 */
+	public int scheduled;
+
+	/**
+	 * number of published tweets
+	 */
+	public int published;
+
+}
@@ -0,0 +1,90 @@
+package autoChirp.database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+
+import autoChirp.tweetCreation.Tweet;
+
+/**
+ * Maps rows of the 'tweets' (or 'tweets_archive') table to Tweet objects. The group title is read
+ * in the same query by joining the 'groups' table, so mapping a row never
+ * needs a second query.
+ *
+ * Queries start with SELECT and append their WHERE-clause, referring to the
+ * tweets table as 't', e.g.
+ * TweetMapper.SELECT + " WHERE (t.user_id = ?) ORDER BY t.scheduled_at".
+ */
+public class TweetMapper {
+
+	/**
+	 * the columns of the tables 'tweets' and 'tweets_archive'
+	 */
+	public static final String COLUMNS = "tweet_id, user_id, group_id, scheduled_date, scheduled_at, tweet, "
+			+ "scheduled, tweeted, img_url, longitude, latitude, status_id";
+
+	/**
+	 * the columns read by map(), from tweets (alias t) joined with the title
+	 * of their group (alias g)
+	 */
+	public static final String SELECT = select("tweets", "0");
+
+	/**
+	 * like SELECT, but t is the table of archived tweets (see migration 5)
+	 */
+	public static final String SELECT_ARCHIVE = select("tweets_archive", "1");
+
+	/**
+	 * like SELECT, but t is the union of the tweets and the archived tweets
+	 * (see migration 5)
+	 */
+	public static final String SELECT_WITH_ARCHIVE = select("(SELECT " + COLUMNS + ", 0 AS archived FROM tweets "
+			+ "UNION ALL SELECT " + COLUMNS + ", 1 AS archived FROM tweets_archive)", "t.archived");
+
+	private TweetMapper() {
+	}
+
+	/**
+	 * @param withArchive
+	 *            read the archived tweets, too
+	 * @return SELECT_WITH_ARCHIVE or SELECT
+	 */
+	public static String select(boolean withArchive) {
+		return withArchive ? SELECT_WITH_ARCHIVE : SELECT;
+	}
+
+	/**
+	 * @param from
+	 *            the table or subquery aliased t
+	 * @param archived
+	 *            the expression of the 'archived' column
+	 */
+	private static String select(String from, String archived) {
+		return "SELECT t.tweet_id, t.user_id, t.group_id, t.scheduled_date, t.scheduled_at, t.tweet, t.scheduled, "
+				+ "t.tweeted, t.img_url, t.longitude, t.latitude, t.status_id, g.group_name, " + archived
+				+ " AS archived FROM " + from + " t "
+				+ "LEFT JOIN groups g ON (g.group_id = t.group_id AND g.user_id = t.user_id)";
+	}
+
+	/**
+	 * creates a tweet from the current row of a result selected with SELECT
+	 *
+	 * @param result
+	 *            a result set positioned on a row
+	 * @return the tweet of the current row
+	 * @throws SQLException
+	 *             if a column could not be read
+	 */
+	public static Tweet map(ResultSet result) throws SQLException {
+		Tweet tweet = new Tweet(result.getString("scheduled_date"), result.getString("tweet"),
+				result.getInt("tweet_id"), result.getInt("group_id"), result.getBoolean("scheduled"),
+				result.getBoolean("tweeted"), result.getString("group_name"), result.getString("img_url"),
+				result.getFloat("longitude"), result.getFloat("latitude"), result.getLong("status_id"));
+		// 0 marks a scheduled_date that could not be parsed
+		long scheduledAt = result.getLong("scheduled_at");
+		tweet.scheduledAt = (scheduledAt == 0) ? null : Instant.ofEpochMilli(scheduledAt);
+		tweet.archived = result.getBoolean("archived");
+		return tweet;
+	}
+
+}
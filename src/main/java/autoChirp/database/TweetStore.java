@@ -0,0 +1,756 @@
+package autoChirp.database;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import autoChirp.tweetCreation.Tweet;
+import autoChirp.tweetCreation.TweetGroup;
+
+/**
+ * Storage of users, groups and tweets. DBConnector hands all calls to the
+ * store selected by DBConfig.store: the SQLiteTweetStore of the application,
+ * or the MemoryTweetStore, which keeps everything on the heap (tests,
+ * benchmarks of the layers above the storage).
+ *
+ * Groups and tweets are described in terms of the tables 'users', 'groups'
+ * and 'tweets' of the SQLite schema, the MemoryTweetStore behaves the same.
+ */
+public interface TweetStore {
+
+	/**
+	 * creates (or overrides) output-tables defined in dbCreationFileName, a
+	 * store without tables just drops its data
+	 *
+	 * @param dbCreationFileName
+	 *            file to the db-specification
+	 *
+	 */
+	void createOutputTables(String dbCreationFileName);
+
+	/**
+	 * upgrades the connected database to the latest schema version (see
+	 * SchemaMigrator)
+	 *
+	 * @return the schema version after the upgrade, or -1 if a migration
+	 *         failed. A store without schema returns 0.
+	 */
+	int migrate();
+
+	/**
+	 * checks if the user with the given twitterID is already registered.
+	 *
+	 * @param twitter_id
+	 *            the global TwitterID
+	 * @return returns the local userID if user already exists in the database,
+	 *         or -1 if not.
+	 */
+	int checkForUser(long twitter_id);
+
+	/**
+	 * creates a new user in the table 'users' and returns its local userID
+	 *
+	 * @param twitterID
+	 *            the users global twitterID
+	 * @param oauthToken
+	 *            the users twitter oauthToken
+	 * @param oauthTokenSecret
+	 *            the users twitter oauthTokenSecret
+	 * @return the local userID of the new user or -1 if insertion was not
+	 *         successful
+	 */
+	int insertNewUser(long twitterID, String oauthToken, String oauthTokenSecret);
+
+	/**
+	 * returns the config.-attributes for the given userID as a string-array of
+	 * lenth 3. config[0]: the users global twitterID config[1]: the users
+	 * oauthToken config[2]: the users oauthTokenSecret
+	 *
+	 * @param userID
+	 *            userID
+	 * @return string-array with twitterID (0), oauthToken (1) and
+	 *         oauthTokenSecret (2)
+	 */
+	String[] getUserConfig(int userID);
+
+	/**
+	 * returns the number of registered users as int.
+	 *
+	 * @return an int-count for registered users
+	 */
+	int getRegisteredUsers();
+
+	/**
+	 * writes a TweetGroup into the database and returns its new groupID.
+	 * updates the tables 'groups' and 'tweets'. On success the group and its
+	 * tweets carry their new IDs, so they don't need to be read again.
+	 *
+	 * @param tweetGroup
+	 *            a TweetGroup-Object consisting of title, description and a
+	 *            list of tweets
+	 * @param userID
+	 *            the users local userID
+	 * @return the groupID of the inserted tweetGroup, or -1 if insertion failed
+	 *
+	 */
+	int insertTweetGroup(TweetGroup tweetGroup, int userID);
+
+	/**
+	 * enables/disables (activates/deactivates) the given TweetGroup for
+	 * tweeting (if userID fits to groupID) and updates the field 'enabled' in
+	 * table 'groups'
+	 *
+	 * @param groupID
+	 *            groupID
+	 * @param enabled
+	 *            to update
+	 * @param userID
+	 *            userID
+	 * @return returns true if update was successful
+	 */
+	boolean updateGroupStatus(int groupID, boolean enabled, int userID);
+
+	/**
+	 * flags the given tweet as scheduled (if userID fits to tweetID )
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @param userID
+	 *            userID
+	 * @return returns true if update was successful
+	 */
+	boolean flagAsScheduled(int tweetID, int userID);
+
+	/**
+	 * flags the given tweet as tweeted (if userID fits to tweetID )
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @param userID
+	 *            userID
+	 * @return returns true if update was successful
+	 */
+	boolean flagAsTweeted(int tweetID, int userID);
+
+	/**
+	 * queues flagging the given tweet as scheduled. The update is committed
+	 * together with other queued status updates within
+	 * statusFlushInterval milliseconds.
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @param userID
+	 *            userID
+	 */
+	void flagAsScheduledLater(int tweetID, int userID);
+
+	/**
+	 * queues setting the statusID of a published tweet, see
+	 * flagAsScheduledLater()
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @param statusId
+	 *            id of the status on twitter
+	 */
+	void addStatusIDLater(int tweetID, long statusId);
+
+	/**
+	 * commits all queued status updates, blocks until they are written
+	 *
+	 * @return returns true if all updates were written
+	 */
+	boolean flushStatusUpdates();
+
+	/**
+	 * deletes the TweetGroup with the given groupID in table 'groups' and all
+	 * tweets in table 'tweets' related to this group
+	 *
+	 * @param groupID
+	 *            to delete
+	 * @param userID
+	 *            userID
+	 */
+	void deleteGroup(int groupID, int userID);
+
+	/**
+	 * deletes a single tweet in table 'tweets'
+	 *
+	 * @param tweetID
+	 *            to delete
+	 * @param userID
+	 *            userID
+	 */
+	void deleteTweet(int tweetID, int userID);
+
+	/**
+	 * deletes the given TweetGroups of a user in table 'groups', all tweets
+	 * related to these groups in table 'tweets' and all their repeats in table
+	 * 'repeats' in a single transaction. Groups of other users are ignored.
+	 *
+	 * @param groupIDs
+	 *            to delete
+	 * @param userID
+	 *            userID
+	 * @return the tweetIDs of all deleted tweets
+	 */
+	List<Integer> deleteGroups(Collection<Integer> groupIDs, int userID);
+
+	/**
+	 * deletes the given tweets of a user in table 'tweets' in a single
+	 * transaction. Tweets of other users are ignored.
+	 *
+	 * @param tweetIDs
+	 *            to delete
+	 * @param userID
+	 *            userID
+	 * @return the tweetIDs of all deleted tweets
+	 */
+	List<Integer> deleteTweets(Collection<Integer> tweetIDs, int userID);
+
+	/**
+	 * moves all published tweets scheduled before the given time from table
+	 * 'tweets' to table 'tweets_archive'. The archived tweets are only read
+	 * by the methods with a withArchive parameter (and by getReplyID()), they
+	 * are deleted with their group or user.
+	 *
+	 * @param before
+	 *            epoch milliseconds
+	 * @return number of archived tweets
+	 */
+	int archiveTweets(long before);
+
+	/**
+	 * returns a list of all tweets from the specified tweetGroup with the given
+	 * scheduled- and tweeted-status
+	 *
+	 * @param userID
+	 *            userID
+	 * @param scheduled
+	 *            selected scheduled status
+	 * @param tweeted
+	 *            selected tweeted status
+	 * @param groupID
+	 *            goupID
+	 * @return a list of all tweets which satisfy the given status-combination
+	 */
+	List<Tweet> getTweetsForUser(int userID, boolean scheduled, boolean tweeted, int groupID);
+
+	/**
+	 * returns a list of all tweets of a user with the given scheduled- and
+	 * tweeted-status
+	 *
+	 * @param userID
+	 *            iserID
+	 * @param scheduled
+	 *            selected scheduled status
+	 * @param tweeted
+	 *            selected tweeted status
+	 * @return all tweets which satisfy the given status-combination
+	 */
+	List<Tweet> getTweetsForUser(int userID, boolean scheduled, boolean tweeted);
+
+	/**
+	 * returns a list of all tweets from a user
+	 *
+	 * @param userID
+	 *            userID
+	 * @return all tweets from the user
+	 */
+	List<Tweet> getTweetsForUser(int userID);
+
+	/**
+	 * returns a list of 5 upcoming tweets, possibly read up to
+	 * DBConfig.statsSnapshotTtl milliseconds ago
+	 *
+	 * @return a list of 5 upcoming tweets
+	 */
+	List<Tweet> getUpcomingTweets();
+
+	/**
+	 * returns a list of 15 recent tweets, possibly read up to
+	 * DBConfig.statsSnapshotTtl milliseconds ago
+	 *
+	 * @return a list of 15 recent tweets
+	 */
+	List<Tweet> getLatestTweets();
+
+	/**
+	 * returns a list of 15 recent tweets. Without the archive this is
+	 * getLatestTweets(), with the archive the tweets are read from both
+	 * tables right away.
+	 *
+	 * @param withArchive
+	 *            read the archived tweets, too
+	 * @return a list of 15 recent tweets
+	 */
+	List<Tweet> getLatestTweets(boolean withArchive);
+
+	/**
+	 * returns one page of the tweets of a user (or of one of his groups). The
+	 * upcoming tweets come first, followed by the past tweets, both in
+	 * ascending order of their date. Pages are selected by the cursor of the
+	 * neighbouring page (keyset pagination): with backward = false the page
+	 * after the cursor is returned, with backward = true the page before it.
+	 * Without a cursor the first (or, backward, the last) page is returned.
+	 *
+	 * @param userID
+	 *            userID
+	 * @param groupID
+	 *            groupID, or -1 for the tweets of all groups
+	 * @param cursor
+	 *            Page.first or Page.last of the neighbouring page, or null
+	 * @param backward
+	 *            return the page before the cursor
+	 * @param size
+	 *            max. number of tweets of the page
+	 * @param withArchive
+	 *            page through the archived tweets, too
+	 * @return the page of tweets
+	 */
+	Page<Tweet> getTweetsPage(int userID, int groupID, String cursor, boolean backward, int size,
+			boolean withArchive);
+
+	/**
+	 * returns one page of the groups of a user in the order they were
+	 * created. The groups carry their tweetCount, but no tweets. See
+	 * getTweetsPage() for cursor and backward.
+	 *
+	 * @param userID
+	 *            userID
+	 * @param cursor
+	 *            Page.first or Page.last of the neighbouring page, or null
+	 * @param backward
+	 *            return the page before the cursor
+	 * @param size
+	 *            max. number of groups of the page
+	 * @return the page of groups
+	 */
+	Page<TweetGroup> getGroupsPage(int userID, String cursor, boolean backward, int size);
+
+	/**
+	 * returns the numbers of groups, tweets, scheduled and published tweets
+	 * of a user in one query
+	 *
+	 * @param userID
+	 *            userID
+	 * @return the counts of the user
+	 */
+	TweetCounts getTweetCounts(int userID);
+
+	/**
+	 * returns the numbers of tweets, scheduled and published tweets of the
+	 * given groups of a user in one query
+	 *
+	 * @param userID
+	 *            userID
+	 * @param groupIDs
+	 *            groupIDs
+	 * @return the counts by groupID, groups without tweets are missing
+	 */
+	Map<Integer, TweetCounts> getTweetCounts(int userID, Collection<Integer> groupIDs);
+
+	/**
+	 * returns the number of scheduled Tweets
+	 *
+	 * @return number of scheduled Tweets
+	 */
+	int getScheduledTweets();
+
+	/**
+	 * returns the number of published Tweets
+	 *
+	 * @return number of published Tweets
+	 */
+	int getPublishedTweets();
+
+	/**
+	 * returns the number of published Tweets
+	 *
+	 * @return number of published Tweets
+	 */
+	int getAllTweets();
+
+	/**
+	 * returns the tweetGroup with the given groupID (if userID fits to groupID)
+	 *
+	 * @param userID
+	 *            userID
+	 * @param groupID
+	 *            groupID
+	 * @return tweetGroup with groupID
+	 */
+	TweetGroup getTweetGroupForUser(int userID, int groupID);
+
+	/**
+	 * returns the tweetGroup with the given groupID (if userID fits to
+	 * groupID), optionally without its tweets
+	 *
+	 * @param userID
+	 *            userID
+	 * @param groupID
+	 *            groupID
+	 * @param withTweets
+	 *            read the tweets of the group, too
+	 * @return tweetGroup with groupID
+	 */
+	TweetGroup getTweetGroupForUser(int userID, int groupID, boolean withTweets);
+
+	/**
+	 * returns the tweetGroup with the given groupID (if userID fits to
+	 * groupID), optionally without its tweets or with its archived tweets
+	 *
+	 * @param userID
+	 *            userID
+	 * @param groupID
+	 *            groupID
+	 * @param withTweets
+	 *            read the tweets of the group, too
+	 * @param withArchive
+	 *            read the archived tweets of the group, too
+	 * @return tweetGroup with groupID
+	 */
+	TweetGroup getTweetGroupForUser(int userID, int groupID, boolean withTweets, boolean withArchive);
+
+	/**
+	 * returns a list with all groupIDs for the given user
+	 *
+	 * @param userID
+	 *            userID
+	 * @return groupIDs of the users group
+	 */
+	List<Integer> getGroupIDsForUser(int userID);
+
+	/**
+	 * reads a single tweet from the database specified by tweetID (if userID
+	 * fits to tweetID)
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @param userID
+	 *            userID
+	 * @return tweet with tweetID
+	 */
+	Tweet getTweetByID(int tweetID, int userID);
+
+	/**
+	 * reads a single tweet from the database specified by tweetID (if userID
+	 * fits to tweetID)
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @return tweet with tweetID
+	 */
+	Tweet getTweetByID(int tweetID);
+
+	/**
+	 * returns the groupTitle of the given group (if userID fits to groupID)
+	 *
+	 * @param groupID
+	 *            groupID
+	 * @return groupTitle of the given group
+	 */
+	String getGroupTitle(int groupID);
+
+	/**
+	 * returns the groupTitle of the given group (if userID fits to groupID)
+	 *
+	 * @param groupID
+	 *            groupID
+	 * @param userID
+	 *            userID
+	 * @return groupTitle of the given group
+	 */
+	String getGroupTitle(int groupID, int userID);
+
+	/**
+	 * updates a groups description or title in the database (if userID fits to
+	 * groupID)
+	 *
+	 * @param groupID
+	 *            groupID
+	 * @param title
+	 *            new title
+	 * @param description
+	 *            new description
+	 * @param userID
+	 *            userID
+	 */
+	void editGroup(int groupID, String title, String description, int userID, String flashcard);
+
+	/**
+	 * updates the content, imageUrl and/or geo-location of a single tweet (if
+	 * userID fits to tweetID)
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @param content
+	 *            new content
+	 * @param userID
+	 *            userID
+	 * @param imageUrl
+	 *            new imageUrl
+	 * @param longitude
+	 *            new longitude
+	 * @param latitude
+	 *            new latitude
+	 */
+	void editTweet(int tweetID, String content, int userID, String imageUrl, float longitude, float latitude, String tweetDate);
+
+	/**
+	 * sets the statusID of a published tweet 
+	 * @param tweet
+	 * @param statusId
+	 */
+	void addStatusID(int tweetID, long statusId);
+
+	/**
+	 * adds a single tweet to an existing group and returns its tweetID
+	 *
+	 * @param userID
+	 *            userID
+	 * @param tweet
+	 *            to add
+	 * @param groupID
+	 *            groupID
+	 * @return tweetID of the new tweet
+	 */
+	int addTweetToGroup(int userID, Tweet tweet, int groupID);
+
+	/**
+	 * returns the status (enabled/disabled) of the given group
+	 *
+	 * @param groupID
+	 *            groupID
+	 * @param userID
+	 *            userID
+	 * @return enabled enabled status
+	 */
+	boolean isEnabledGroup(int groupID, int userID);
+
+	/**
+	 * @param groupID
+	 * @param userID
+	 * @return returns true if group is a threaded group
+	 */
+	boolean isThreadedGroup(int groupID, int userID);
+
+	/**
+	 * updates the threaded-attribute of the given tweetgroup
+	 * table 'groups'
+	 * @param groupID
+	 * @param userID
+	 * @param threaded
+	 * @return returns true is update was successful
+	 */
+	boolean setThreaded(int groupID, int userID, boolean threaded);
+
+	/**
+	 * streams all tweets of enabled groups which are not tweeted yet and
+	 * scheduled for a date after now to the given consumer, together with
+	 * their userID, in a single pass over all active tweets. The
+	 * TweetScheduler reads just its time window with the ranged variant.
+	 *
+	 * The consumer may write to the store, but must not call this method
+	 * again.
+	 *
+	 * @param consumer
+	 *            receives each tweet and the userID of its owner
+	 * @return the number of tweets handed to the consumer
+	 */
+	int forEachSchedulableTweet(BiConsumer<Tweet, Integer> consumer);
+
+	/**
+	 * streams the tweets of enabled groups which are not tweeted yet and
+	 * scheduled for a time in [from, to) to the given consumer, together with
+	 * their userID. The TweetScheduler loads its next time bucket with it.
+	 *
+	 * The consumer may write to the store, but must not call this method
+	 * again.
+	 *
+	 * @param from
+	 *            start of the range in epoch milliseconds (inclusive)
+	 * @param to
+	 *            end of the range in epoch milliseconds (exclusive)
+	 * @param consumer
+	 *            receives each tweet and the userID of its owner
+	 * @return the number of tweets handed to the consumer
+	 */
+	int forEachSchedulableTweet(long from, long to, BiConsumer<Tweet, Integer> consumer);
+
+	/**
+	 * streams the tweets of enabled groups which are flagged as scheduled but
+	 * not tweeted, although they were due before the given time (e.g. because
+	 * the application was down), to the given consumer, together with their
+	 * userID. Tweets with a done lease, or one still valid at that time, are
+	 * left out: another node sharing the database is posting them.
+	 *
+	 * The consumer may write to the store, but must not call this method
+	 * again.
+	 *
+	 * @param before
+	 *            epoch milliseconds the tweets were due before
+	 * @param consumer
+	 *            receives each tweet and the userID of its owner
+	 * @return the number of tweets handed to the consumer
+	 */
+	int forEachMisfiredTweet(long before, BiConsumer<Tweet, Integer> consumer);
+
+	/**
+	 * records what was done about misfired tweets. Skipped tweets are no
+	 * longer flagged as scheduled, so they aren't reported again.
+	 *
+	 * @param misfires
+	 *            the misfires, an earlier record of a tweet is replaced
+	 */
+	void recordMisfires(List<Misfire> misfires);
+
+	/**
+	 * returns the recorded misfires of a user, the latest first, with the
+	 * date and text of their tweets
+	 *
+	 * @param userID
+	 *            userID
+	 * @param limit
+	 *            max. number of misfires
+	 * @return the misfires
+	 */
+	List<Misfire> getMisfires(int userID, int limit);
+
+	/**
+	 * claims a tweet for a node, so no other node sharing the database posts
+	 * it. The claim succeeds if the tweet isn't tweeted and has no lease, an
+	 * expired lease or a lease of the same node (which is renewed). Lease rows
+	 * are deleted with their tweets.
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @param userID
+	 *            userID
+	 * @param node
+	 *            name of the claiming node
+	 * @param now
+	 *            epoch milliseconds
+	 * @param leaseTime
+	 *            milliseconds the lease is held, unless it is completed
+	 * @return true if the node holds the lease now
+	 */
+	boolean claimTweet(int tweetID, int userID, String node, long now, long leaseTime);
+
+	/**
+	 * marks the lease of a posted tweet as done, it never expires and the
+	 * tweet can't be claimed again
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @param node
+	 *            name of the node holding the lease
+	 */
+	void completeLease(int tweetID, String node);
+
+	/**
+	 * streams the tweets of enabled groups which aren't tweeted although a
+	 * node claimed them, because its lease expired before it was done (e.g.
+	 * the node went down while posting), to the given consumer, together with
+	 * their userID.
+	 *
+	 * The consumer may write to the store, but must not call this method
+	 * again.
+	 *
+	 * @param now
+	 *            epoch milliseconds the leases expired before
+	 * @param consumer
+	 *            receives each tweet and the userID of its owner
+	 * @return the number of tweets handed to the consumer
+	 */
+	int forEachExpiredLease(long now, BiConsumer<Tweet, Integer> consumer);
+
+	/**
+	 *
+	 * returns a map of all enabled (active) groups from the database, sorted by
+	 * its usersIDs.
+	 *
+	 * @return a map of all active TweetGroups sorted by its users
+	 */
+	Map<Integer, List<TweetGroup>> getAllEnabledGroups();
+
+	/**
+	 * deletes a user from the database - deletes user config. from table
+	 * 'users' - deletes all tweetGroups in table 'groups' - deletes all tweets
+	 * in table 'tweets' - deletes all repeats in table 'repeats' - in a single
+	 * transaction
+	 *
+	 * @param userID
+	 *            userID
+	 * @return the tweetIDs of all deleted tweets
+	 */
+	List<Integer> deleteUser(int userID);
+
+	/**
+	 * returns the status_id of the tweet scheduled right before the given one
+	 * in the same group, i.e. the status a threaded tweet replies to.
+	 *
+	 * @param tweetID
+	 *            the tweet to reply with
+	 * @param groupID
+	 *            groupID
+	 * @param userID
+	 *            userID
+	 * @return the status_id of the preceding tweet (0 if it is not published),
+	 *         -1 if the tweet is the first of its group
+	 */
+	long getReplyID(int tweetID, int groupID, int userID);
+
+	/**
+	 * returns the flashcard of the given group
+	 *
+	 * @param groupID
+	 *            groupID
+	 * @return file name of the flashcard, or null if the group doesn't exist
+	 */
+	String getFlashcard(int groupID);
+
+	/**
+	 * Updates a Users token and secret
+	 *
+	 * @param userID
+	 *            The user to update
+	 * @param oAuthToken
+	 *            new oauthToken
+	 * @param oAuthTokenSecret
+	 *            new oauthTokenSecret
+	 * @return true if update was successful and false if not
+	 */
+	boolean updateUserTokens(int userID, String oAuthToken, String oAuthTokenSecret);
+
+	/**
+	 * writes a consistent copy of the store to the given file while it stays
+	 * in use, blocks until the copy is complete
+	 *
+	 * @param file
+	 *            path of the backup file, an existing file is replaced
+	 * @return the status of the finished backup
+	 */
+	BackupStatus backup(String file);
+
+	/**
+	 * starts a backup into the configured backup directory in the background
+	 *
+	 * @return true if the backup was started, false if another backup is
+	 *         running or the store can't be backed up
+	 */
+	boolean startBackup();
+
+	/**
+	 * @return the status of the running or last backup, null if there was
+	 *         none yet
+	 */
+	BackupStatus getBackupStatus();
+
+	/**
+	 * writes all pending updates and releases the resources of the store
+	 */
+	void close();
+
+}
@@ -3,10 +3,11 @@ package autoChirp.tsvExport;
 import autoChirp.tweetCreation.Tweet;
 
 import java.sql.Time;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.List;
 import java.util.logging.SimpleFormatter;
 
@@ -53,14 +54,14 @@ public class TsvExporter {
 
     private static String nextYear(List<Tweet> tweets) {
         StringBuffer buffer = new StringBuffer();
+        int nextYear = LocalDate.now().getYear() + 1;
         for (Tweet tweet : tweets) {
             try {
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-                Date tweetDate = dateFormat.parse(tweet.tweetDate);
-                tweetDate.setYear(new Date().getYear() + 1);
-                tweet.tweetDate = dateFormat.format(tweetDate);
+                LocalDateTime tweetDate = LocalDateTime.parse(tweet.tweetDate, Tweet.DATE_FORMAT);
+                tweet.tweetDate = tweetDate.withYear(nextYear).format(Tweet.DATE_FORMAT);
+                tweet.scheduledAt = Tweet.parseDate(tweet.tweetDate);
                 appendTweet(tweet, buffer);
-            } catch (ParseException e) {
+            } catch (DateTimeParseException e) {
                 e.printStackTrace();
             }
         }
@@ -78,17 +79,8 @@ public class TsvExporter {
 
 
     private static boolean isInTheFuture(Tweet tweet) {
-        try {
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-
-            Date tweetDate = dateFormat.parse(tweet.tweetDate);
-            Date now = new Date();
-
-            return now.before(tweetDate);
-        } catch (ParseException e) {
-            e.printStackTrace();
-        }
-        return false;
+        Instant tweetDate = (tweet.scheduledAt != null) ? tweet.scheduledAt : Tweet.parseDate(tweet.tweetDate);
+        return tweetDate != null && Instant.now().isBefore(tweetDate);
     }
 
     private static void appendTweet(Tweet tweet, StringBuffer buffer) {
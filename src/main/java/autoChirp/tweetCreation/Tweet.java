@@ -1,14 +1,16 @@
 package autoChirp.tweetCreation;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.springframework.format.datetime.DateTimeFormatAnnotationFormatterFactory;
 
-import autoChirp.DBConnector;
-
 /**
  * 
  * represents a single tweet consisting of content, tweetDate, imageUrl
@@ -29,13 +31,33 @@ public class Tweet implements Comparable<Tweet> {
 	public float longitude;
 	public float latitude;
 	public long statusID;
+	/**
+	 * the parsed tweetDate (in the system's time zone), null if the tweetDate
+	 * is no valid date
+	 */
+	public Instant scheduledAt;
+	/**
+	 * true if the tweet was read from the archive (see archiveTweets), it is
+	 * read-only
+	 */
+	public boolean archived;
 	private String trimmedContent;
 	private int adjustedLength = -1;
 	public static final int MAX_TWEET_LENGTH = 280;
+	/**
+	 * format of tweetDate
+	 */
+	public static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+	// also accepts dates without seconds or time, like SQLite does
+	private static final DateTimeFormatter PARSE_FORMAT = new DateTimeFormatterBuilder()
+			.appendPattern("yyyy-MM-dd[ HH:mm[:ss]]").parseDefaulting(ChronoField.HOUR_OF_DAY, 0)
+			.parseDefaulting(ChronoField.MINUTE_OF_HOUR, 0).parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0)
+			.toFormatter();
+	private static final DateTimeFormatter DISPLAY_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
 
 	/**
 	 * Constructor for tweets read from the database. In contrast to new tweets,
-	 * tweets read from DB already have a tweetID, groupID, userID and
+	 * tweets read from DB already have a tweetID, groupID, groupName and
 	 * status-attributes
 	 * 
 	 * @param tweetDate
@@ -50,24 +72,26 @@ public class Tweet implements Comparable<Tweet> {
 	 *            tweet is already scheduled and will be tweeted
 	 * @param tweeted
 	 *            tweet has already been tweeted
-	 * @param userID
-	 *            db-user-assignment key
+	 * @param groupName
+	 *            title of the tweet's group
 	 * @param imageUrl
 	 *            link to an image
 	 * @param longitude
 	 *            longitude of geo-location
 	 * @param latitude
 	 *            latitude of geo-location
+	 * @param statusID
+	 *            twitter status-id of the published tweet
 	 */
 	public Tweet(String tweetDate, String content, int tweetID, int groupID, boolean scheduled, boolean tweeted,
-			int userID, String imageUrl, float longitude, float latitude, long statusID) {
+			String groupName, String imageUrl, float longitude, float latitude, long statusID) {
 		this.tweetDate = tweetDate;
 		this.content = content;
 		this.tweetID = tweetID;
 		this.scheduled = scheduled;
 		this.tweeted = tweeted;
 		this.groupID = groupID;
-		this.groupName = DBConnector.getGroupTitle(groupID, userID);
+		this.groupName = groupName;
 		this.imageUrl = imageUrl;
 		this.longitude = longitude;
 		this.latitude = latitude;
@@ -91,6 +115,7 @@ public class Tweet implements Comparable<Tweet> {
 	 */
 	public Tweet(String tweetDate, String content, String imageUrl, float longitude, float latitude) {
 		this.tweetDate = tweetDate;
+		this.scheduledAt = parseDate(tweetDate);
 		this.content = content;
 		this.imageUrl = imageUrl;
 		this.longitude = longitude;
@@ -107,6 +132,7 @@ public class Tweet implements Comparable<Tweet> {
 	 */
 	public Tweet(String tweetDate, String content) {
 		this.tweetDate = tweetDate;
+		this.scheduledAt = parseDate(tweetDate);
 		this.content = content;
 	}
 
@@ -190,11 +216,25 @@ public class Tweet implements Comparable<Tweet> {
 	}
 	
 	public String formatDate(){
-		DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-		LocalDateTime date = LocalDateTime.parse(tweetDate,dtf);
-		dtf = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
-		return dtf.format(date);
-		
-	
+		Instant date = (scheduledAt != null) ? scheduledAt : parseDate(tweetDate);
+		return DISPLAY_FORMAT.format(date.atZone(ZoneId.systemDefault()));
+	}
+
+	/**
+	 * parses a tweetDate (yyyy-MM-dd HH:mm:ss) in the system's time zone
+	 *
+	 * @param tweetDate
+	 *            the date to parse
+	 * @return the instant of the date, or null if tweetDate is no valid date
+	 */
+	public static Instant parseDate(String tweetDate) {
+		if (tweetDate == null) {
+			return null;
+		}
+		try {
+			return LocalDateTime.parse(tweetDate, PARSE_FORMAT).atZone(ZoneId.systemDefault()).toInstant();
+		} catch (RuntimeException e) {
+			return null;
+		}
 	}
 }
@@ -22,6 +22,11 @@ public class TweetGroup {
 	public int groupID;
 	public boolean threaded;
 	public String flashcard = "default.jpg";
+	/**
+	 * number of tweets of this group, also set if the group was read without
+	 * its tweets
+	 */
+	public int tweetCount;
 
 	/**
 	 * Constructor for new TweetGroup-objects (not read from the database)
@@ -67,6 +72,7 @@ public class TweetGroup {
 	public void setTweets(List<Tweet> tweets) {
 		this.tweets.addAll(tweets);
 		Collections.sort(this.tweets);
+		this.tweetCount = this.tweets.size();
 	}
 	
 	/**
@@ -85,6 +91,7 @@ public class TweetGroup {
 	public void addTweet(Tweet tweet) {
 		tweets.add(tweet);
 		Collections.sort(tweets);
+		tweetCount = tweets.size();
 	}
 	
 	public void setFlashCard(String flashcard){
@@ -0,0 +1,43 @@
+package autoChirp.tweeting;
+
+/**
+ * What the TweetScheduler does at startup with tweets flagged as scheduled
+ * which came due while the application was down.
+ */
+public enum MisfirePolicy {
+
+	/**
+	 * drop all missed tweets
+	 */
+	SKIP,
+
+	/**
+	 * post all missed tweets, however late they are
+	 */
+	FIRE,
+
+	/**
+	 * post the tweets missed by less than SchedulerConfig.misfireThreshold
+	 * milliseconds, drop the others
+	 */
+	FIRE_IF_RECENT;
+
+	/**
+	 * @param lateness
+	 *            milliseconds the tweet is late
+	 * @param threshold
+	 *            SchedulerConfig.misfireThreshold
+	 * @return true if the tweet is posted late
+	 */
+	public boolean fires(long lateness, long threshold) {
+		switch (this) {
+		case FIRE:
+			return true;
+		case FIRE_IF_RECENT:
+			return lateness < threshold;
+		default:
+			return false;
+		}
+	}
+
+}
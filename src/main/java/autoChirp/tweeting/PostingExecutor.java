@@ -0,0 +1,302 @@
+package autoChirp.tweeting;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the TwitterTasks handed off by the timers of the TweetScheduler. The
+ * tasks read the database, download images and wait for Twitter, so they run
+ * on a bounded pool of postingThreads threads instead of the timer threads,
+ * and slow posts don't delay the other timers.
+ *
+ * The tasks are queued per user and the posting threads serve the users
+ * round-robin, so a user with hundreds of tweets due at the same time (e.g.
+ * all at 12:00) doesn't hold up the tweets of other users. Each user posts
+ * from a TokenBucket of userBurst tweets, refilled at userRate tweets per
+ * hour. The tasks of a user without tokens stay queued until the next token
+ * is available, they are deferred, not dropped.
+ *
+ * About postingQueue tasks wait in all queues together. If they are full,
+ * only users with less than their share (postingQueue divided by the users
+ * with queued tasks) may queue more, so a heavy user can't lock out the
+ * others. A rejected hand-off is retried after postingRetryDelay
+ * milliseconds by the timer executor, so the timer thread never blocks.
+ */
+public class PostingExecutor {
+
+	/**
+	 * a queued task
+	 */
+	private static class Pending {
+		final Runnable task;
+		final long handedOff;
+
+		Pending(Runnable task, long handedOff) {
+			this.task = task;
+			this.handedOff = handedOff;
+		}
+	}
+
+	private final ScheduledExecutorService timers;
+	private final SchedulerConfig config;
+	private final Thread[] threads;
+
+	// guarded by 'this'
+	private final Map<Integer, ArrayDeque<Pending>> queues = new HashMap<Integer, ArrayDeque<Pending>>();
+	// the users with queued tasks, in the order they are served next
+	private final ArrayDeque<Integer> turns = new ArrayDeque<Integer>();
+	// one per user who posted recently, dropped once full again, see prune()
+	private final Map<Integer, TokenBucket> buckets = new HashMap<Integer, TokenBucket>();
+	private int queued;
+	private int active;
+	private boolean shutdown;
+
+	private final LongAdder submitted = new LongAdder();
+	private final LongAdder started = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder deferred = new LongAdder();
+	private final LongAdder throttled = new LongAdder();
+	private final LongAdder lagNanos = new LongAdder();
+	private volatile long maxLagNanos;
+
+	/**
+	 * starts the posting threads
+	 *
+	 * @param config
+	 *            postingThreads, postingQueue, postingRetryDelay, userRate and
+	 *            userBurst
+	 * @param timers
+	 *            the executor a hand-off is retried with while the queue is
+	 *            full
+	 */
+	public PostingExecutor(SchedulerConfig config, ScheduledExecutorService timers) {
+		this.timers = timers;
+		this.config = config;
+		threads = new Thread[Math.max(1, config.postingThreads)];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(this::work, "TweetScheduler-posting-" + (i + 1));
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+
+	/**
+	 * queues a task of a user without blocking, called by the timer of a
+	 * tweet
+	 *
+	 * @param userID
+	 *            the user the task posts for
+	 * @param task
+	 *            the task to run
+	 */
+	public void submit(int userID, Runnable task) {
+		synchronized (this) {
+			if (shutdown) {
+				System.out.println("PostingExecutor: shut down, task dropped");
+				return;
+			}
+			ArrayDeque<Pending> queue = queues.get(userID);
+			int capacity = Math.max(1, config.postingQueue);
+			// a user below the fair share is admitted to a full queue
+			if (queued < capacity || queue == null || queue.size() < capacity / queues.size()) {
+				if (queue == null) {
+					queue = new ArrayDeque<Pending>();
+					queues.put(userID, queue);
+					turns.addLast(userID);
+				}
+				queue.addLast(new Pending(task, System.nanoTime()));
+				queued++;
+				submitted.increment();
+				notify();
+				return;
+			}
+		}
+		deferred.increment();
+		timers.schedule(() -> submit(userID, task), Math.max(1, config.postingRetryDelay), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * lets the queued tasks finish without accepting new ones
+	 */
+	public synchronized void shutdown() {
+		shutdown = true;
+		notifyAll();
+	}
+
+	/**
+	 * drops the queued tasks and accepts no new ones, the running tasks
+	 * finish
+	 *
+	 * @return number of dropped tasks
+	 */
+	public synchronized int shutdownNow() {
+		shutdown = true;
+		int toReturn = queued;
+		queues.clear();
+		turns.clear();
+		queued = 0;
+		notifyAll();
+		return toReturn;
+	}
+
+	/**
+	 * waits until the posting threads ended after a shutdown
+	 *
+	 * @param timeout
+	 *            max. milliseconds to wait
+	 * @return true if all threads ended
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public boolean awaitTermination(long timeout) throws InterruptedException {
+		long until = System.currentTimeMillis() + timeout;
+		for (Thread thread : threads) {
+			long left = until - System.currentTimeMillis();
+			if (left > 0) {
+				thread.join(left);
+			}
+			if (thread.isAlive()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return threads, active, queued, queueCapacity, users (with queued
+	 *         tasks), buckets (users with a TokenBucket), submitted, started, completed, failed, deferred
+	 *         (hand-offs retried because the queue was full), throttled
+	 *         (turns passed because a user had no tokens), the mean and max.
+	 *         milliseconds a task waited from its hand-off until it ran, and
+	 *         the queued tasks per user
+	 */
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> toReturn = new LinkedHashMap<String, Object>();
+		Map<Integer, Integer> byUser = new TreeMap<Integer, Integer>();
+		synchronized (this) {
+			toReturn.put("threads", threads.length);
+			toReturn.put("active", active);
+			toReturn.put("queued", queued);
+			toReturn.put("queueCapacity", Math.max(1, config.postingQueue));
+			toReturn.put("users", queues.size());
+			toReturn.put("buckets", buckets.size());
+			for (Map.Entry<Integer, ArrayDeque<Pending>> entry : queues.entrySet()) {
+				byUser.put(entry.getKey(), entry.getValue().size());
+			}
+		}
+		long started = this.started.sum();
+		toReturn.put("submitted", submitted.sum());
+		toReturn.put("started", started);
+		toReturn.put("completed", completed.sum());
+		toReturn.put("failed", failed.sum());
+		toReturn.put("deferred", deferred.sum());
+		toReturn.put("throttled", throttled.sum());
+		toReturn.put("meanLagMs", (started == 0) ? 0.0 : lagNanos.sum() / 1000000.0 / started);
+		toReturn.put("maxLagMs", maxLagNanos / 1000000.0);
+		toReturn.put("queuedByUser", byUser);
+		return toReturn;
+	}
+
+	/**
+	 * the loop of a posting thread
+	 */
+	private void work() {
+		while (true) {
+			Pending pending;
+			try {
+				pending = next();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (pending == null) {
+				return;
+			}
+			long lag = System.nanoTime() - pending.handedOff;
+			started.increment();
+			lagNanos.add(lag);
+			if (lag > maxLagNanos) {
+				synchronized (lagNanos) {
+					maxLagNanos = Math.max(maxLagNanos, lag);
+				}
+			}
+			try {
+				pending.task.run();
+				completed.increment();
+			} catch (RuntimeException e) {
+				failed.increment();
+				System.out.print("PostingExecutor.run: ");
+				e.printStackTrace();
+			} finally {
+				synchronized (this) {
+					active--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * takes the next task of the first user in turn who has a token. The
+	 * served user and the users passed over go to the end of the turns. Waits
+	 * until a task is queued or a token is available.
+	 *
+	 * @return the next task, null after shutdown() once all tasks ran
+	 */
+	private synchronized Pending next() throws InterruptedException {
+		while (true) {
+			if (queued == 0) {
+				if (shutdown) {
+					return null;
+				}
+				wait();
+				continue;
+			}
+			long now = System.nanoTime();
+			prune(now);
+			long sleep = Long.MAX_VALUE;
+			for (int i = turns.size(); i > 0; i--) {
+				Integer userID = turns.pollFirst();
+				TokenBucket bucket = buckets.get(userID);
+				if (bucket == null) {
+					bucket = new TokenBucket(config.userBurst, config.userRate, now);
+					buckets.put(userID, bucket);
+				}
+				long until = bucket.take(now);
+				if (until > 0) {
+					throttled.increment();
+					turns.addLast(userID);
+					sleep = Math.min(sleep, until);
+					continue;
+				}
+				ArrayDeque<Pending> queue = queues.get(userID);
+				Pending pending = queue.pollFirst();
+				if (queue.isEmpty()) {
+					queues.remove(userID);
+				} else {
+					turns.addLast(userID);
+				}
+				queued--;
+				active++;
+				return pending;
+			}
+			// all users with queued tasks are throttled
+			TimeUnit.NANOSECONDS.timedWait(this, sleep);
+		}
+	}
+
+	/**
+	 * drops the buckets of the users without queued tasks that have refilled,
+	 * a new bucket is full, too. Only the users who posted within the last
+	 * userBurst / userRate hours have a bucket, so the map stays small.
+	 */
+	private void prune(long now) {
+		buckets.entrySet().removeIf(entry -> !queues.containsKey(entry.getKey()) && entry.getValue().isFull(now));
+	}
+
+}
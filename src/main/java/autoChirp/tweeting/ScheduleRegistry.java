@@ -0,0 +1,206 @@
+package autoChirp.tweeting;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timers of the TweetScheduler, indexed by tweetID and by groupID. A
+ * tweet is registered at most once, its entry is removed as soon as its task
+ * has run, and all timers of a group are cancelled in O(group size).
+ *
+ * Both indexes are ConcurrentHashMaps: request threads, the loader and the
+ * timer threads change them without a common lock. A tweet is only added to
+ * or removed from both indexes inside a compute() call on its group, which
+ * locks just that entry, so cancelGroup() either sees a timer in the group or
+ * runs before the timer is registered.
+ */
+public class ScheduleRegistry {
+
+	/**
+	 * the timer of one tweet
+	 */
+	private static class Entry {
+		final int groupID;
+		volatile Future<?> future;
+		volatile boolean cancelled;
+
+		Entry(int groupID) {
+			this.groupID = groupID;
+		}
+
+		void cancel() {
+			cancelled = true;
+			Future<?> toCancel = future;
+			if (toCancel != null) {
+				toCancel.cancel(true);
+			}
+		}
+	}
+
+	private final ConcurrentHashMap<Integer, Entry> byTweet = new ConcurrentHashMap<Integer, Entry>();
+	private final ConcurrentHashMap<Integer, Set<Integer>> byGroup = new ConcurrentHashMap<Integer, Set<Integer>>();
+
+	/**
+	 * schedules the task of a tweet, unless the tweet is registered already
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @param groupID
+	 *            group of the tweet
+	 * @param task
+	 *            the task to run
+	 * @param delay
+	 *            milliseconds until the task runs
+	 * @param executor
+	 *            the executor to schedule the task with
+	 * @return true if the task was scheduled, false if the tweet was
+	 *         registered already
+	 */
+	public boolean schedule(int tweetID, int groupID, Runnable task, long delay, ScheduledExecutorService executor) {
+		Entry entry = new Entry(groupID);
+		boolean[] registered = new boolean[1];
+		byGroup.compute(groupID, (key, tweetIDs) -> {
+			if (byTweet.putIfAbsent(tweetID, entry) != null) {
+				return tweetIDs;
+			}
+			registered[0] = true;
+			Set<Integer> toReturn = (tweetIDs == null) ? new HashSet<Integer>() : tweetIDs;
+			toReturn.add(tweetID);
+			return toReturn;
+		});
+		if (!registered[0]) {
+			return false;
+		}
+		entry.future = executor.schedule(() -> {
+			try {
+				task.run();
+			} finally {
+				remove(tweetID, entry);
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+		// cancelled while it was scheduled
+		if (entry.cancelled) {
+			entry.future.cancel(true);
+		}
+		return true;
+	}
+
+	/**
+	 * @param tweetID
+	 *            tweetID
+	 * @return true if the tweet has a timer which didn't run yet
+	 */
+	public boolean contains(int tweetID) {
+		return byTweet.containsKey(tweetID);
+	}
+
+	/**
+	 * cancels the timer of a tweet
+	 *
+	 * @param tweetID
+	 *            tweetID
+	 * @return true if the tweet had a timer
+	 */
+	public boolean cancel(int tweetID) {
+		Entry entry = byTweet.get(tweetID);
+		if (entry == null || !remove(tweetID, entry)) {
+			return false;
+		}
+		entry.cancel();
+		return true;
+	}
+
+	/**
+	 * cancels the timers of all tweets of a group
+	 *
+	 * @param groupID
+	 *            groupID
+	 * @return number of cancelled timers
+	 */
+	public int cancelGroup(int groupID) {
+		List<Integer> tweetIDs = new ArrayList<Integer>();
+		// the removed set isn't changed anymore, see remove()
+		byGroup.computeIfPresent(groupID, (key, group) -> {
+			tweetIDs.addAll(group);
+			return null;
+		});
+		int toReturn = 0;
+		for (Integer tweetID : tweetIDs) {
+			Entry entry = byTweet.get(tweetID);
+			if (entry != null && entry.groupID == groupID && byTweet.remove(tweetID, entry)) {
+				entry.cancel();
+				toReturn++;
+			}
+		}
+		return toReturn;
+	}
+
+	/**
+	 * cancels the timers of the given tweets, tweets without a timer are
+	 * skipped
+	 *
+	 * @param tweetIDs
+	 *            the tweetIDs
+	 */
+	public void cancelAll(Collection<Integer> tweetIDs) {
+		for (Integer tweetID : tweetIDs) {
+			cancel(tweetID);
+		}
+	}
+
+	/**
+	 * cancels all timers
+	 *
+	 * @return number of cancelled timers
+	 */
+	public int clear() {
+		int toReturn = 0;
+		for (Integer tweetID : byTweet.keySet()) {
+			if (cancel(tweetID)) {
+				toReturn++;
+			}
+		}
+		return toReturn;
+	}
+
+	/**
+	 * @return number of registered timers
+	 */
+	public int size() {
+		return byTweet.size();
+	}
+
+	/**
+	 * @return number of groups with registered timers
+	 */
+	public int groups() {
+		return byGroup.size();
+	}
+
+	/**
+	 * removes the entry from both indexes, if it is still registered
+	 */
+	private boolean remove(int tweetID, Entry entry) {
+		boolean[] removed = new boolean[1];
+		// the group is gone if cancelGroup() took it
+		byGroup.compute(entry.groupID, (key, tweetIDs) -> {
+			removed[0] = byTweet.remove(tweetID, entry);
+			if (tweetIDs == null) {
+				return null;
+			}
+			if (removed[0]) {
+				tweetIDs.remove(tweetID);
+			}
+			return tweetIDs.isEmpty() ? null : tweetIDs;
+		});
+		return removed[0];
+	}
+
+}
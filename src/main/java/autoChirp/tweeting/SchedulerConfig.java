@@ -0,0 +1,81 @@
+package autoChirp.tweeting;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Settings of the TweetScheduler, the defaults are used unless the
+ * Application sets them from autochirp.scheduler.*.
+ */
+public class SchedulerConfig {
+
+	/**
+	 * milliseconds ahead of now the tweets are held with a timer
+	 */
+	public long window = 60 * 60 * 1000;
+
+	/**
+	 * milliseconds of tweets loaded with one query, and interval of the
+	 * loader
+	 */
+	public long bucketSize = 60 * 1000;
+
+	/**
+	 * what is done at startup with the tweets missed while the application
+	 * was down
+	 */
+	public MisfirePolicy misfirePolicy = MisfirePolicy.FIRE_IF_RECENT;
+
+	/**
+	 * milliseconds a missed tweet may be late to be posted with
+	 * MisfirePolicy.FIRE_IF_RECENT
+	 */
+	public long misfireThreshold = 15 * 60 * 1000;
+
+	/**
+	 * max. number of missed tweets posted per minute, 0 posts them all at
+	 * once
+	 */
+	public int catchUpRate = 10;
+
+	/**
+	 * threads posting the due tweets, see PostingExecutor
+	 */
+	public int postingThreads = 5;
+
+	/**
+	 * max. number of due tweets waiting for a posting thread
+	 */
+	public int postingQueue = 1000;
+
+	/**
+	 * milliseconds until a due tweet is handed off again while the posting
+	 * queue is full
+	 */
+	public long postingRetryDelay = 1000;
+
+	/**
+	 * tweets a user may post per hour, the tweets beyond wait for their turn
+	 * (Twitter allows 300 per 3 hours). 0 for no limit.
+	 */
+	public double userRate = 100;
+
+	/**
+	 * tweets a user may post at once before userRate applies
+	 */
+	public int userBurst = 10;
+
+	/**
+	 * name of this node among the nodes sharing the database, unique per
+	 * process by default (pid@host)
+	 */
+	public String node = ManagementFactory.getRuntimeMXBean().getName();
+
+	/**
+	 * milliseconds a node holds the claim on a tweet it posts, another node
+	 * posts the tweet if it isn't done by then. 0 (the default) posts without
+	 * claiming, for a single node. Set it (e.g. to 300000) if several nodes
+	 * share the database.
+	 */
+	public long leaseTime = 0;
+
+}
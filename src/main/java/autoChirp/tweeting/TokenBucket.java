@@ -0,0 +1,65 @@
+package autoChirp.tweeting;
+
+/**
+ * The posting budget of one user: holds up to burst tokens, refilled at rate
+ * tokens per hour. Posting a tweet takes one token. Not thread safe, the
+ * PostingExecutor calls it while holding its lock.
+ */
+public class TokenBucket {
+
+	private static final double NANOS_PER_HOUR = 60 * 60 * 1000000000.0;
+
+	private final double capacity;
+	private final double perNano;
+	private double tokens;
+	private long updated;
+
+	/**
+	 * creates a full bucket
+	 *
+	 * @param burst
+	 *            max. number of tokens
+	 * @param rate
+	 *            tokens added per hour, 0 for no limit
+	 * @param now
+	 *            System.nanoTime()
+	 */
+	public TokenBucket(int burst, double rate, long now) {
+		this.capacity = Math.max(1, burst);
+		this.perNano = rate / NANOS_PER_HOUR;
+		this.tokens = capacity;
+		this.updated = now;
+	}
+
+	/**
+	 * takes a token if there is one
+	 *
+	 * @param now
+	 *            System.nanoTime()
+	 * @return 0 if a token was taken, otherwise the nanoseconds until the
+	 *         next token is available
+	 */
+	public long take(long now) {
+		if (perNano <= 0) {
+			return 0;
+		}
+		tokens = Math.min(capacity, tokens + (now - updated) * perNano);
+		updated = now;
+		if (tokens >= 1) {
+			tokens -= 1;
+			return 0;
+		}
+		return Math.max(1, (long) Math.ceil((1 - tokens) / perNano));
+	}
+
+	/**
+	 * @param now
+	 *            System.nanoTime()
+	 * @return true if the bucket has refilled to burst tokens, it is then
+	 *         the same as a new bucket
+	 */
+	public boolean isFull(long now) {
+		return perNano <= 0 || tokens + (now - updated) * perNano >= capacity;
+	}
+
+}
@@ -1,31 +1,176 @@
 package autoChirp.tweeting;
 
 import java.time.Duration;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import autoChirp.DBConnector;
+import autoChirp.database.Misfire;
 import autoChirp.tweetCreation.Tweet;
 
 /**
  *
  * A class to schedule tweets using the
  * java.util.concurrent.ScheduledExecutorService;
+ *
+ * Only tweets due within the next window milliseconds get a timer. Later
+ * tweets stay in the database and are loaded bucket by bucket (bucketSize
+ * milliseconds each) with a range query, as the window slides forward. So
+ * the timers held in memory scale with the tweets due soon, not with all
+ * tweets of all enabled groups. The timers are kept in a ScheduleRegistry,
+ * which drops them as soon as they ran.
+ *
+ * Tweets which came due while the application was down are handled at
+ * startup by the MisfirePolicy, the ones posted late are spread out to
+ * catchUpRate tweets per minute.
+ *
+ * The timers only hand the due tweets off to the PostingExecutor, which
+ * reads, downloads and posts them on threads of its own, taking turns
+ * between the users and within the posting rate of each user. So a slow post
+ * doesn't delay the timers of other tweets.
+ *
+ * Several nodes may share the database if leaseTime is set, each of them
+ * schedules all tweets. Before posting a tweet a node claims it with a lease
+ * in the database (see DBConnector.claimTweet()) on its posting thread, so
+ * only one node posts it and a node starting meanwhile doesn't take it for a
+ * misfire. A tweet whose lease expired before it was done is posted by the
+ * next node looking for expired leases, every leaseTime milliseconds.
 
  * @author Alena Geduldig
  *
  */
 public class TweetScheduler {
 
-  private static final Map<Integer, Future<?>> scheduled = new HashMap<Integer, Future<?>>();
-  private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(5);
+  private static final ScheduleRegistry scheduled = new ScheduleRegistry();
+  // the timers only hand off, see handOff()
+  private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+	// posts the due tweets, replaced by a configured one in start()
+	private static volatile PostingExecutor posting = new PostingExecutor(new SchedulerConfig(), scheduler);
+
+	// guards the loaded range, see refill()
+	private static final Object windowLock = new Object();
+	// loads the next buckets into 'scheduled', see start()
+	private static ScheduledExecutorService loader;
+	private static volatile SchedulerConfig config = new SchedulerConfig();
+	// all tweets due before have a timer, later ones are loaded with their
+	// bucket. Until start() is called every tweet gets a timer.
+	private static long loadedUntil = Long.MAX_VALUE;
+	// the first window is loaded, see isReady()
+	private static volatile boolean ready;
+	private static long started;
+	// milliseconds stop() waits for the loader and the posting threads
+	private static final long STOP_TIMEOUT = 30 * 1000;
+
+	/**
+	 * handles the tweets missed while the application was down and starts
+	 * loading the tweets due within the next window milliseconds from the
+	 * database in the background, and keeps loading as time passes. Tweets
+	 * scheduled afterwards only get a timer if they are due within the loaded
+	 * range. Returns at once, see isReady().
+	 *
+	 * @param config
+	 *            window, bucket size and misfire policy
+	 */
+	public static void start(SchedulerConfig config) {
+		synchronized (windowLock) {
+			if (loader != null) {
+				return;
+			}
+			TweetScheduler.config = config;
+			config.bucketSize = Math.max(1000, config.bucketSize);
+			PostingExecutor previous = posting;
+			posting = new PostingExecutor(config, scheduler);
+			previous.shutdown();
+			started = System.currentTimeMillis();
+			loadedUntil = started;
+			loader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "TweetScheduler-loader");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		long before = started;
+		loader.execute(() -> catchUp(before));
+		loader.scheduleWithFixedDelay(TweetScheduler::refill, 0, config.bucketSize, TimeUnit.MILLISECONDS);
+		if (config.leaseTime > 0) {
+			loader.scheduleWithFixedDelay(TweetScheduler::reclaim, config.leaseTime, config.leaseTime,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * stops the loader, cancels all timers and drops the tweets queued for
+	 * posting, then waits up to STOP_TIMEOUT milliseconds for the tweets
+	 * being posted. The tweets not posted stay flagged as scheduled, the next
+	 * start() handles them as misfires. Called before the database is
+	 * disconnected.
+	 */
+	public static void stop() {
+		ScheduledExecutorService stopped;
+		synchronized (windowLock) {
+			stopped = loader;
+			loader = null;
+			ready = false;
+		}
+		try {
+			if (stopped != null) {
+				// a running refill finishes its buckets
+				stopped.shutdown();
+				stopped.awaitTermination(STOP_TIMEOUT, TimeUnit.MILLISECONDS);
+			}
+			int cancelled = scheduled.clear();
+			PostingExecutor current = posting;
+			int dropped = current.shutdownNow();
+			if (!current.awaitTermination(STOP_TIMEOUT)) {
+				System.out.println("TweetScheduler: posting threads still running after " + STOP_TIMEOUT + "ms");
+			}
+			System.out.println("TweetScheduler: stopped, " + cancelled + " timers cancelled, " + dropped
+					+ " queued tweets dropped");
+		} catch (InterruptedException e) {
+			System.out.print("TweetScheduler.stop: ");
+			e.printStackTrace();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return true if the loader is started and the tweets of the first
+	 *         window got their timers
+	 */
+	public static boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * @return number of tweets held with a timer
+	 */
+	public static int getScheduledCount() {
+		return scheduled.size();
+	}
+
+	/**
+	 * @return queue depth, hand-off lag and counts of the PostingExecutor
+	 */
+	public static Map<String, Object> getPostingMetrics() {
+		return posting.getMetrics();
+	}
+
+	/**
+	 * @return epoch milliseconds up to which the tweets are loaded from the
+	 *         database, Long.MAX_VALUE if the loader isn't started
+	 */
+	public static long getLoadedUntil() {
+		synchronized (windowLock) {
+			return loadedUntil;
+		}
+	}
 
 	/**
 	 * Schedules a list of tweets for the given twitter-user by creating a new
@@ -38,37 +183,52 @@ public class TweetScheduler {
 	 *            id of the associated user
 	 */
 	public static void scheduleTweetsForUser(List<Tweet> tweets, int user_id) {
-		LocalDateTime now;
-		Duration d;
-		long delay;
-
 		for (Tweet tweet: tweets) {
-		
+			scheduleTweet(tweet, user_id);
+		}
+	}
+
+	/**
+	 * Schedules a single tweet for the given twitter-user, unless it is
+	 * already scheduled or its date is in the past. Also updates the tweets
+	 * status in the database to scheduled = true. A tweet due after the
+	 * loaded window gets its timer when its bucket is loaded.
+	 *
+	 * @param tweet
+	 *            the tweet to schedule
+	 * @param user_id
+	 *            id of the associated user
+	 */
+	public static void scheduleTweet(Tweet tweet, int user_id) {
+		synchronized (windowLock) {
       // ignore if tweet is already scheduled
-      if (scheduled.containsKey(tweet.tweetID)) {
-        continue;
+      if (scheduled.contains(tweet.tweetID)) {
+        return;
       }
 
-			// create DateTime-Object from date-string
-			LocalDateTime ldt = LocalDateTime.parse(tweet.tweetDate, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+			// tweets read from the database carry their parsed date
+			Instant time = (tweet.scheduledAt != null) ? tweet.scheduledAt : Tweet.parseDate(tweet.tweetDate);
+			if (time == null) {
+				return;
+			}
 
-			// calculate delay in seconds
-			now = LocalDateTime.now();
-			d = Duration.between(now, ldt);
-			delay = d.getSeconds();
+			// calculate delay in milliseconds
+			long delay = Duration.between(Instant.now(), time).toMillis();
 
 
       //tweet-time is in the past
 			if (delay < 0) {
-				continue;
+				return;
 			}
 
-			// schedule
-      scheduled.put(tweet.tweetID, scheduler.schedule(new TwitterTask(user_id, tweet.tweetID), delay, TimeUnit.SECONDS));
-
-			// update tweet-status
-			DBConnector.flagAsScheduled(tweet.tweetID, user_id);
+			// schedule, unless the loader reads the tweet with its bucket
+			if (time.toEpochMilli() < loadedUntil) {
+				scheduled.schedule(tweet.tweetID, tweet.groupID, handOff(user_id, tweet.tweetID), delay, scheduler);
+			}
 		}
+
+		// update tweet-status, committed together with the other tweets
+		DBConnector.flagAsScheduledLater(tweet.tweetID, user_id);
 	}
 
   /**
@@ -79,13 +239,170 @@ public class TweetScheduler {
 	 */
   public static void descheduleTweet(int tweetID) {
 
-    if (!scheduled.containsKey(tweetID)) {
+    if (!scheduled.cancel(tweetID)) {
       System.out.println("Scheduler: could not descheduled Tweet #" + tweetID + ": No scheduling found");
-      return;
     }
-
-    Future<?> tweet = scheduled.remove(tweetID);
-    tweet.cancel(true);
   }
 
+	/**
+	 * Deschedules all given Tweets (e.g. the Tweets removed by a bulk delete)
+	 * in one pass. Tweets without a scheduling are skipped silently.
+	 *
+	 * @param tweetIDs
+	 *            the IDs of the Tweets to deschedule
+	 */
+	public static void descheduleTweets(Collection<Integer> tweetIDs) {
+		scheduled.cancelAll(tweetIDs);
+	}
+
+	/**
+	 * Deschedules all Tweets of a group (e.g. when the group is disabled).
+	 * Only the timers of the group are touched, tweets due after the loaded
+	 * window aren't loaded as long as the group is disabled.
+	 *
+	 * @param groupID
+	 *            the ID of the group to deschedule
+	 * @return number of descheduled Tweets
+	 */
+	public static int descheduleGroup(int groupID) {
+		return scheduled.cancelGroup(groupID);
+	}
+
+	/**
+	 * loads the buckets up to window milliseconds ahead of now. A bucket
+	 * is loaded while holding the lock, so a tweet scheduled meanwhile is
+	 * either read with its bucket or gets its timer from scheduleTweet().
+	 */
+	private static void refill() {
+		try {
+			long horizon = System.currentTimeMillis() + config.window;
+			while (true) {
+				synchronized (windowLock) {
+					if (loadedUntil >= horizon) {
+						break;
+					}
+					long from = loadedUntil;
+					long to = (from / config.bucketSize + 1) * config.bucketSize;
+					DBConnector.forEachSchedulableTweet(from, to, TweetScheduler::load);
+					loadedUntil = to;
+				}
+			}
+			if (!ready) {
+				ready = true;
+				System.out.println("TweetScheduler: first window loaded in "
+						+ (System.currentTimeMillis() - started) + "ms, " + scheduled.size() + " tweets scheduled");
+			}
+		} catch (RuntimeException e) {
+			// keep the loader alive, the next run continues with the bucket
+			System.out.print("TweetScheduler.refill: ");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * applies the misfire policy to the tweets flagged as scheduled but not
+	 * posted before the given time, and records the misfires. The tweets
+	 * posted late get their timers in the order they were due,
+	 * 60000 / catchUpRate milliseconds apart.
+	 */
+	private static void catchUp(long before) {
+		try {
+			List<Misfire> misfires = new ArrayList<Misfire>();
+			DBConnector.forEachMisfiredTweet(before, (tweet, userID) -> {
+				Misfire misfire = new Misfire();
+				misfire.tweetID = tweet.tweetID;
+				misfire.userID = userID;
+				misfire.groupID = tweet.groupID;
+				misfire.scheduledAt = (tweet.scheduledAt != null) ? tweet.scheduledAt.toEpochMilli() : 0;
+				misfire.detectedAt = before;
+				misfire.action = config.misfirePolicy.fires(before - misfire.scheduledAt, config.misfireThreshold)
+						? Misfire.FIRED : Misfire.SKIPPED;
+				misfires.add(misfire);
+			});
+			if (misfires.isEmpty()) {
+				return;
+			}
+			misfires.sort(Comparator.<Misfire> comparingLong(misfire -> misfire.scheduledAt)
+					.thenComparingInt(misfire -> misfire.tweetID));
+			long interval = (config.catchUpRate > 0) ? 60000 / config.catchUpRate : 0;
+			int fired = 0;
+			for (Misfire misfire : misfires) {
+				if (Misfire.FIRED.equals(misfire.action)) {
+					scheduled.schedule(misfire.tweetID, misfire.groupID, handOff(misfire.userID, misfire.tweetID),
+							fired * interval, scheduler);
+					fired++;
+				}
+			}
+			DBConnector.recordMisfires(misfires);
+			System.out.println("TweetScheduler: " + misfires.size() + " tweets missed, " + fired
+					+ " of them are posted late");
+		} catch (RuntimeException e) {
+			System.out.print("TweetScheduler.catchUp: ");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * gives the tweets whose lease expired a timer due now, another node
+	 * claimed them but didn't post them in time
+	 */
+	private static void reclaim() {
+		try {
+			int expired = DBConnector.forEachExpiredLease(System.currentTimeMillis(),
+					(tweet, userID) -> scheduled.schedule(tweet.tweetID, tweet.groupID, handOff(userID, tweet.tweetID),
+							0, scheduler));
+			if (expired > 0) {
+				System.out.println("TweetScheduler: " + expired + " tweets with an expired lease are reclaimed");
+			}
+		} catch (RuntimeException e) {
+			System.out.print("TweetScheduler.reclaim: ");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return the task of a timer: queues the TwitterTask with the
+	 *         PostingExecutor and returns at once, the timer threads never
+	 *         wait for the database
+	 */
+	private static Runnable handOff(int userID, int tweetID) {
+		TwitterTask task = new TwitterTask(userID, tweetID);
+		return () -> posting.submit(userID, () -> post(userID, tweetID, task));
+	}
+
+	/**
+	 * posts a tweet if this node gets the lease on it, and marks the lease as
+	 * done afterwards. Runs on a posting thread.
+	 */
+	private static void post(int userID, int tweetID, TwitterTask task) {
+		SchedulerConfig current = config;
+		if (current.leaseTime <= 0) {
+			task.run();
+			return;
+		}
+		if (!DBConnector.claimTweet(tweetID, userID, current.node, System.currentTimeMillis(), current.leaseTime)) {
+			// posted or being posted by another node
+			return;
+		}
+		try {
+			task.run();
+		} finally {
+			DBConnector.completeLease(tweetID, current.node);
+		}
+	}
+
+	/**
+	 * gives a tweet read with its bucket a timer. The bucket may have been
+	 * loaded a little late, so a tweet due already is posted right away.
+	 */
+	private static void load(Tweet tweet, int userID) {
+		long delay = Math.max(0, Duration.between(Instant.now(), tweet.scheduledAt).toMillis());
+		if (!scheduled.schedule(tweet.tweetID, tweet.groupID, handOff(userID, tweet.tweetID), delay, scheduler)) {
+			return;
+		}
+		if (!tweet.scheduled) {
+			DBConnector.flagAsScheduledLater(tweet.tweetID, userID);
+		}
+	}
+
 }
@@ -134,7 +134,8 @@ public class TwitterConnection {
 		
 	
 
-		// update Tweet-Status in DB
+		// update Tweet-Status in DB, committed before posting so the tweet
+		// isn't posted again
 		DBConnector.flagAsTweeted(tweetID, userID);
 
 		// update Status
@@ -146,7 +147,7 @@ public class TwitterConnection {
 			catch(Exception e){
 				e.printStackTrace();
 			}
-			DBConnector.addStatusID(tweetID, statusUpdate.getId());
+			DBConnector.addStatusIDLater(tweetID, statusUpdate.getId());
 		}
 		else{
 			try{
@@ -155,7 +156,7 @@ public class TwitterConnection {
 			catch(Exception e){
 				e.printStackTrace();
 			}
-			DBConnector.addStatusID(tweetID, statusUpdate.getId());
+			DBConnector.addStatusIDLater(tweetID, statusUpdate.getId());
 		}
 
 	}
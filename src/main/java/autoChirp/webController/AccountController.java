@@ -1,6 +1,8 @@
 package autoChirp.webController;
 
 import autoChirp.DBConnector;
+import autoChirp.database.TweetCounts;
+import autoChirp.tweeting.TweetScheduler;
 import java.util.Hashtable;
 
 import javax.inject.Inject;
@@ -38,7 +40,8 @@ public class AccountController {
 	 * reads details about the active user account from the database and hands
 	 * them to the returned view. All details about the associated
 	 * Twitter-account are stored within the session and can be accessed
-	 * directly from the templating layer of the application.
+	 * directly from the templating layer of the application. The tweets missed
+	 * while autoChirp was down are listed with what was done with them.
 	 *
 	 * @return View containing the account overview
 	 */
@@ -48,11 +51,13 @@ public class AccountController {
 
 		if (session.getAttribute("account") != null) {
 			int userID = Integer.parseInt(((Hashtable<String, String>) session.getAttribute("account")).get("userID"));
-			int groups = DBConnector.getGroupIDsForUser(userID).size();
-			int tweets = DBConnector.getTweetsForUser(userID).size();
+			TweetCounts counts = DBConnector.getTweetCounts(userID);
 
-			mv.addObject("groups", groups);
-			mv.addObject("tweets", tweets);
+			mv.addObject("groups", counts.groups);
+			mv.addObject("tweets", counts.tweets);
+			mv.addObject("scheduled", counts.scheduled);
+			mv.addObject("published", counts.published);
+			mv.addObject("misfires", DBConnector.getMisfires(userID, 20));
 		}
 
 		return mv;
@@ -109,7 +114,7 @@ public class AccountController {
 		int userID = Integer.parseInt(((Hashtable<String, String>) session.getAttribute("account")).get("userID"));
 
 		session.invalidate();
-		DBConnector.deleteUser(userID);
+		TweetScheduler.descheduleTweets(DBConnector.deleteUser(userID));
 
 		return "redirect:/home";
 	}
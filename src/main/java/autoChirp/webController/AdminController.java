@@ -0,0 +1,146 @@
+package autoChirp.webController;
+
+import autoChirp.DBConnector;
+import autoChirp.database.BackupStatus;
+import autoChirp.tweeting.TweetScheduler;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * A Spring MVC controller, responsible for serving /admin. This controller
+ * implements maintenance tasks of the application which are only available to
+ * the users listed in autochirp.admin.users (comma separated userIDs).
+ */
+@Controller
+@RequestMapping(value = "/admin")
+public class AdminController {
+
+	private HttpSession session;
+
+	@Value("${autochirp.admin.users:}")
+	private String adminUsers;
+
+	/**
+	 * Constructor method, used to autowire and inject the HttpSession object.
+	 *
+	 * @param session
+	 *            Autowired HttpSession object
+	 */
+	@Inject
+	public AdminController(HttpSession session) {
+		this.session = session;
+	}
+
+	/**
+	 * A HTTP GET request handler, responsible for serving /admin/backup. This
+	 * method returns the progress of the running or the result of the last
+	 * database backup as JSON.
+	 *
+	 * @param response
+	 *            Response to set the status of, if the user is no admin
+	 * @return Status of the backup
+	 */
+	@RequestMapping(value = "/backup", method = RequestMethod.GET)
+	@ResponseBody
+	public Map<String, Object> backupStatus(HttpServletResponse response) {
+		if (!isAdmin(response)) {
+			return null;
+		}
+
+		return toMap(DBConnector.getBackupStatus());
+	}
+
+	/**
+	 * A HTTP POST request handler, responsible for serving /admin/backup. This
+	 * method starts a backup of the database into the backup directory, which
+	 * runs in the background while the application keeps running.
+	 *
+	 * @param response
+	 *            Response to set the status of, if the user is no admin
+	 * @return Whether the backup was started, and the status of the running
+	 *         backup
+	 */
+	@RequestMapping(value = "/backup", method = RequestMethod.POST)
+	@ResponseBody
+	public Map<String, Object> startBackup(HttpServletResponse response) {
+		if (!isAdmin(response)) {
+			return null;
+		}
+
+		boolean started = DBConnector.startBackup();
+		Map<String, Object> map = toMap(DBConnector.getBackupStatus());
+		map.put("started", started);
+		return map;
+	}
+
+	/**
+	 * A HTTP GET request handler, responsible for serving /admin/metrics. This
+	 * method returns the latency, rows and errors of the database calls per
+	 * method, the metrics of the TweetGroup cache, the number of timers of the
+	 * TweetScheduler and the queue of its posting threads as JSON.
+	 *
+	 * @param response
+	 *            Response to set the status of, if the user is no admin
+	 * @return Metrics of the database
+	 */
+	@RequestMapping(value = "/metrics", method = RequestMethod.GET)
+	@ResponseBody
+	public Map<String, Object> metrics(HttpServletResponse response) {
+		if (!isAdmin(response)) {
+			return null;
+		}
+
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("queries", DBConnector.getQueryMetrics());
+		map.put("groupCache", DBConnector.getGroupCacheMetrics());
+		Map<String, Object> scheduler = new LinkedHashMap<String, Object>();
+		scheduler.put("timers", TweetScheduler.getScheduledCount());
+		scheduler.put("loadedUntil", TweetScheduler.getLoadedUntil());
+		scheduler.put("posting", TweetScheduler.getPostingMetrics());
+		map.put("scheduler", scheduler);
+		return map;
+	}
+
+	private boolean isAdmin(HttpServletResponse response) {
+		if (session.getAttribute("account") == null) {
+			response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+			return false;
+		}
+
+		String userID = ((Hashtable<String, String>) session.getAttribute("account")).get("userID");
+		if (!Arrays.asList(adminUsers.split("\\s*,\\s*")).contains(userID)) {
+			response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+			return false;
+		}
+
+		return true;
+	}
+
+	private Map<String, Object> toMap(BackupStatus status) {
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		if (status != null) {
+			map.put("file", status.file);
+			map.put("startedAt", status.started);
+			map.put("duration", status.duration);
+			map.put("bytesTotal", status.bytesTotal);
+			map.put("bytesWritten", status.bytesWritten);
+			map.put("percent", status.getPercent());
+			map.put("running", status.running);
+			map.put("succeeded", status.succeeded);
+			map.put("error", status.error);
+		}
+		return map;
+	}
+
+}
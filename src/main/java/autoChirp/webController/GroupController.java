@@ -9,10 +9,10 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -31,6 +31,7 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.ModelAndView;
 
 import autoChirp.DBConnector;
+import autoChirp.database.Page;
 import autoChirp.preProcessing.parser.WikipediaParser;
 import autoChirp.tweetCreation.MalformedTSVFileException;
 import autoChirp.tweetCreation.Tweet;
@@ -78,42 +79,31 @@ public class GroupController {
 
     /**
      * A HTTP GET request handler, responsible for serving /groups/view. This
-     * method provides the returned view with all groups, read from the
-     * database, chunking the results to support pagination.
+     * method provides the returned view with one page of groups, read from the
+     * database with keyset pagination.
      *
-     * @param page Request param containing the page number, defaults to 1
+     * @param page   Request param containing the page number, defaults to 1
+     * @param after  Request param containing the cursor the page starts after
+     * @param before Request param containing the cursor the page ends before
+     * @param last   Request param to show the last page
      * @return View containing the groups overview
      */
     @RequestMapping(value = "/view")
-    public ModelAndView viewGroups(@RequestParam(name = "page", defaultValue = "1") int page) {
+    public ModelAndView viewGroups(@RequestParam(name = "page", defaultValue = "1") int page,
+                                   @RequestParam(name = "after", required = false) String after,
+                                   @RequestParam(name = "before", required = false) String before,
+                                   @RequestParam(name = "last", defaultValue = "false") boolean last) {
         if (session.getAttribute("account") == null)
             return new ModelAndView("redirect:/account");
         int userID = Integer.parseInt(((Hashtable<String, String>) session.getAttribute("account")).get("userID"));
 
-        List<Integer> tweetGroupIDs = DBConnector.getGroupIDsForUser(userID);
-        List<TweetGroup> tweetGroups = new ArrayList<TweetGroup>();
-        ModelAndView mv = new ModelAndView("groups");
-
-        for (int groupID : tweetGroupIDs)
-            tweetGroups.add(DBConnector.getTweetGroupForUser(userID, groupID));
-
-        if (tweetGroups.size() <= groupsPerPage) {
-            mv.addObject("tweetGroups", tweetGroups);
-            return mv;
-        }
-
-        List<TweetGroup> pageGroupList;
-        double pgnum = (double) tweetGroups.size() / (double) groupsPerPage;
-        int pages = (pgnum > (int) pgnum) ? (int) (pgnum + 1.0) : (int) pgnum;
-        while (page > pages) {
-            page--;
-        }
-        int offset = (page - 1) * groupsPerPage;
-        int endset = (offset + groupsPerPage <= tweetGroups.size()) ? offset + groupsPerPage : tweetGroups.size();
+        Page<TweetGroup> groupsPage = (after != null)
+                ? DBConnector.getGroupsPage(userID, after, false, groupsPerPage)
+                : DBConnector.getGroupsPage(userID, before, before != null || last, groupsPerPage);
 
-        mv.addObject("tweetGroups", tweetGroups.subList(offset, endset));
-        mv.addObject("page", page);
-        mv.addObject("pages", pages);
+        ModelAndView mv = new ModelAndView("groups");
+        mv.addObject("tweetGroups", groupsPage.entries);
+        TweetController.addPagination(mv, groupsPage, page, groupsPerPage);
         return mv;
     }
 
@@ -126,55 +116,39 @@ public class GroupController {
      *
      * @param groupID Path param containing an ID-reference to a group
      * @param page    Request param containing the page (of Tweets), defaults to 1
+     * @param after   Request param containing the cursor the page starts after
+     * @param before  Request param containing the cursor the page ends before
+     * @param last    Request param to show the last page
+     * @param archive Request param to show the archived Tweets, too
      * @return View containing details for one group and its Tweets
      */
     @RequestMapping(value = "/view/{groupID}")
     public ModelAndView viewGroup(@PathVariable int groupID,
-                                  @RequestParam(name = "page", defaultValue = "1") int page) {
+                                  @RequestParam(name = "page", defaultValue = "1") int page,
+                                  @RequestParam(name = "after", required = false) String after,
+                                  @RequestParam(name = "before", required = false) String before,
+                                  @RequestParam(name = "last", defaultValue = "false") boolean last,
+                                  @RequestParam(name = "archive", defaultValue = "false") boolean archive) {
         if (session.getAttribute("account") == null)
             return new ModelAndView("redirect:/account");
         int userID = Integer.parseInt(((Hashtable<String, String>) session.getAttribute("account")).get("userID"));
-        TweetGroup tweetGroup = DBConnector.getTweetGroupForUser(userID, groupID);
+        TweetGroup tweetGroup = DBConnector.getTweetGroupForUser(userID, groupID, false);
 
         if (tweetGroup == null) {
             ModelAndView mv = new ModelAndView("error");
             mv.addObject("error", "A group with the ID #" + groupID + " does not exist.");
             return mv;
         }
-        List<Tweet> tweetsList = tweetGroup.tweets;
-        //reorder tweetsList: upcoming tweets first - past tweets second
-        LocalDateTime now = LocalDateTime.now();
-        List<Tweet> old = new ArrayList<Tweet>();
-        List<Tweet> upcoming = new ArrayList<Tweet>();
-        for (Tweet tweet : tweetsList) {
-            DateTimeFormatter dtFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            LocalDateTime tweetDate = LocalDateTime.parse(tweet.tweetDate, dtFormatter);
-            if (tweetDate.isBefore(now)) {
-                old.add(tweet);
-            } else {
-                upcoming.add(tweet);
-            }
-        }
-        tweetsList.removeAll(old);
-        tweetsList.addAll(old);
+        //upcoming tweets first - past tweets second
+        Page<Tweet> tweetsPage = (after != null)
+                ? DBConnector.getTweetsPage(userID, groupID, after, false, tweetsPerPage, archive)
+                : DBConnector.getTweetsPage(userID, groupID, before, before != null || last, tweetsPerPage, archive);
+        tweetGroup.tweetCount = tweetsPage.total;
         ModelAndView mv = new ModelAndView("group");
+        mv.addObject("archive", archive);
         mv.addObject("tweetGroup", tweetGroup);
-
-        if (tweetsList.size() <= tweetsPerPage) {
-            mv.addObject("tweetsList", tweetsList);
-            return mv;
-        }
-
-        double pgnum = (double) tweetsList.size() / (double) tweetsPerPage;
-        int pages = (pgnum > (int) pgnum) ? (int) (pgnum + 1.0) : (int) pgnum;
-        while (page > pages) {
-            page--;
-        }
-        int offset = (page - 1) * tweetsPerPage;
-        int endset = (offset + tweetsPerPage <= tweetsList.size()) ? offset + tweetsPerPage : tweetsList.size();
-        mv.addObject("tweetsList", tweetsList.subList(offset, endset));
-        mv.addObject("page", page);
-        mv.addObject("pages", pages);
+        mv.addObject("tweetsList", tweetsPage.entries);
+        TweetController.addPagination(mv, tweetsPage, page, tweetsPerPage);
         return mv;
     }
 
@@ -727,9 +701,8 @@ public class GroupController {
             return mv;
         }
 
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        LocalDateTime now = LocalDateTime.parse(tweetEntry.tweetDate, formatter);
-        LocalDateTime then = LocalDateTime.parse(referenceDate + " " + referenceTime, formatter);
+        LocalDateTime now = LocalDateTime.parse(tweetEntry.tweetDate, Tweet.DATE_FORMAT);
+        LocalDateTime then = LocalDateTime.parse(referenceDate + " " + referenceTime, Tweet.DATE_FORMAT);
 
         TweetGroup newTweetGroup = DBConnector.createRepeatGroupInSeconds(tweetGroup, userID,
                 (int) ChronoUnit.SECONDS.between(now, then), title);
@@ -743,7 +716,8 @@ public class GroupController {
      * /groups/toggle/$groupid. This method provides a way to toggle the
      * activation-state of the group, referenced by $groupid. If the group is
      * enabled after the toggle, the TweetScheduler is called to schedule all
-     * Tweets in the (now enabled) group.
+     * Tweets in the (now enabled) group, otherwise the timers of the group
+     * are cancelled.
      *
      * @param groupID Path param containing an ID-reference to a group
      * @return Redirect-view to the toggled group overview
@@ -754,12 +728,15 @@ public class GroupController {
             return "redirect:/account";
         int userID = Integer.parseInt(((Hashtable<String, String>) session.getAttribute("account")).get("userID"));
 
-        TweetGroup tweetGroup = DBConnector.getTweetGroupForUser(userID, groupID);
+        // the tweets are only read if the group is enabled
+        TweetGroup tweetGroup = DBConnector.getTweetGroupForUser(userID, groupID, false);
         boolean enabled = !tweetGroup.enabled;
         DBConnector.updateGroupStatus(groupID, enabled, userID);
 
         if (enabled)
-            TweetScheduler.scheduleTweetsForUser(tweetGroup.tweets, userID);
+            TweetScheduler.scheduleTweetsForUser(DBConnector.getTweetGroupForUser(userID, groupID).tweets, userID);
+        else
+            TweetScheduler.descheduleGroup(groupID);
         String referer = request.getHeader("Referer");
         return "redirect:" + referer;
     }
@@ -834,7 +811,7 @@ public class GroupController {
             return "redirect:/account";
         int userID = Integer.parseInt(((Hashtable<String, String>) session.getAttribute("account")).get("userID"));
 
-        DBConnector.deleteGroup(groupID, userID);
+        TweetScheduler.descheduleTweets(DBConnector.deleteGroups(Collections.singleton(groupID), userID));
         return "redirect:" + referer;
     }
 
@@ -852,9 +829,7 @@ public class GroupController {
             return new ModelAndView("redirect:/account");
         int userID = Integer.parseInt(((Hashtable<String, String>) session.getAttribute("account")).get("userID"));
 
-        for (Integer id : groupIDs) {
-            DBConnector.deleteGroup(id, userID);
-        }
+        TweetScheduler.descheduleTweets(DBConnector.deleteGroups(groupIDs, userID));
         return new ModelAndView("redirect:/groups/view");
     }
 
@@ -865,7 +840,7 @@ public class GroupController {
             return "account";
         int userID = Integer.parseInt(((Hashtable<String, String>) session.getAttribute("account")).get("userID"));
 
-        TweetGroup group = DBConnector.getTweetGroupForUser(userID, groupID);
+        TweetGroup group = DBConnector.getTweetGroupForUser(userID, groupID, true, true);
         List<Tweet> tweets = group.tweets;
         if(tweets == null || tweets.isEmpty()){
             return "";
@@ -883,7 +858,7 @@ public class GroupController {
             return "account";
         int userID = Integer.parseInt(((Hashtable<String, String>) session.getAttribute("account")).get("userID"));
 
-        TweetGroup group = DBConnector.getTweetGroupForUser(userID, groupID);
+        TweetGroup group = DBConnector.getTweetGroupForUser(userID, groupID, true, true);
         List<Tweet> tweets = group.tweets;
         if(tweets == null || tweets.isEmpty()){
             return "";
@@ -3,15 +3,20 @@ package autoChirp.webController;
 import autoChirp.DBConnector;
 import autoChirp.recentTweetWidget.TweetWidgetCreator;
 import autoChirp.tweetCreation.Tweet;
+import autoChirp.tweeting.TweetScheduler;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import javax.servlet.http.HttpServletResponse;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.ModelAndView;
 
 /**
- * A Spring MVC controller, responsible for serving /, /home, /about, /trivia
- * and /help. This controller serves static templates containing basic
- * information about the application.
+ * A Spring MVC controller, responsible for serving /, /home, /about, /trivia,
+ * /help, /stats and /ready. This controller serves static templates
+ * containing basic information about the application.
  *
  * @author Philip Schildkamp
  */
@@ -94,4 +99,28 @@ public class HomeController {
 		return mv;
 	}
 
+	/**
+	 * A HTTP GET request handler, responsible for serving /ready. This method
+	 * reports whether the TweetScheduler has loaded the tweets of its first
+	 * window, with status 503 until then, so a load balancer only sends
+	 * traffic to a started instance.
+	 *
+	 * @param response
+	 *            Response to set the status of
+	 * @return Readiness, number of timers and end of the loaded window
+	 */
+	@RequestMapping(value = "/ready")
+	@ResponseBody
+	public Map<String, Object> ready(HttpServletResponse response) {
+		boolean ready = TweetScheduler.isReady();
+		if (!ready)
+			response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("ready", ready);
+		map.put("timers", TweetScheduler.getScheduledCount());
+		map.put("loadedUntil", TweetScheduler.getLoadedUntil());
+		return map;
+	}
+
 }
@@ -6,9 +6,8 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.text.SimpleDateFormat;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Hashtable;
 import java.util.List;
@@ -27,6 +26,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.ModelAndView;
 
 import autoChirp.DBConnector;
+import autoChirp.database.Page;
 import autoChirp.tweetCreation.Tweet;
 import autoChirp.tweetCreation.TweetFactory;
 import autoChirp.tweetCreation.TweetGroup;
@@ -67,56 +67,67 @@ public class TweetController {
 
 	/**
 	 * A HTTP GET request handler, responsible for serving /tweets/view. This
-	 * method provides the returned view with all necessary Tweets from the
-	 * database, chunking the results to support pagination.
+	 * method provides the returned view with one page of Tweets (upcoming
+	 * Tweets first), read from the database with keyset pagination.
 	 *
 	 * @param page
 	 *            Request param containing the page number, defaults to 1
+	 * @param after
+	 *            Request param containing the cursor the page starts after
+	 * @param before
+	 *            Request param containing the cursor the page ends before
+	 * @param last
+	 *            Request param to show the last page
 	 * @return View containing the global Tweets overview
 	 */
 	@RequestMapping(value = "/view")
-	public ModelAndView viewTweets(@RequestParam(name = "page", defaultValue = "1") int page) {
+	public ModelAndView viewTweets(@RequestParam(name = "page", defaultValue = "1") int page,
+			@RequestParam(name = "after", required = false) String after,
+			@RequestParam(name = "before", required = false) String before,
+			@RequestParam(name = "last", defaultValue = "false") boolean last) {
 		if (session.getAttribute("account") == null)
 			return new ModelAndView("redirect:/account");
 		int userID = Integer.parseInt(((Hashtable<String, String>) session.getAttribute("account")).get("userID"));
 
-		List<Tweet> tweetsList = DBConnector.getTweetsForUser(userID);
-		
-		//sort tweets: upcoming first
-		LocalDateTime now = LocalDateTime.now();
-		List<Tweet> old = new ArrayList<Tweet>();
-		List<Tweet> upcoming = new ArrayList<Tweet>();
-		for (Tweet tweet : tweetsList) {
-			DateTimeFormatter dtFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-			LocalDateTime tweetDate = LocalDateTime.parse(tweet.tweetDate, dtFormatter);
-			if(tweetDate.isBefore(now)){
-				old.add(tweet);
-			}
-			else{
-				upcoming.add(tweet);
-			}	
-		}
-		tweetsList.removeAll(old);
-		tweetsList.addAll(old);
-		
+		Page<Tweet> tweetsPage = (after != null)
+				? DBConnector.getTweetsPage(userID, -1, after, false, tweetsPerPage)
+				: DBConnector.getTweetsPage(userID, -1, before, before != null || last, tweetsPerPage);
+
 		ModelAndView mv = new ModelAndView("tweets");
-		if (tweetsList.size() <= tweetsPerPage) {
-			mv.addObject("tweetsList", tweetsList);
-			return mv;
-		}
+		mv.addObject("tweetsList", tweetsPage.entries);
+		addPagination(mv, tweetsPage, page, tweetsPerPage);
+		return mv;
+	}
 
-		double pgnum = (double) tweetsList.size() / (double) tweetsPerPage;
-		int pages = (pgnum > (int) pgnum) ? (int) (pgnum + 1.0) : (int) pgnum;
-		while(page > pages ){
-			page--;
+	/**
+	 * adds page, pages and the pager (with the cursors) to the view, if there
+	 * is more than one page
+	 *
+	 * @param mv
+	 *            the view
+	 * @param pager
+	 *            the current page
+	 * @param page
+	 *            the requested page number (only displayed)
+	 * @param perPage
+	 *            entries per page
+	 */
+	static void addPagination(ModelAndView mv, Page<?> pager, int page, int perPage) {
+		if (pager.total <= perPage) {
+			return;
 		}
-		int offset = (page - 1) * tweetsPerPage;
-		int endset = (offset + tweetsPerPage <= tweetsList.size()) ? offset + tweetsPerPage : tweetsList.size();
-
-		mv.addObject("tweetsList", tweetsList.subList(offset, endset));
+		int pages = (pager.total + perPage - 1) / perPage;
+		// the number is only displayed, the cursors select the entries
+		if (!pager.hasPrevious) {
+			page = 1;
+		} else if (!pager.hasNext) {
+			page = pages;
+		} else {
+			page = Math.max(2, Math.min(page, pages - 1));
+		}
+		mv.addObject("pager", pager);
 		mv.addObject("page", page);
 		mv.addObject("pages", pages);
-		return mv;
 	}
 
 	/**
@@ -618,7 +629,7 @@ public class TweetController {
 		if (referer.isEmpty())
 			referer = "/groups/view/" + tweetEntry.groupID;
 
-		DBConnector.deleteTweet(tweetID, userID);
+		TweetScheduler.descheduleTweets(DBConnector.deleteTweets(Collections.singleton(tweetID), userID));
 		return "redirect:" + referer;
 	}
 	
@@ -637,9 +648,7 @@ public class TweetController {
 		if (session.getAttribute("account") == null)
 			return new ModelAndView("redirect:/account");
 		int userID = Integer.parseInt(((Hashtable<String, String>) session.getAttribute("account")).get("userID"));
-		for (int tweetID : tweetIDs) {
-			DBConnector.deleteTweet(tweetID, userID);
-		}
+		TweetScheduler.descheduleTweets(DBConnector.deleteTweets(tweetIDs, userID));
 		String referer = request.getHeader("referer");
 		return new ModelAndView("redirect:" + referer);
 	}
@@ -0,0 +1,14 @@
+-- indexes for the hot query paths
+
+-- tweets of a user or of a user's group, ordered by date
+CREATE INDEX IF NOT EXISTS idx_tweets_user_group_date ON tweets (user_id, group_id, scheduled_date);
+
+-- scheduled/published tweets ordered by date (stats, startup scheduling)
+CREATE INDEX IF NOT EXISTS idx_tweets_status_date ON tweets (scheduled, tweeted, scheduled_date);
+
+-- enabled groups (startup scheduling) and groups of a user
+CREATE INDEX IF NOT EXISTS idx_groups_enabled ON groups (enabled, user_id);
+CREATE INDEX IF NOT EXISTS idx_groups_user ON groups (user_id);
+
+-- login lookup by twitter id
+CREATE INDEX IF NOT EXISTS idx_users_twitter ON users (twitter_id);
@@ -0,0 +1,2 @@
+-- tweets of a user ordered by date (paginated tweet listing)
+CREATE INDEX IF NOT EXISTS idx_tweets_user_date ON tweets (user_id, scheduled_date);
@@ -0,0 +1,11 @@
+-- schedule times as epoch milliseconds (UTC), scheduled_date stays the
+-- displayed local date. Dates that can't be parsed are stored as 0. The
+-- existing rows are filled in by SchemaMigrator, with Tweet.parseDate().
+ALTER TABLE tweets ADD COLUMN scheduled_at INTEGER NOT NULL DEFAULT 0;
+
+DROP INDEX IF EXISTS idx_tweets_user_group_date;
+DROP INDEX IF EXISTS idx_tweets_status_date;
+DROP INDEX IF EXISTS idx_tweets_user_date;
+CREATE INDEX IF NOT EXISTS idx_tweets_user_group_time ON tweets (user_id, group_id, scheduled_at);
+CREATE INDEX IF NOT EXISTS idx_tweets_status_time ON tweets (scheduled, tweeted, scheduled_at);
+CREATE INDEX IF NOT EXISTS idx_tweets_user_time ON tweets (user_id, scheduled_at);
@@ -0,0 +1,42 @@
+-- materialized counts for the statistics page, kept up to date by triggers
+-- in the transaction of every insert, delete and status change
+CREATE TABLE IF NOT EXISTS counters (
+  name VARCHAR(32) NOT NULL PRIMARY KEY,
+  value INTEGER NOT NULL DEFAULT 0
+);
+
+INSERT OR REPLACE INTO counters (name, value) VALUES ('users', (SELECT Count(*) FROM users));
+INSERT OR REPLACE INTO counters (name, value) VALUES ('tweets', (SELECT Count(*) FROM tweets));
+INSERT OR REPLACE INTO counters (name, value) VALUES ('published', (SELECT Count(*) FROM tweets WHERE (tweeted = 1)));
+INSERT OR REPLACE INTO counters (name, value) VALUES ('scheduled', (SELECT Count(*) FROM tweets WHERE (scheduled = 1 AND tweeted = 0)));
+
+CREATE TRIGGER IF NOT EXISTS count_users_insert AFTER INSERT ON users
+BEGIN
+  UPDATE counters SET value = value + 1 WHERE (name = 'users');
+END;
+
+CREATE TRIGGER IF NOT EXISTS count_users_delete AFTER DELETE ON users
+BEGIN
+  UPDATE counters SET value = value - 1 WHERE (name = 'users');
+END;
+
+CREATE TRIGGER IF NOT EXISTS count_tweets_insert AFTER INSERT ON tweets
+BEGIN
+  UPDATE counters SET value = value + 1 WHERE (name = 'tweets');
+  UPDATE counters SET value = value + 1 WHERE (name = 'published' AND NEW.tweeted = 1);
+  UPDATE counters SET value = value + 1 WHERE (name = 'scheduled' AND NEW.scheduled = 1 AND NEW.tweeted = 0);
+END;
+
+CREATE TRIGGER IF NOT EXISTS count_tweets_delete AFTER DELETE ON tweets
+BEGIN
+  UPDATE counters SET value = value - 1 WHERE (name = 'tweets');
+  UPDATE counters SET value = value - 1 WHERE (name = 'published' AND OLD.tweeted = 1);
+  UPDATE counters SET value = value - 1 WHERE (name = 'scheduled' AND OLD.scheduled = 1 AND OLD.tweeted = 0);
+END;
+
+CREATE TRIGGER IF NOT EXISTS count_tweets_update AFTER UPDATE OF scheduled, tweeted ON tweets
+BEGIN
+  UPDATE counters SET value = value + (NEW.tweeted = 1) - (OLD.tweeted = 1) WHERE (name = 'published');
+  UPDATE counters SET value = value + (NEW.scheduled = 1 AND NEW.tweeted = 0) - (OLD.scheduled = 1 AND OLD.tweeted = 0)
+    WHERE (name = 'scheduled');
+END;
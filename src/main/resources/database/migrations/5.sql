@@ -0,0 +1,33 @@
+-- published tweets are moved here by the TweetArchiver once they are older
+-- than autochirp.database.archiveafter. Same columns as 'tweets', the IDs
+-- are kept (tweets.tweet_id is AUTOINCREMENT, so they are never reused).
+CREATE TABLE IF NOT EXISTS tweets_archive (
+  tweet_id INTEGER NOT NULL PRIMARY KEY,
+  user_id INTEGER NOT NULL,
+  group_id INTEGER DEFAULT NULL,
+  scheduled_date VARCHAR(20) NOT NULL,
+  tweet TEXT NOT NULL,
+  scheduled bool DEFAULT FALSE,
+  tweeted bool DEFAULT FALSE,
+  img_url VARCHAR(255) DEFAULT NULL,
+  longitude DOUBLE DEFAULT NULL,
+  latitude DOUBLE DEFAULT NULL,
+  status_id INTEGER DEFAULT NULL,
+  scheduled_at INTEGER NOT NULL DEFAULT 0
+);
+
+CREATE INDEX IF NOT EXISTS idx_archive_user_group_time ON tweets_archive (user_id, group_id, scheduled_at);
+CREATE INDEX IF NOT EXISTS idx_archive_time ON tweets_archive (scheduled_at);
+
+-- archived tweets still count as tweets and published tweets
+CREATE TRIGGER IF NOT EXISTS count_archive_insert AFTER INSERT ON tweets_archive
+BEGIN
+  UPDATE counters SET value = value + 1 WHERE (name = 'tweets');
+  UPDATE counters SET value = value + 1 WHERE (name = 'published' AND NEW.tweeted = 1);
+END;
+
+CREATE TRIGGER IF NOT EXISTS count_archive_delete AFTER DELETE ON tweets_archive
+BEGIN
+  UPDATE counters SET value = value - 1 WHERE (name = 'tweets');
+  UPDATE counters SET value = value - 1 WHERE (name = 'published' AND OLD.tweeted = 1);
+END;
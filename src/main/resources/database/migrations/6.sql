@@ -0,0 +1,3 @@
+-- covers the per-user and per-group counts (see TweetCounts), so they are
+-- read from the index without touching the rows
+CREATE INDEX IF NOT EXISTS idx_tweets_user_group_status ON tweets (user_id, group_id, scheduled, tweeted);
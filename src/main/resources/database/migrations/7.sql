@@ -0,0 +1,13 @@
+-- tweets missed while the application was down, and whether they were
+-- posted late or skipped (see TweetScheduler). Rows are deleted with their
+-- tweets.
+CREATE TABLE IF NOT EXISTS misfires (
+  tweet_id INTEGER NOT NULL PRIMARY KEY,
+  user_id INTEGER NOT NULL,
+  group_id INTEGER DEFAULT NULL,
+  scheduled_at INTEGER NOT NULL,
+  detected_at INTEGER NOT NULL,
+  action VARCHAR(8) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_misfires_user_time ON misfires (user_id, detected_at);
@@ -0,0 +1,14 @@
+-- the claims of the nodes sharing the database on the tweets they post (see
+-- TweetScheduler). A lease expires at expires_at unless it is done, an
+-- expired lease may be claimed by another node. Rows are deleted with their
+-- tweets.
+CREATE TABLE IF NOT EXISTS leases (
+  tweet_id INTEGER NOT NULL PRIMARY KEY,
+  user_id INTEGER NOT NULL,
+  group_id INTEGER DEFAULT NULL,
+  node VARCHAR(255) NOT NULL,
+  expires_at INTEGER NOT NULL,
+  done INTEGER NOT NULL DEFAULT 0
+);
+
+CREATE INDEX IF NOT EXISTS idx_leases_expiry ON leases (done, expires_at);
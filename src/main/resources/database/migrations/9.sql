@@ -0,0 +1,78 @@
+-- materialized counts per user and per group for the totals of the paged
+-- listings, kept up to date by triggers like the counters of migration 4.
+-- Archived tweets are counted apart, a listing with the archive adds them.
+CREATE TABLE IF NOT EXISTS user_counters (
+  user_id INTEGER NOT NULL PRIMARY KEY,
+  groups INTEGER NOT NULL DEFAULT 0,
+  tweets INTEGER NOT NULL DEFAULT 0,
+  archived INTEGER NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS group_counters (
+  user_id INTEGER NOT NULL,
+  group_id INTEGER NOT NULL,
+  tweets INTEGER NOT NULL DEFAULT 0,
+  archived INTEGER NOT NULL DEFAULT 0,
+  PRIMARY KEY (user_id, group_id)
+);
+
+INSERT OR REPLACE INTO user_counters (user_id, groups, tweets, archived)
+  SELECT u.user_id, (SELECT Count(*) FROM groups WHERE user_id = u.user_id),
+    (SELECT Count(*) FROM tweets WHERE user_id = u.user_id),
+    (SELECT Count(*) FROM tweets_archive WHERE user_id = u.user_id)
+  FROM (SELECT user_id FROM groups UNION SELECT user_id FROM tweets UNION SELECT user_id FROM tweets_archive) u;
+
+INSERT OR REPLACE INTO group_counters (user_id, group_id, tweets, archived)
+  SELECT g.user_id, g.group_id,
+    (SELECT Count(*) FROM tweets WHERE user_id = g.user_id AND group_id = g.group_id),
+    (SELECT Count(*) FROM tweets_archive WHERE user_id = g.user_id AND group_id = g.group_id)
+  FROM (SELECT user_id, group_id FROM tweets WHERE group_id IS NOT NULL
+    UNION SELECT user_id, group_id FROM tweets_archive WHERE group_id IS NOT NULL) g;
+
+CREATE TRIGGER IF NOT EXISTS count_user_groups_insert AFTER INSERT ON groups
+BEGIN
+  INSERT OR IGNORE INTO user_counters (user_id) VALUES (NEW.user_id);
+  UPDATE user_counters SET groups = groups + 1 WHERE (user_id = NEW.user_id);
+END;
+
+CREATE TRIGGER IF NOT EXISTS count_user_groups_delete AFTER DELETE ON groups
+BEGIN
+  UPDATE user_counters SET groups = groups - 1 WHERE (user_id = OLD.user_id);
+END;
+
+CREATE TRIGGER IF NOT EXISTS count_user_tweets_insert AFTER INSERT ON tweets
+BEGIN
+  INSERT OR IGNORE INTO user_counters (user_id) VALUES (NEW.user_id);
+  UPDATE user_counters SET tweets = tweets + 1 WHERE (user_id = NEW.user_id);
+  INSERT OR IGNORE INTO group_counters (user_id, group_id)
+    SELECT NEW.user_id, NEW.group_id WHERE (NEW.group_id IS NOT NULL);
+  UPDATE group_counters SET tweets = tweets + 1 WHERE (user_id = NEW.user_id AND group_id = NEW.group_id);
+END;
+
+CREATE TRIGGER IF NOT EXISTS count_user_tweets_delete AFTER DELETE ON tweets
+BEGIN
+  UPDATE user_counters SET tweets = tweets - 1 WHERE (user_id = OLD.user_id);
+  UPDATE group_counters SET tweets = tweets - 1 WHERE (user_id = OLD.user_id AND group_id = OLD.group_id);
+END;
+
+CREATE TRIGGER IF NOT EXISTS count_user_archive_insert AFTER INSERT ON tweets_archive
+BEGIN
+  INSERT OR IGNORE INTO user_counters (user_id) VALUES (NEW.user_id);
+  UPDATE user_counters SET archived = archived + 1 WHERE (user_id = NEW.user_id);
+  INSERT OR IGNORE INTO group_counters (user_id, group_id)
+    SELECT NEW.user_id, NEW.group_id WHERE (NEW.group_id IS NOT NULL);
+  UPDATE group_counters SET archived = archived + 1 WHERE (user_id = NEW.user_id AND group_id = NEW.group_id);
+END;
+
+CREATE TRIGGER IF NOT EXISTS count_user_archive_delete AFTER DELETE ON tweets_archive
+BEGIN
+  UPDATE user_counters SET archived = archived - 1 WHERE (user_id = OLD.user_id);
+  UPDATE group_counters SET archived = archived - 1 WHERE (user_id = OLD.user_id AND group_id = OLD.group_id);
+END;
+
+-- a deleted group has no tweets left
+CREATE TRIGGER IF NOT EXISTS count_group_delete AFTER DELETE ON groups
+BEGIN
+  DELETE FROM group_counters WHERE (user_id = OLD.user_id AND group_id = OLD.group_id AND tweets <= 0
+    AND archived <= 0);
+END;
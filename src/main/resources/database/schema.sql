@@ -42,4 +42,17 @@ CREATE TABLE repeats (
 	user_id  INTEGER NOT NULL,
 	CONSTRAINT FK_USERS_USERID_REPEATS_USERID FOREIGN KEY (user_id) REFERENCES users (user_id),
 	CONSTRAINT FK_GROUPS_GROUPID_REPEATS_GROUPID FOREIGN KEY (group_id) REFERENCES groups (group_id)
-);
\ No newline at end of file
+);
+
+-- the archive is created by migration 5, a new database starts without one
+DROP TABLE IF EXISTS tweets_archive;
+
+-- the misfires are created by migration 7
+DROP TABLE IF EXISTS misfires;
+
+-- the leases are created by migration 8
+DROP TABLE IF EXISTS leases;
+
+-- the counters per user and group are created by migration 9
+DROP TABLE IF EXISTS user_counters;
+DROP TABLE IF EXISTS group_counters;
\ No newline at end of file
@@ -1,14 +1,37 @@
 package workflowTests;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import autoChirp.DBConnector;
+import autoChirp.database.BackupStatus;
+import autoChirp.database.DBConfig;
+import autoChirp.database.Misfire;
+import autoChirp.database.Page;
+import autoChirp.database.SchemaMigrator;
+import autoChirp.database.SQLiteTweetStore;
+import autoChirp.database.TweetCounts;
 import autoChirp.tweetCreation.Tweet;
 import autoChirp.tweetCreation.TweetGroup;
 
@@ -36,6 +59,7 @@ public class DBInputOutputTest {
 	public static void dbConnection() {
 		DBConnector.connect(dbPath + dbFileName);
 		DBConnector.createOutputTables(dbCreationFileName);
+		DBConnector.migrate();
 	}
 
 	/**
@@ -58,6 +82,16 @@ public class DBInputOutputTest {
 	}
 
 
+	/**
+	 * migrating an up-to-date database changes nothing
+	 */
+	@Test
+	public void migrateTwice(){
+		int version = DBConnector.migrate();
+		Assert.assertTrue(version > 0);
+		Assert.assertEquals(version, DBConnector.migrate());
+	}
+
 	/**
 	 * insert and read tweetGroup
 	 *
@@ -159,6 +193,196 @@ public class DBInputOutputTest {
 		Assert.assertTrue(tweets.size() == 0);
 	}
 
+	/**
+	 * bulk deletes remove only the user's rows and return the deleted tweets
+	 */
+	@Test
+	public void bulkDelete(){
+		int userID = 71;
+		List<Integer> groupIDs = new ArrayList<Integer>();
+		List<Integer> tweetIDs = new ArrayList<Integer>();
+		for (int i = 0; i < 150; i++) {
+			TweetGroup group = new TweetGroup("bulkTitle" + i, "bulkDescription");
+			group.tweets.add(new Tweet("2030-01-01 00:00:00", "bulkTweet" + i));
+			groupIDs.add(DBConnector.insertTweetGroup(group, userID));
+			tweetIDs.add(group.tweets.get(0).tweetID);
+		}
+		int otherGroupID = DBConnector.insertTweetGroup(testGroup, userID + 1);
+		List<Integer> deleted = DBConnector.deleteTweets(tweetIDs.subList(0, 10), userID);
+		Assert.assertEquals(tweetIDs.subList(0, 10), deleted);
+		groupIDs.add(otherGroupID);
+		deleted = DBConnector.deleteGroups(groupIDs, userID);
+		Collections.sort(deleted);
+		Assert.assertEquals(tweetIDs.subList(10, 150), deleted);
+		Assert.assertTrue(DBConnector.getGroupIDsForUser(userID).isEmpty());
+		Assert.assertTrue(DBConnector.getTweetsForUser(userID).isEmpty());
+		Assert.assertNotNull(DBConnector.getTweetGroupForUser(userID + 1, otherGroupID));
+		Assert.assertEquals(testGroup.tweets.size(), DBConnector.deleteUser(userID + 1).size());
+	}
+
+	/**
+	 * archived tweets are only read when asked for, but still counted,
+	 * replied to and deleted with their group
+	 */
+	@Test
+	public void archiveTweets(){
+		int userID = 73;
+		TweetGroup group = new TweetGroup("archiveTitle", "archiveDescription");
+		group.tweets.add(new Tweet("1300-01-01 00:00:00", "archived1"));
+		group.tweets.add(new Tweet("1300-01-02 00:00:00", "archived2"));
+		group.tweets.add(new Tweet("1300-01-03 00:00:00", "live"));
+		int groupID = DBConnector.insertTweetGroup(group, userID);
+		DBConnector.flagAsTweeted(group.tweets.get(0).tweetID, userID);
+		DBConnector.flagAsTweeted(group.tweets.get(1).tweetID, userID);
+		DBConnector.addStatusID(group.tweets.get(1).tweetID, 1302);
+		int all = DBConnector.getAllTweets();
+		int published = DBConnector.getPublishedTweets();
+		long before = Tweet.parseDate("1300-12-31 00:00:00").toEpochMilli();
+		Assert.assertEquals(2, DBConnector.archiveTweets(before));
+		Assert.assertEquals(0, DBConnector.archiveTweets(before));
+		Assert.assertEquals(1, DBConnector.getTweetGroupForUser(userID, groupID).tweets.size());
+		List<Tweet> withArchive = DBConnector.getTweetGroupForUser(userID, groupID, true, true).tweets;
+		Assert.assertEquals(3, withArchive.size());
+		Assert.assertEquals("archived1", withArchive.get(0).content);
+		Assert.assertEquals(1, DBConnector.getTweetsPage(userID, groupID, null, false, 10).total);
+		Page<Tweet> page = DBConnector.getTweetsPage(userID, groupID, null, false, 10, true);
+		Assert.assertEquals(3, page.total);
+		Assert.assertEquals(3, page.entries.size());
+		Assert.assertEquals(all, DBConnector.getAllTweets());
+		Assert.assertEquals(published, DBConnector.getPublishedTweets());
+		Assert.assertEquals(1302, DBConnector.getReplyID(group.tweets.get(2).tweetID, groupID, userID));
+		Assert.assertEquals(3, DBConnector.deleteGroups(Collections.singleton(groupID), userID).size());
+		Assert.assertEquals(all - 3, DBConnector.getAllTweets());
+	}
+
+	/**
+	 * an archived tweet can still be read by its ID, flagged as archived
+	 */
+	@Test
+	public void archivedTweetByID(){
+		int userID = 74;
+		TweetGroup group = new TweetGroup("archivedByIDTitle", "archivedByIDDescription");
+		group.tweets.add(new Tweet("1300-02-01 00:00:00", "archived"));
+		group.tweets.add(new Tweet("1300-02-02 00:00:00", "live"));
+		int groupID = DBConnector.insertTweetGroup(group, userID);
+		int archivedID = group.tweets.get(0).tweetID;
+		DBConnector.flagAsTweeted(archivedID, userID);
+		Assert.assertEquals(1, DBConnector.archiveTweets(Tweet.parseDate("1300-12-31 00:00:00").toEpochMilli()));
+		Tweet archived = DBConnector.getTweetByID(archivedID, userID);
+		Assert.assertNotNull(archived);
+		Assert.assertTrue(archived.archived);
+		Assert.assertEquals("archived", archived.content);
+		Assert.assertEquals(groupID, archived.groupID);
+		Assert.assertEquals("archivedByIDTitle", archived.groupName);
+		Assert.assertTrue(DBConnector.getTweetByID(archivedID).archived);
+		Assert.assertNull(DBConnector.getTweetByID(archivedID, userID + 1));
+		Assert.assertFalse(DBConnector.getTweetByID(group.tweets.get(1).tweetID, userID).archived);
+		Assert.assertTrue(DBConnector.getTweetGroupForUser(userID, groupID, true, true).tweets.get(0).archived);
+		DBConnector.deleteGroups(Collections.singleton(groupID), userID);
+		Assert.assertNull(DBConnector.getTweetByID(archivedID));
+	}
+
+	/**
+	 * a backup is a complete copy of the database, including the queued
+	 * status updates
+	 */
+	@Test
+	public void databaseBackup() throws SQLException{
+		int userID = 77;
+		TweetGroup group = new TweetGroup("backupTitle", "backupDescription");
+		group.tweets.add(new Tweet("1400-01-01 00:00:00", "backup1"));
+		group.tweets.add(new Tweet("1400-01-02 00:00:00", "backup2"));
+		DBConnector.insertTweetGroup(group, userID);
+		DBConnector.flagAsTweeted(group.tweets.get(1).tweetID, userID);
+		File file = new File(dbPath + "backup.db");
+		BackupStatus status = DBConnector.backup(file.getPath());
+		Assert.assertTrue(status.error, status.succeeded);
+		Assert.assertFalse(status.running);
+		Assert.assertEquals(100, status.getPercent());
+		Assert.assertFalse(new File(file.getPath() + ".part").exists());
+		Assert.assertEquals(file.length(), status.bytesWritten);
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+		try {
+			ResultSet result = connection.createStatement()
+					.executeQuery("SELECT Count(*), Sum(tweeted) FROM tweets WHERE user_id = " + userID);
+			Assert.assertEquals(2, result.getInt(1));
+			Assert.assertEquals(1, result.getInt(2));
+		} finally {
+			connection.close();
+			file.delete();
+		}
+	}
+
+	/**
+	 * migration 3 computes the schedule times of existing tweets in the time
+	 * zone of the JVM, like the ones of new tweets
+	 */
+	@Test
+	public void migrateScheduleTimes() throws Exception {
+		File file = new File(dbPath + "migrate.db");
+		TimeZone zone = TimeZone.getDefault();
+		TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Auckland"));
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+		try {
+			Statement stmt = connection.createStatement();
+			stmt.executeUpdate(new String(Files.readAllBytes(Paths.get(dbCreationFileName)), StandardCharsets.UTF_8));
+			stmt.executeUpdate("INSERT INTO tweets (user_id, group_id, scheduled_date, tweet)"
+					+ " VALUES (1, 1, '2001-02-03 04:05:06', 'old'), (1, 1, 'no date', 'invalid')");
+			stmt.close();
+			connection.setAutoCommit(false);
+			Assert.assertTrue(new SchemaMigrator(connection).migrate() >= 3);
+			ResultSet result = connection.createStatement()
+					.executeQuery("SELECT scheduled_at FROM tweets ORDER BY tweet_id");
+			Assert.assertTrue(result.next());
+			Assert.assertEquals(Tweet.parseDate("2001-02-03 04:05:06").toEpochMilli(), result.getLong(1));
+			Assert.assertTrue(result.next());
+			Assert.assertEquals(0, result.getLong(1));
+		} finally {
+			TimeZone.setDefault(zone);
+			connection.close();
+			file.delete();
+		}
+	}
+
+	/**
+	 * calls to the store are counted with their rows and errors
+	 */
+	@Test
+	public void queryMetrics(){
+		int userID = 79;
+		DBConnector.insertTweetGroup(testGroup, userID);
+		Map<String, Object> before = DBConnector.getQueryMetrics().get("getTweetsForUser");
+		long calls = (before == null) ? 0 : (Long) before.get("calls");
+		long rows = (before == null) ? 0 : (Long) before.get("rows");
+		Assert.assertEquals(testGroup.tweets.size(), DBConnector.getTweetsForUser(userID).size());
+		Map<String, Object> after = DBConnector.getQueryMetrics().get("getTweetsForUser");
+		Assert.assertEquals(calls + 1, after.get("calls"));
+		Assert.assertEquals(rows + testGroup.tweets.size(), after.get("rows"));
+		Assert.assertEquals(0, DBConnector.countTweets("SELECT Count(*) FROM no_such_table"));
+		Assert.assertTrue((Long) DBConnector.getQueryMetrics().get("countTweets").get("errors") >= 1);
+	}
+
+	/**
+	 * counts of a user and of his groups
+	 */
+	@Test
+	public void tweetCounts(){
+		int userID = 75;
+		int groupID = DBConnector.insertTweetGroup(testGroup, userID);
+		DBConnector.insertTweetGroup(new TweetGroup("emptyTitle", "emptyDescription"), userID);
+		DBConnector.flagAsScheduled(testGroup.tweets.get(0).tweetID, userID);
+		DBConnector.flagAsScheduled(testGroup.tweets.get(1).tweetID, userID);
+		DBConnector.flagAsTweeted(testGroup.tweets.get(1).tweetID, userID);
+		TweetCounts counts = DBConnector.getTweetCounts(userID);
+		Assert.assertEquals(2, counts.groups);
+		Assert.assertEquals(testGroup.tweets.size(), counts.tweets);
+		Assert.assertEquals(1, counts.scheduled);
+		Assert.assertEquals(1, counts.published);
+		Map<Integer, TweetCounts> groupCounts = DBConnector.getTweetCounts(userID, DBConnector.getGroupIDsForUser(userID));
+		Assert.assertEquals(1, groupCounts.size());
+		Assert.assertEquals(testGroup.tweets.size(), groupCounts.get(groupID).tweets);
+	}
+
 	/**
 	 * test Method getGroupIdsForUser()
 	 */
@@ -202,11 +426,520 @@ public class DBInputOutputTest {
 		String title = DBConnector.getGroupTitle(groupID, userID);
 		Assert.assertEquals("newTitle", title);
 		Assert.assertEquals("newDescription", read.description);
+		Assert.assertEquals("newTitle", read.tweets.get(0).groupName);
 		DBConnector.editTweet(read.tweets.get(3).tweetID, "newContent", userID, null, 0, 0, "newDate");
 		read = DBConnector.getTweetGroupForUser(userID, groupID);
 		Assert.assertEquals("newContent", read.tweets.get(3).content);
 	}
 
+	/**
+	 * values with quotes are stored as they are
+	 */
+	@Test
+	public void quotesInValues(){
+		int userID = DBConnector.insertNewUser(45, "it's", "a'token");
+		int groupID = DBConnector.insertTweetGroup(testGroup, userID);
+		DBConnector.editGroup(groupID, "O'Reilly's", "' OR '1'='1", userID, null);
+		Assert.assertEquals("O'Reilly's", DBConnector.getGroupTitle(groupID, userID));
+		Assert.assertEquals("' OR '1'='1", DBConnector.getTweetGroupForUser(userID, groupID).description);
+		DBConnector.updateUserTokens(userID, "new'token", "new'secret");
+		Assert.assertEquals("new'secret", DBConnector.getUserConfig(userID)[2]);
+	}
+
+	/**
+	 * tweets inserted in several batches get the IDs they are stored with
+	 */
+	@Test
+	public void insertInBatches(){
+		DBConfig config = new DBConfig();
+		config.batchSize = 3;
+		config.commitBatches = true;
+		DBConnector.connect(dbPath + dbFileName, config);
+		try {
+			TweetGroup group = new TweetGroup("batchTitle", "batchDescription");
+			for (int i = 0; i < 10; i++) {
+				group.tweets.add(new Tweet("2030-01-01 00:00:0" + i, "batchTweet" + i));
+			}
+			int groupID = DBConnector.insertTweetGroup(group, 99);
+			Assert.assertEquals(groupID, group.groupID);
+			for (Tweet tweet : group.tweets) {
+				Tweet read = DBConnector.getTweetByID(tweet.tweetID, 99);
+				Assert.assertEquals(tweet.content, read.content);
+				Assert.assertEquals(groupID, read.groupID);
+			}
+		} finally {
+			DBConnector.connect(dbPath + dbFileName);
+		}
+	}
+
+	/**
+	 * queued status updates are coalesced and written on disconnect at the
+	 * latest
+	 */
+	@Test
+	public void statusUpdatesWrittenBehind(){
+		DBConfig config = new DBConfig();
+		config.statusFlushInterval = 60000;
+		DBConnector.connect(dbPath + dbFileName, config);
+		int userID = 88;
+		TweetGroup group = new TweetGroup("statusTitle", "statusDescription");
+		for (int i = 0; i < 10; i++) {
+			group.tweets.add(new Tweet("2030-01-01 00:00:0" + i, "statusTweet" + i));
+		}
+		int groupID;
+		try {
+			groupID = DBConnector.insertTweetGroup(group, userID);
+			for (Tweet tweet : group.tweets) {
+				DBConnector.flagAsScheduledLater(tweet.tweetID, userID);
+			}
+			DBConnector.flagAsTweeted(group.tweets.get(0).tweetID, userID);
+			DBConnector.addStatusIDLater(group.tweets.get(0).tweetID, 4711);
+			Assert.assertFalse(DBConnector.getTweetByID(group.tweets.get(0).tweetID, userID).scheduled);
+			// the tweeted flag is never written behind
+			Assert.assertTrue(DBConnector.getTweetByID(group.tweets.get(0).tweetID, userID).tweeted);
+		} finally {
+			DBConnector.connect(dbPath + dbFileName);
+		}
+		List<Tweet> read = DBConnector.getTweetGroupForUser(userID, groupID).tweets;
+		for (Tweet tweet : read) {
+			Assert.assertTrue(tweet.scheduled);
+		}
+		Assert.assertTrue(read.get(0).tweeted);
+		Assert.assertEquals(4711, read.get(0).statusID);
+		Assert.assertFalse(read.get(1).tweeted);
+	}
+
+	/**
+	 * the materialized counters follow inserts, status changes and deletes
+	 */
+	@Test
+	public void statisticsCounters(){
+		int userID = DBConnector.insertNewUser(89, "token", "secret");
+		int groupID = DBConnector.insertTweetGroup(testGroup, userID);
+		TweetGroup read = DBConnector.getTweetGroupForUser(userID, groupID);
+		DBConnector.flagAsScheduled(read.tweets.get(0).tweetID, userID);
+		DBConnector.flagAsScheduled(read.tweets.get(1).tweetID, userID);
+		DBConnector.flagAsTweeted(read.tweets.get(1).tweetID, userID);
+		DBConnector.deleteTweet(read.tweets.get(2).tweetID, userID);
+		Assert.assertEquals(DBConnector.countTweets("SELECT Count(*) FROM users"), DBConnector.getRegisteredUsers());
+		Assert.assertEquals(DBConnector.countTweets("SELECT Count(*) FROM tweets"), DBConnector.getAllTweets());
+		Assert.assertEquals(DBConnector.countTweets("SELECT Count(*) FROM tweets WHERE(tweeted = 1)"),
+				DBConnector.getPublishedTweets());
+		Assert.assertEquals(DBConnector.countTweets("SELECT Count(*) FROM tweets WHERE(scheduled = 1 AND tweeted = 0)"),
+				DBConnector.getScheduledTweets());
+		DBConnector.deleteGroup(groupID, userID);
+		Assert.assertEquals(DBConnector.countTweets("SELECT Count(*) FROM tweets"), DBConnector.getAllTweets());
+	}
+
+	/**
+	 * only future, not yet tweeted tweets of enabled groups are streamed
+	 */
+	@Test
+	public void forEachSchedulableTweet(){
+		int userID = 55;
+		TweetGroup group = new TweetGroup("streamTitle", "streamDescription");
+		group.tweets.add(new Tweet("2000-01-01 00:00:00", "past"));
+		group.tweets.add(new Tweet("2999-01-01 00:00:00", "future"));
+		group.tweets.add(new Tweet("2999-01-02 00:00:00", "tweeted"));
+		int groupID = DBConnector.insertTweetGroup(group, userID);
+		DBConnector.flagAsTweeted(group.tweets.get(2).tweetID, userID);
+		// a second, disabled group
+		DBConnector.insertTweetGroup(group, userID);
+		DBConnector.updateGroupStatus(groupID, true, userID);
+		List<String> streamed = new ArrayList<String>();
+		DBConnector.forEachSchedulableTweet((tweet, user) -> {
+			if (user == userID) {
+				streamed.add(tweet.content + " " + tweet.groupID);
+			}
+		});
+		Assert.assertEquals(Collections.singletonList("future " + groupID), streamed);
+	}
+
+	/**
+	 * a time bucket streams the schedulable tweets in [from, to)
+	 */
+	@Test
+	public void forEachSchedulableTweetInRange(){
+		int userID = 56;
+		TweetGroup group = new TweetGroup("bucketTitle", "bucketDescription");
+		group.tweets.add(new Tweet("2999-02-01 11:59:00", "before"));
+		group.tweets.add(new Tweet("2999-02-01 12:00:00", "first"));
+		group.tweets.add(new Tweet("2999-02-01 12:00:59", "last"));
+		group.tweets.add(new Tweet("2999-02-01 12:01:00", "after"));
+		int groupID = DBConnector.insertTweetGroup(group, userID);
+		DBConnector.updateGroupStatus(groupID, true, userID);
+		long from = Tweet.parseDate("2999-02-01 12:00:00").toEpochMilli();
+		List<String> streamed = new ArrayList<String>();
+		DBConnector.forEachSchedulableTweet(from, from + 60000, (tweet, user) -> {
+			if (user == userID) {
+				streamed.add(tweet.content);
+			}
+		});
+		Collections.sort(streamed);
+		Assert.assertEquals(Arrays.asList("first", "last"), streamed);
+		DBConnector.deleteGroup(groupID, userID);
+	}
+
+	/**
+	 * scheduled tweets which came due before startup are streamed as
+	 * misfires, skipped ones are no longer scheduled
+	 */
+	@Test
+	public void misfires(){
+		int userID = 57;
+		TweetGroup group = new TweetGroup("misfireTitle", "misfireDescription");
+		group.tweets.add(new Tweet("2001-01-01 00:00:00", "skipped"));
+		group.tweets.add(new Tweet("2001-01-01 00:01:00", "fired"));
+		int groupID = DBConnector.insertTweetGroup(group, userID);
+		DBConnector.updateGroupStatus(groupID, true, userID);
+		for (Tweet tweet : DBConnector.getTweetGroupForUser(userID, groupID).tweets) {
+			DBConnector.flagAsScheduled(tweet.tweetID, userID);
+		}
+		long now = System.currentTimeMillis();
+		List<Misfire> misfires = new ArrayList<Misfire>();
+		DBConnector.forEachMisfiredTweet(now, (tweet, user) -> {
+			if (user == userID) {
+				Misfire misfire = new Misfire();
+				misfire.tweetID = tweet.tweetID;
+				misfire.userID = user;
+				misfire.groupID = tweet.groupID;
+				misfire.scheduledAt = tweet.scheduledAt.toEpochMilli();
+				misfire.detectedAt = now;
+				misfire.action = tweet.content.equals("skipped") ? Misfire.SKIPPED : Misfire.FIRED;
+				misfires.add(misfire);
+			}
+		});
+		Assert.assertEquals(2, misfires.size());
+		DBConnector.recordMisfires(misfires);
+		List<Misfire> recorded = DBConnector.getMisfires(userID, 10);
+		Assert.assertEquals(2, recorded.size());
+		for (Misfire misfire : recorded) {
+			Assert.assertEquals(misfire.content.equals("skipped") ? Misfire.SKIPPED : Misfire.FIRED, misfire.action);
+		}
+		List<String> streamed = new ArrayList<String>();
+		DBConnector.forEachMisfiredTweet(now, (tweet, user) -> {
+			if (user == userID) {
+				streamed.add(tweet.content);
+			}
+		});
+		Assert.assertEquals(Arrays.asList("fired"), streamed);
+		DBConnector.deleteGroup(groupID, userID);
+		Assert.assertEquals(0, DBConnector.getMisfires(userID, 10).size());
+	}
+
+	/**
+	 * tweets claimed by another node, which may wait in its posting queue,
+	 * aren't misfires until their lease expired, done ones never
+	 */
+	@Test
+	public void misfiresWithLeases(){
+		int userID = 59;
+		TweetGroup group = new TweetGroup("leasedMisfireTitle", "leasedMisfireDescription");
+		group.tweets.add(new Tweet("2001-02-01 00:00:00", "live"));
+		group.tweets.add(new Tweet("2001-02-01 00:01:00", "done"));
+		group.tweets.add(new Tweet("2001-02-01 00:02:00", "expired"));
+		group.tweets.add(new Tweet("2001-02-01 00:03:00", "unclaimed"));
+		int groupID = DBConnector.insertTweetGroup(group, userID);
+		DBConnector.updateGroupStatus(groupID, true, userID);
+		long now = System.currentTimeMillis();
+		for (Tweet tweet : DBConnector.getTweetGroupForUser(userID, groupID).tweets) {
+			DBConnector.flagAsScheduled(tweet.tweetID, userID);
+			if (tweet.content.equals("live")) {
+				Assert.assertTrue(DBConnector.claimTweet(tweet.tweetID, userID, "other", now, 60000));
+			} else if (tweet.content.equals("done")) {
+				Assert.assertTrue(DBConnector.claimTweet(tweet.tweetID, userID, "other", now - 120000, 60000));
+				DBConnector.completeLease(tweet.tweetID, "other");
+			} else if (tweet.content.equals("expired")) {
+				Assert.assertTrue(DBConnector.claimTweet(tweet.tweetID, userID, "other", now - 120000, 60000));
+			}
+		}
+		List<String> streamed = new ArrayList<String>();
+		DBConnector.forEachMisfiredTweet(now, (tweet, user) -> {
+			if (user == userID) {
+				streamed.add(tweet.content);
+			}
+		});
+		Assert.assertEquals(Arrays.asList("expired", "unclaimed"), streamed);
+		DBConnector.deleteGroup(groupID, userID);
+	}
+
+	/**
+	 * of several nodes sharing the database file exactly one claims a tweet,
+	 * an expired lease is claimed by another node and a done lease by none
+	 */
+	@Test
+	public void claimTweetOnSeveralNodes() throws Exception {
+		int userID = 58;
+		TweetGroup group = new TweetGroup("leaseTitle", "leaseDescription");
+		group.tweets.add(new Tweet("2999-03-01 12:00:00", "leased"));
+		int groupID = DBConnector.insertTweetGroup(group, userID);
+		DBConnector.updateGroupStatus(groupID, true, userID);
+		int tweetID = DBConnector.getTweetGroupForUser(userID, groupID).tweets.get(0).tweetID;
+		long now = System.currentTimeMillis();
+		List<SQLiteTweetStore> nodes = new ArrayList<SQLiteTweetStore>();
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			List<Callable<Boolean>> claims = new ArrayList<Callable<Boolean>>();
+			for (int i = 0; i < 3; i++) {
+				SQLiteTweetStore node = new SQLiteTweetStore(dbPath + dbFileName, new DBConfig());
+				nodes.add(node);
+				String name = "node" + i;
+				claims.add(() -> node.claimTweet(tweetID, userID, name, now, 60000));
+			}
+			int claimed = 0;
+			for (Future<Boolean> claim : executor.invokeAll(claims)) {
+				claimed += claim.get() ? 1 : 0;
+			}
+			Assert.assertEquals(1, claimed);
+
+			// the lease expired, the first node to look claims it
+			long later = now + 120000;
+			List<Integer> expired = new ArrayList<Integer>();
+			nodes.get(0).forEachExpiredLease(later, (tweet, user) -> expired.add(tweet.tweetID));
+			Assert.assertEquals(Arrays.asList(tweetID), expired);
+			Assert.assertTrue(nodes.get(0).claimTweet(tweetID, userID, "node0", later, 60000));
+			Assert.assertFalse(nodes.get(1).claimTweet(tweetID, userID, "node1", later, 60000));
+
+			// a done lease never expires
+			nodes.get(0).completeLease(tweetID, "node0");
+			Assert.assertFalse(nodes.get(2).claimTweet(tweetID, userID, "node2", later + 120000, 60000));
+			expired.clear();
+			nodes.get(2).forEachExpiredLease(later + 120000, (tweet, user) -> expired.add(tweet.tweetID));
+			Assert.assertTrue(expired.isEmpty());
+		} finally {
+			executor.shutdown();
+			for (SQLiteTweetStore node : nodes) {
+				node.close();
+			}
+			DBConnector.deleteGroup(groupID, userID);
+		}
+	}
+
+	/**
+	 * the totals of the pages are read from the counters, which follow
+	 * inserts, archiving and deletes
+	 */
+	@Test
+	public void pageTotals(){
+		int userID = 76;
+		TweetGroup first = new TweetGroup("totalsTitle1", "totalsDescription1");
+		first.tweets.add(new Tweet("1300-03-01 00:00:00", "archived"));
+		first.tweets.add(new Tweet("2999-03-01 00:00:00", "upcoming1"));
+		TweetGroup second = new TweetGroup("totalsTitle2", "totalsDescription2");
+		second.tweets.add(new Tweet("2999-03-02 00:00:00", "upcoming2"));
+		int firstID = DBConnector.insertTweetGroup(first, userID);
+		int secondID = DBConnector.insertTweetGroup(second, userID);
+		Assert.assertEquals(2, DBConnector.getGroupsPage(userID, null, false, 1).total);
+		Assert.assertEquals(3, DBConnector.getTweetsPage(userID, -1, null, false, 1).total);
+		Assert.assertEquals(2, DBConnector.getTweetsPage(userID, firstID, null, false, 1).total);
+		DBConnector.flagAsTweeted(first.tweets.get(0).tweetID, userID);
+		DBConnector.archiveTweets(Tweet.parseDate("1300-12-31 00:00:00").toEpochMilli());
+		Assert.assertEquals(2, DBConnector.getTweetsPage(userID, -1, null, false, 1).total);
+		Assert.assertEquals(3, DBConnector.getTweetsPage(userID, -1, null, false, 1, true).total);
+		Assert.assertEquals(1, DBConnector.getTweetsPage(userID, firstID, null, false, 1).total);
+		Assert.assertEquals(2, DBConnector.getTweetsPage(userID, firstID, null, false, 1, true).total);
+		Assert.assertEquals(0, DBConnector.getTweetsPage(userID + 1000, -1, null, false, 1).total);
+		DBConnector.deleteGroups(Collections.singleton(firstID), userID);
+		Assert.assertEquals(1, DBConnector.getGroupsPage(userID, null, false, 1).total);
+		Assert.assertEquals(1, DBConnector.getTweetsPage(userID, -1, null, false, 1, true).total);
+		Assert.assertEquals(0, DBConnector.getTweetsPage(userID, firstID, null, false, 1, true).total);
+		DBConnector.deleteGroup(secondID, userID);
+		Assert.assertEquals(0, DBConnector.getGroupsPage(userID, null, false, 1).total);
+		Assert.assertEquals(0, DBConnector.getTweetsPage(userID, -1, null, false, 1).total);
+	}
+
+	/**
+	 * pages list upcoming tweets first, then past tweets, and can be read in
+	 * both directions
+	 */
+	@Test
+	public void getTweetsPage(){
+		int userID = 66;
+		TweetGroup group = new TweetGroup("pageTitle", "pageDescription");
+		group.tweets.add(new Tweet("2001-01-01 00:00:00", "past1"));
+		group.tweets.add(new Tweet("2002-01-01 00:00:00", "past2"));
+		group.tweets.add(new Tweet("2002-01-01 00:00:00", "past3"));
+		group.tweets.add(new Tweet("2998-01-01 00:00:00", "upcoming1"));
+		group.tweets.add(new Tweet("2999-01-01 00:00:00", "upcoming2"));
+		int groupID = DBConnector.insertTweetGroup(group, userID);
+		List<String> expected = new ArrayList<String>();
+		expected.add("upcoming1");
+		expected.add("upcoming2");
+		expected.add("past1");
+		expected.add("past2");
+		expected.add("past3");
+
+		List<String> forward = new ArrayList<String>();
+		Page<Tweet> page = DBConnector.getTweetsPage(userID, groupID, null, false, 2);
+		Assert.assertEquals(5, page.total);
+		Assert.assertFalse(page.hasPrevious);
+		while (true) {
+			for (Tweet tweet : page.entries) {
+				forward.add(tweet.content);
+			}
+			if (!page.hasNext) {
+				break;
+			}
+			page = DBConnector.getTweetsPage(userID, groupID, page.last, false, 2);
+		}
+		Assert.assertEquals(expected, forward);
+
+		List<String> backward = new ArrayList<String>();
+		page = DBConnector.getTweetsPage(userID, -1, null, true, 2);
+		Assert.assertFalse(page.hasNext);
+		while (true) {
+			for (int i = page.entries.size() - 1; i >= 0; i--) {
+				backward.add(0, page.entries.get(i).content);
+			}
+			if (!page.hasPrevious) {
+				break;
+			}
+			page = DBConnector.getTweetsPage(userID, -1, page.first, true, 2);
+		}
+		Assert.assertEquals(expected, backward);
+	}
+
+	/**
+	 * schedule times are stored as instants and read back unchanged
+	 */
+	@Test
+	public void scheduledAt(){
+		int userID = 67;
+		TweetGroup group = new TweetGroup("timeTitle", "timeDescription");
+		group.tweets.add(new Tweet("2030-06-15 12:30:00", "summer"));
+		group.tweets.add(new Tweet("2030-12-15", "winter"));
+		int groupID = DBConnector.insertTweetGroup(group, userID);
+		List<Tweet> read = DBConnector.getTweetGroupForUser(userID, groupID).tweets;
+		Assert.assertEquals(Tweet.parseDate("2030-06-15 12:30:00"), read.get(0).scheduledAt);
+		Assert.assertEquals(Tweet.parseDate("2030-12-15 00:00:00"), read.get(1).scheduledAt);
+		Tweet edited = read.get(0);
+		DBConnector.editTweet(edited.tweetID, edited.content, userID, edited.imageUrl, edited.longitude,
+				edited.latitude, "2031-01-01 08:00:00");
+		Tweet after = DBConnector.getTweetGroupForUser(userID, groupID).tweets.get(1);
+		Assert.assertEquals("summer", after.content);
+		Assert.assertEquals(Tweet.parseDate("2031-01-01 08:00:00"), after.scheduledAt);
+	}
+
+	/**
+	 * threaded tweets reply to the status of the tweet scheduled before them
+	 */
+	@Test
+	public void getReplyID(){
+		int userID = 68;
+		TweetGroup group = new TweetGroup("threadTitle", "threadDescription");
+		group.tweets.add(new Tweet("2030-01-02 00:00:00", "second"));
+		group.tweets.add(new Tweet("2030-01-01 00:00:00", "first"));
+		group.tweets.add(new Tweet("2030-01-02 00:00:00", "third"));
+		int groupID = DBConnector.insertTweetGroup(group, userID);
+		DBConnector.addStatusID(group.tweets.get(1).tweetID, 101);
+		DBConnector.addStatusID(group.tweets.get(0).tweetID, 102);
+		Assert.assertEquals(-1, DBConnector.getReplyID(group.tweets.get(1).tweetID, groupID, userID));
+		Assert.assertEquals(101, DBConnector.getReplyID(group.tweets.get(0).tweetID, groupID, userID));
+		Assert.assertEquals(102, DBConnector.getReplyID(group.tweets.get(2).tweetID, groupID, userID));
+	}
+
+	/**
+	 * cached groups are copies and are invalidated by writes to their tweets
+	 */
+	@Test
+	public void groupCache(){
+		int userID = 69;
+		TweetGroup group = new TweetGroup("cacheTitle", "cacheDescription");
+		group.tweets.add(new Tweet("2030-01-01 00:00:00", "cached"));
+		int groupID = DBConnector.insertTweetGroup(group, userID);
+		int tweetID = group.tweets.get(0).tweetID;
+		DBConnector.getTweetGroupForUser(userID, groupID).tweets.get(0).content = "changed";
+		long hits = DBConnector.getGroupCacheMetrics().get("hits").longValue();
+		Assert.assertEquals("cached", DBConnector.getTweetGroupForUser(userID, groupID).tweets.get(0).content);
+		Assert.assertEquals(hits + 1, DBConnector.getGroupCacheMetrics().get("hits").longValue());
+		DBConnector.editTweet(tweetID, "edited", userID, null, 0f, 0f, "2030-01-01 00:00:00");
+		Assert.assertEquals("edited", DBConnector.getTweetGroupForUser(userID, groupID).tweets.get(0).content);
+		DBConnector.flagAsScheduledLater(tweetID, userID);
+		Assert.assertTrue(DBConnector.getTweetGroupForUser(userID, groupID).tweets.get(0).scheduled);
+		DBConnector.flagAsTweeted(tweetID, userID);
+		Assert.assertTrue(DBConnector.getTweetGroupForUser(userID, groupID).tweets.get(0).tweeted);
+		DBConnector.editGroup(groupID, "newTitle", "cacheDescription", userID, null);
+		Assert.assertEquals("newTitle", DBConnector.getTweetGroupForUser(userID, groupID).title);
+	}
+
+	/**
+	 * the in-memory store behaves like the database
+	 */
+	@Test
+	public void memoryStore(){
+		List<String> database = storeScenario();
+		DBConfig config = new DBConfig();
+		config.store = DBConfig.MEMORY;
+		DBConnector.connect(dbPath + dbFileName, config);
+		try {
+			Assert.assertEquals(database, storeScenario());
+		} finally {
+			DBConnector.connect(dbPath + dbFileName);
+		}
+	}
+
+	/**
+	 * runs reads and writes of all kinds against the connected store
+	 *
+	 * @return what was read
+	 */
+	private List<String> storeScenario() {
+		List<String> read = new ArrayList<String>();
+		int userID = DBConnector.insertNewUser(4242, "token", null);
+		read.add(String.join(",", DBConnector.getUserConfig(userID)));
+		TweetGroup group = new TweetGroup("storeTitle", "storeDescription");
+		group.tweets.add(new Tweet("2000-01-01 00:00:00", "a"));
+		group.tweets.add(new Tweet("2999-01-01 00:00:00", "b"));
+		group.tweets.add(new Tweet("2999-01-01 00:00:00", "c"));
+		group.tweets.add(new Tweet("2998-06-01 12:00:00", "d"));
+		int groupID = DBConnector.insertTweetGroup(group, userID);
+		DBConnector.flagAsScheduled(group.tweets.get(1).tweetID, userID);
+		DBConnector.flagAsTweeted(group.tweets.get(0).tweetID, userID);
+		DBConnector.addStatusID(group.tweets.get(0).tweetID, 11);
+		Tweet d = group.tweets.get(3);
+		DBConnector.editTweet(d.tweetID, "d2", userID, "imageUrl", 1f, 2f, "2998-06-01 13:00:00");
+		int e = DBConnector.addTweetToGroup(userID, new Tweet("2001-01-01 00:00:00", "e"), groupID);
+		DBConnector.deleteTweet(group.tweets.get(2).tweetID, userID);
+		DBConnector.updateGroupStatus(groupID, true, userID);
+		for (Tweet tweet : DBConnector.getTweetGroupForUser(userID, groupID).tweets) {
+			read.add(tweet.content + "|" + tweet.tweetDate + "|" + tweet.scheduled + "|" + tweet.tweeted + "|"
+					+ tweet.statusID + "|" + tweet.groupName + "|" + tweet.imageUrl);
+		}
+		for (Tweet tweet : DBConnector.getTweetsForUser(userID, true, false)) {
+			read.add("scheduled " + tweet.content);
+		}
+		read.add("reply " + DBConnector.getReplyID(e, groupID, userID));
+		Page<Tweet> page = DBConnector.getTweetsPage(userID, -1, null, false, 2);
+		while (true) {
+			for (Tweet tweet : page.entries) {
+				read.add("page " + tweet.content);
+			}
+			if (!page.hasNext) {
+				break;
+			}
+			page = DBConnector.getTweetsPage(userID, -1, page.last, false, 2);
+		}
+		for (TweetGroup tweetGroup : DBConnector.getGroupsPage(userID, null, false, 10).entries) {
+			read.add(tweetGroup.title + " " + tweetGroup.enabled + " " + tweetGroup.tweetCount);
+		}
+		TweetCounts counts = DBConnector.getTweetCounts(userID);
+		read.add("counts " + counts.groups + " " + counts.tweets + " " + counts.scheduled + " " + counts.published);
+		counts = DBConnector.getTweetCounts(userID, Collections.singleton(groupID)).get(groupID);
+		read.add("group counts " + counts.tweets + " " + counts.scheduled + " " + counts.published);
+		// in no particular order
+		List<String> schedulable = new ArrayList<String>();
+		DBConnector.forEachSchedulableTweet((tweet, user) -> {
+			if (user == userID) {
+				schedulable.add("schedulable " + tweet.content);
+			}
+		});
+		Collections.sort(schedulable);
+		read.addAll(schedulable);
+		DBConnector.deleteUser(userID);
+		read.add("deleted " + DBConnector.checkForUser(4242) + " " + DBConnector.getTweetsForUser(userID).size());
+		return read;
+	}
+
 	/**
 	 * test addTweetToGrop-Method
 	 */
@@ -220,4 +953,36 @@ public class DBInputOutputTest {
 		Assert.assertEquals(read.tweets.size(), 5);
 		Assert.assertEquals(read.tweets.get(4).content, "content");
 	}
+
+	/**
+	 * concurrent readers and writers must neither fail nor lose updates
+	 */
+	@Test
+	public void concurrentReadsAndWrites() throws Exception {
+		final int userID = DBConnector.insertNewUser(77, null, null);
+		final List<Integer> groupIDs = Collections.synchronizedList(new ArrayList<Integer>());
+		List<Callable<Void>> writers = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < 8; i++) {
+			writers.add(() -> {
+				for (int j = 0; j < 5; j++) {
+					int groupID = DBConnector.insertTweetGroup(testGroup, userID);
+					groupIDs.add(groupID);
+					Assert.assertNotNull(DBConnector.getTweetGroupForUser(userID, groupID));
+				}
+				return null;
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			// get() rethrows a failed assertion of a writer
+			for (Future<Void> writer : executor.invokeAll(writers)) {
+				writer.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		Assert.assertEquals(40, groupIDs.size());
+		Assert.assertFalse(groupIDs.contains(-1));
+		Assert.assertEquals(40, DBConnector.getGroupIDsForUser(userID).size());
+	}
 }
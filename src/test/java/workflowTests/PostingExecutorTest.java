@@ -0,0 +1,258 @@
+package workflowTests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import autoChirp.tweeting.PostingExecutor;
+import autoChirp.tweeting.SchedulerConfig;
+
+/**
+ * Junit test-class for the PostingExecutor
+ */
+public class PostingExecutorTest {
+
+	private ScheduledExecutorService timers;
+	private PostingExecutor posting;
+
+	@Before
+	public void createTimers() {
+		timers = Executors.newSingleThreadScheduledExecutor();
+	}
+
+	@After
+	public void shutdown() {
+		if (posting != null) {
+			posting.shutdown();
+		}
+		timers.shutdownNow();
+	}
+
+	/**
+	 * a hand-off to a full queue returns at once and is retried by the
+	 * timers until the queue has room, the metrics show the queued task and
+	 * the lag
+	 */
+	@Test
+	public void retryWhileQueueIsFull() throws Exception {
+		SchedulerConfig config = new SchedulerConfig();
+		config.postingThreads = 1;
+		config.postingQueue = 1;
+		config.postingRetryDelay = 10;
+		config.userRate = 0;
+		posting = new PostingExecutor(config, timers);
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger runs = new AtomicInteger();
+		posting.submit(1, () -> {
+			blocked.countDown();
+			await(release);
+			runs.incrementAndGet();
+		});
+		Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+		posting.submit(1, runs::incrementAndGet);
+		long started = System.nanoTime();
+		posting.submit(1, runs::incrementAndGet);
+		Assert.assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1));
+
+		Map<String, Object> metrics = posting.getMetrics();
+		Assert.assertEquals(1, metrics.get("active"));
+		Assert.assertEquals(1, metrics.get("queued"));
+		Assert.assertEquals(1, ((Map<?, ?>) metrics.get("queuedByUser")).get(1));
+		Assert.assertEquals(2L, metrics.get("submitted"));
+		// retried by the timers while the posting thread is blocked
+		Assert.assertTrue(waitFor(() -> (Long) posting.getMetrics().get("deferred") >= 3));
+		Assert.assertEquals(1, posting.getMetrics().get("queued"));
+
+		Thread.sleep(20);
+		release.countDown();
+		Assert.assertTrue(waitFor(() -> runs.get() == 3));
+		Assert.assertTrue(waitFor(() -> (Long) posting.getMetrics().get("completed") == 3));
+		metrics = posting.getMetrics();
+		Assert.assertEquals(0, metrics.get("queued"));
+		Assert.assertEquals(3L, metrics.get("submitted"));
+		Assert.assertEquals(0L, metrics.get("failed"));
+		// the second task waited for the blocked one
+		Assert.assertTrue((Double) metrics.get("maxLagMs") >= 20);
+		Assert.assertTrue((Double) metrics.get("meanLagMs") > 0);
+		long deferred = (Long) metrics.get("deferred");
+		Thread.sleep(50);
+		Assert.assertEquals(deferred, posting.getMetrics().get("deferred"));
+	}
+
+	/**
+	 * the tasks of a user queued after the backlog of another user run in
+	 * turn with it, not after it
+	 */
+	@Test
+	public void lightUserOvertakesHeavyUser() throws Exception {
+		SchedulerConfig config = new SchedulerConfig();
+		config.postingThreads = 1;
+		config.userRate = 0;
+		posting = new PostingExecutor(config, timers);
+		CountDownLatch release = new CountDownLatch(1);
+		List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		posting.submit(99, () -> await(release));
+		for (int i = 0; i < 20; i++) {
+			posting.submit(1, () -> order.add(1));
+		}
+		posting.submit(2, () -> order.add(2));
+		release.countDown();
+		Assert.assertTrue(waitFor(() -> order.size() == 21));
+		Assert.assertTrue(order.indexOf(2) <= 1);
+	}
+
+	/**
+	 * the tasks of a user without tokens wait for the next token, they are
+	 * neither dropped nor run early
+	 */
+	@Test
+	public void deferWithoutTokens() throws Exception {
+		SchedulerConfig config = new SchedulerConfig();
+		config.postingThreads = 2;
+		config.userBurst = 1;
+		// one token per 100 milliseconds
+		config.userRate = 36000;
+		posting = new PostingExecutor(config, timers);
+		List<Long> ran = Collections.synchronizedList(new ArrayList<Long>());
+		long started = System.nanoTime();
+		for (int i = 0; i < 3; i++) {
+			posting.submit(1, () -> ran.add(System.nanoTime()));
+		}
+		Assert.assertTrue(waitFor(() -> ran.size() == 3));
+		Assert.assertTrue(ran.get(2) - started >= TimeUnit.MILLISECONDS.toNanos(190));
+		Map<String, Object> metrics = posting.getMetrics();
+		Assert.assertEquals(3L, metrics.get("submitted"));
+		Assert.assertEquals(0L, metrics.get("deferred"));
+		Assert.assertTrue((Long) metrics.get("throttled") > 0);
+	}
+
+	/**
+	 * a full queue still admits users below their share, and defers the
+	 * users above it
+	 */
+	@Test
+	public void admitFairShareWhenFull() throws Exception {
+		SchedulerConfig config = new SchedulerConfig();
+		config.postingThreads = 1;
+		config.postingQueue = 4;
+		config.postingRetryDelay = 60 * 1000;
+		config.userRate = 0;
+		posting = new PostingExecutor(config, timers);
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger runs = new AtomicInteger();
+		posting.submit(99, () -> {
+			blocked.countDown();
+			await(release);
+		});
+		Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 5; i++) {
+			posting.submit(1, runs::incrementAndGet);
+		}
+		Assert.assertEquals(4, posting.getMetrics().get("queued"));
+		Assert.assertEquals(1L, posting.getMetrics().get("deferred"));
+		// the share of two users is 2 tasks each
+		for (int i = 0; i < 3; i++) {
+			posting.submit(2, runs::incrementAndGet);
+		}
+		Map<String, Object> metrics = posting.getMetrics();
+		Assert.assertEquals(6, metrics.get("queued"));
+		Assert.assertEquals(2L, metrics.get("deferred"));
+		Assert.assertEquals(2, ((Map<?, ?>) metrics.get("queuedByUser")).get(2));
+		release.countDown();
+		Assert.assertTrue(waitFor(() -> runs.get() == 6));
+	}
+
+	/**
+	 * the bucket of a user is dropped once the user has no queued tasks and
+	 * the bucket refilled
+	 */
+	@Test
+	public void pruneBuckets() throws Exception {
+		SchedulerConfig config = new SchedulerConfig();
+		config.postingThreads = 1;
+		config.userBurst = 1;
+		// one token per 10 milliseconds
+		config.userRate = 360000;
+		posting = new PostingExecutor(config, timers);
+		AtomicInteger runs = new AtomicInteger();
+		posting.submit(1, runs::incrementAndGet);
+		Assert.assertTrue(waitFor(() -> runs.get() == 1));
+		Assert.assertEquals(1, posting.getMetrics().get("buckets"));
+		Thread.sleep(50);
+		posting.submit(2, runs::incrementAndGet);
+		Assert.assertTrue(waitFor(() -> runs.get() == 2));
+		// only the bucket of user 2, which has not refilled yet
+		Assert.assertEquals(1, posting.getMetrics().get("buckets"));
+		Thread.sleep(50);
+		posting.submit(1, runs::incrementAndGet);
+		Assert.assertTrue(waitFor(() -> runs.get() == 3));
+		Assert.assertEquals(1, posting.getMetrics().get("buckets"));
+	}
+
+	/**
+	 * shutdownNow drops the queued tasks, the running one finishes
+	 */
+	@Test
+	public void shutdownNow() throws Exception {
+		SchedulerConfig config = new SchedulerConfig();
+		config.postingThreads = 1;
+		config.userRate = 0;
+		posting = new PostingExecutor(config, timers);
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger runs = new AtomicInteger();
+		posting.submit(1, () -> {
+			blocked.countDown();
+			await(release);
+			runs.incrementAndGet();
+		});
+		Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 3; i++) {
+			posting.submit(2, runs::incrementAndGet);
+		}
+		Assert.assertEquals(3, posting.shutdownNow());
+		Assert.assertFalse(posting.awaitTermination(50));
+		posting.submit(2, runs::incrementAndGet);
+		release.countDown();
+		Assert.assertTrue(posting.awaitTermination(5000));
+		Assert.assertEquals(1, runs.get());
+		Assert.assertEquals(0, posting.getMetrics().get("queued"));
+	}
+
+	/**
+	 * waits up to 5 seconds for a condition
+	 */
+	static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > timeout) {
+				return false;
+			}
+			Thread.sleep(1);
+		}
+		return true;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
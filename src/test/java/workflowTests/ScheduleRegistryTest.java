@@ -0,0 +1,183 @@
+package workflowTests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import autoChirp.tweeting.ScheduleRegistry;
+
+/**
+ * Junit test-class for the ScheduleRegistry
+ */
+public class ScheduleRegistryTest {
+
+	private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+	private ScheduledThreadPoolExecutor executor;
+	private ScheduleRegistry registry;
+
+	@Before
+	public void createRegistry() {
+		executor = new ScheduledThreadPoolExecutor(2);
+		executor.setRemoveOnCancelPolicy(true);
+		registry = new ScheduleRegistry();
+	}
+
+	@After
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * a tweet is scheduled only once
+	 */
+	@Test
+	public void deduplicate() {
+		AtomicInteger runs = new AtomicInteger();
+		Assert.assertTrue(registry.schedule(1, 10, runs::incrementAndGet, HOUR, executor));
+		Assert.assertFalse(registry.schedule(1, 10, runs::incrementAndGet, HOUR, executor));
+		Assert.assertTrue(registry.contains(1));
+		Assert.assertEquals(1, registry.size());
+		Assert.assertEquals(1, registry.groups());
+		Assert.assertEquals(1, executor.getQueue().size());
+	}
+
+	/**
+	 * a tweet is removed from the registry once its task ran and can be
+	 * scheduled again
+	 */
+	@Test
+	public void removeOnCompletion() throws Exception {
+		CountDownLatch ran = new CountDownLatch(1);
+		Assert.assertTrue(registry.schedule(2, 20, ran::countDown, 0, executor));
+		Assert.assertTrue(ran.await(5, TimeUnit.SECONDS));
+		long timeout = System.currentTimeMillis() + 5000;
+		while (registry.contains(2) && System.currentTimeMillis() < timeout) {
+			Thread.sleep(1);
+		}
+		Assert.assertFalse(registry.contains(2));
+		Assert.assertEquals(0, registry.size());
+		Assert.assertEquals(0, registry.groups());
+		Assert.assertTrue(registry.schedule(2, 20, ran::countDown, HOUR, executor));
+	}
+
+	/**
+	 * a cancelled timer doesn't run and leaves no entry in either index
+	 */
+	@Test
+	public void cancel() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		registry.schedule(3, 30, runs::incrementAndGet, 50, executor);
+		registry.schedule(4, 30, runs::incrementAndGet, HOUR, executor);
+		Assert.assertTrue(registry.cancel(3));
+		Assert.assertFalse(registry.cancel(3));
+		Assert.assertFalse(registry.cancel(5));
+		Assert.assertFalse(registry.contains(3));
+		Assert.assertEquals(1, registry.size());
+		Assert.assertEquals(1, registry.groups());
+		Assert.assertTrue(registry.cancel(4));
+		Assert.assertEquals(0, registry.size());
+		Assert.assertEquals(0, registry.groups());
+		Thread.sleep(100);
+		Assert.assertEquals(0, runs.get());
+		Assert.assertEquals(0, executor.getQueue().size());
+	}
+
+	/**
+	 * cancelGroup cancels the timers of one group only
+	 */
+	@Test
+	public void cancelGroup() {
+		AtomicInteger runs = new AtomicInteger();
+		for (int tweetID = 1; tweetID <= 3; tweetID++) {
+			registry.schedule(tweetID, 40, runs::incrementAndGet, HOUR, executor);
+		}
+		registry.schedule(4, 41, runs::incrementAndGet, HOUR, executor);
+		Assert.assertEquals(2, registry.groups());
+		Assert.assertEquals(3, registry.cancelGroup(40));
+		Assert.assertEquals(0, registry.cancelGroup(40));
+		Assert.assertEquals(1, registry.size());
+		Assert.assertEquals(1, registry.groups());
+		Assert.assertTrue(registry.contains(4));
+		Assert.assertEquals(1, executor.getQueue().size());
+		Assert.assertEquals(0, runs.get());
+	}
+
+	/**
+	 * clear cancels the timers of all groups
+	 */
+	@Test
+	public void clear() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		registry.schedule(1, 50, runs::incrementAndGet, 50, executor);
+		registry.schedule(2, 50, runs::incrementAndGet, HOUR, executor);
+		registry.schedule(3, 51, runs::incrementAndGet, HOUR, executor);
+		Assert.assertEquals(3, registry.clear());
+		Assert.assertEquals(0, registry.size());
+		Assert.assertEquals(0, registry.groups());
+		Assert.assertEquals(0, registry.clear());
+		Thread.sleep(100);
+		Assert.assertEquals(0, runs.get());
+	}
+
+	/**
+	 * timers completing, tweets scheduled again and the group cancelled at the
+	 * same time keep both indexes consistent: after a final cancelGroup no
+	 * timer of the group is left
+	 */
+	@Test
+	public void concurrentScheduleAndCancelGroup() throws Exception {
+		ExecutorService threads = Executors.newFixedThreadPool(3);
+		try {
+			for (int groupID = 0; groupID < 200; groupID++) {
+				int group = groupID;
+				List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+				// timers which run right away
+				tasks.add(() -> {
+					for (int tweetID = 0; tweetID < 50; tweetID++) {
+						registry.schedule(tweetID, group, () -> {
+						}, 0, executor);
+					}
+					return null;
+				});
+				// the same tweets again, as soon as their timers are gone
+				tasks.add(() -> {
+					for (int tweetID = 0; tweetID < 50; tweetID++) {
+						while (!registry.schedule(tweetID, group, () -> {
+						}, HOUR, executor)) {
+							Thread.yield();
+						}
+					}
+					return null;
+				});
+				tasks.add(() -> {
+					for (int i = 0; i < 10; i++) {
+						registry.cancelGroup(group);
+					}
+					return null;
+				});
+				for (Future<Void> future : threads.invokeAll(tasks)) {
+					future.get();
+				}
+				registry.cancelGroup(group);
+				Assert.assertEquals("group " + group, 0, registry.size());
+				Assert.assertEquals("group " + group, 0, registry.groups());
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,63 @@
+package workflowTests;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import autoChirp.tweeting.TokenBucket;
+
+/**
+ * Junit test-class for the TokenBucket
+ */
+public class TokenBucketTest {
+
+	private static final long SECOND = 1000000000L;
+
+	/**
+	 * a new bucket holds burst tokens, refilled at rate tokens per hour
+	 */
+	@Test
+	public void takeAndRefill() {
+		// one token per second
+		TokenBucket bucket = new TokenBucket(2, 3600, 0);
+		Assert.assertTrue(bucket.isFull(0));
+		Assert.assertEquals(0, bucket.take(0));
+		Assert.assertFalse(bucket.isFull(0));
+		Assert.assertEquals(0, bucket.take(0));
+		Assert.assertEquals(SECOND, bucket.take(0));
+		Assert.assertEquals(SECOND / 4, bucket.take(SECOND * 3 / 4));
+		Assert.assertEquals(0, bucket.take(SECOND));
+		Assert.assertEquals(SECOND, bucket.take(SECOND));
+		Assert.assertFalse(bucket.isFull(SECOND * 2));
+		Assert.assertTrue(bucket.isFull(SECOND * 3));
+	}
+
+	/**
+	 * the tokens don't exceed burst however long the bucket was idle
+	 */
+	@Test
+	public void capacity() {
+		TokenBucket bucket = new TokenBucket(3, 3600, 0);
+		long now = 1000 * SECOND;
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(0, bucket.take(now));
+		}
+		Assert.assertEquals(SECOND, bucket.take(now));
+		// a burst of 0 still allows one tweet
+		bucket = new TokenBucket(0, 3600, 0);
+		Assert.assertEquals(0, bucket.take(0));
+		Assert.assertEquals(SECOND, bucket.take(0));
+	}
+
+	/**
+	 * a rate of 0 doesn't limit
+	 */
+	@Test
+	public void unlimited() {
+		TokenBucket bucket = new TokenBucket(1, 0, 0);
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(0, bucket.take(0));
+		}
+		Assert.assertTrue(bucket.isFull(0));
+	}
+
+}